@@ -0,0 +1,61 @@
+package com.learnkafka.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// IDs de 64 bits estilo Snowflake: 41 bits de milisegundos desde EPOCH_MILLIS, 10 bits de nodo y 12 de secuencia.
+// Sin colisiones mientras cada instancia use un nodeId distinto; crecen con el tiempo.
+// Sin bloqueos: el ultimo (milisegundo, secuencia) vive en un AtomicLong que se avanza con CAS.
+// Si la secuencia se agota en un milisegundo, o el reloj retrocede, se toma prestado el siguiente milisegundo
+// en lugar de esperar; el reloj logico nunca va hacia atras.
+public class SnowflakeIdGenerator {
+
+    // 2025-01-01T00:00:00Z
+    public static final long EPOCH_MILLIS = 1_735_689_600_000L;
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    // (milisegundo logico << SEQUENCE_BITS) | secuencia del ultimo ID emitido
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + " but was " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    public long nextId() {
+
+        while (true) {
+            long last = lastState.get();
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            long next = now > (last >>> SEQUENCE_BITS)
+                    ? now << SEQUENCE_BITS
+                    // Mismo milisegundo (o reloj atrasado): siguiente secuencia; al desbordar pasa al milisegundo siguiente
+                    : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public static long timestampMillis(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+
+    public static int nodeId(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+}
@@ -0,0 +1,114 @@
+package com.learnkafka.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Log de las lineas que se escriben una vez por registro. Sin payload: solo tipo, ID, topic, particion y offset
+// en formato clave=valor. Cada evento y tipo (NEW, UPDATE...) emite como mucho maxPerSecond lineas por segundo, y la
+// siguiente linea emitida indica cuantas se descartaron. El logger HOT_PATH_LOGGER va a un AsyncAppender con cola
+// acotada que descarta en lugar de bloquear (logback-spring.xml). Los errores no pasan por aqui: se registran
+// completos con el logger de cada clase.
+@Component
+public class HotPathLog {
+
+    public static final String HOT_PATH_LOGGER = "com.learnkafka.hotpath";
+
+    private static final Logger log = LoggerFactory.getLogger(HOT_PATH_LOGGER);
+
+    private final MeterRegistry meterRegistry;
+    private final int maxPerSecond;
+
+    public HotPathLog(MeterRegistry meterRegistry,
+                      @Value("${libraryEvents.logging.hotPath.maxPerSecond:100}") int maxPerSecond) {
+        this.meterRegistry = meterRegistry;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    // Se crea una vez por clase y evento, p.ej. "sent", "received" o "persisted"
+    public Event event(String name) {
+        return new Event(name, false);
+    }
+
+    // Igual pero a nivel DEBUG: para lineas de diagnostico que no deben salir con el nivel INFO por defecto
+    public Event debugEvent(String name) {
+        return new Event(name, true);
+    }
+
+    public final class Event {
+
+        private final String name;
+        private final boolean debug;
+        private final Counter suppressed;
+        private final ConcurrentHashMap<Object, Limiter> limiters = new ConcurrentHashMap<>();
+        // Los registros sin tipo (p.ej. antes de deserializar) comparten limite
+        private final Limiter untyped = new Limiter();
+
+        private Event(String name, boolean debug) {
+            this.name = name;
+            this.debug = debug;
+            this.suppressed = Counter.builder("library.events.log.suppressed").tag("event", name).register(meterRegistry);
+        }
+
+        public void record(Object type, Long libraryEventId, String topic, int partition, long offset) {
+
+            if (maxPerSecond <= 0 || !(debug ? log.isDebugEnabled() : log.isInfoEnabled())) {
+                return;
+            }
+            long skipped = limiter(type).tryAcquire(System.nanoTime());
+            if (skipped < 0) {
+                suppressed.increment();
+                return;
+            }
+            String format = "event={} type={} libraryEventId={} topic={} partition={} offset={} suppressed={}";
+            Object[] arguments = {name, type == null ? "-" : type, libraryEventId, topic, partition, offset, skipped};
+            if (debug) {
+                log.debug(format, arguments);
+            } else {
+                log.info(format, arguments);
+            }
+        }
+
+        private Limiter limiter(Object type) {
+
+            if (type == null) {
+                return untyped;
+            }
+            Limiter limiter = limiters.get(type);
+            if (limiter == null) {
+                limiter = limiters.computeIfAbsent(type, key -> new Limiter());
+            }
+            return limiter;
+        }
+    }
+
+    // Ventana fija de un segundo
+    private final class Limiter {
+
+        private long windowStart = System.nanoTime();
+        private int emitted;
+        private long skipped;
+
+        // -1 si la linea se descarta; si no, cuantas se descartaron desde la ultima emitida
+        synchronized long tryAcquire(long now) {
+
+            if (now - windowStart >= 1_000_000_000L) {
+                windowStart = now;
+                emitted = 0;
+            }
+            if (emitted >= maxPerSecond) {
+                skipped++;
+                return -1;
+            }
+            emitted++;
+            long reported = skipped;
+            skipped = 0;
+            return reported;
+        }
+    }
+}
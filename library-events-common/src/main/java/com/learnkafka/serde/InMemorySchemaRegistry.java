@@ -0,0 +1,45 @@
+package com.learnkafka.serde;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Sustituto en proceso de un schema registry: asigna un id por (subject, schema) y resuelve id -> schema.
+// Registrar el mismo schema dos veces devuelve el mismo id, como haria un registry real.
+// Cada JVM tiene su propia instancia, asi que los schemas de library-events se registran al crearla con los ids
+// fijos de LibraryEventSchemas: productor y consumidor resuelven el mismo id al mismo schema.
+public class InMemorySchemaRegistry {
+
+    private static final InMemorySchemaRegistry DEFAULT = new InMemorySchemaRegistry();
+
+    private final Map<String, Integer> idsBySchema = new ConcurrentHashMap<>();
+    private final Map<Integer, String> schemasById = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(LibraryEventSchemas.FIRST_FREE_ID);
+
+    public InMemorySchemaRegistry() {
+        register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V1, LibraryEventSchemas.V1_ID);
+        register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V2, LibraryEventSchemas.V2_ID);
+    }
+
+    // Instancia compartida por el serializer y el deserializer dentro de la misma JVM
+    public static InMemorySchemaRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public int register(String subject, String schema) {
+        return idsBySchema.computeIfAbsent(subject + ":" + schema, key -> {
+            int id = nextId.getAndIncrement();
+            schemasById.put(id, schema);
+            return id;
+        });
+    }
+
+    private void register(String subject, String schema, int id) {
+        idsBySchema.put(subject + ":" + schema, id);
+        schemasById.put(id, schema);
+    }
+
+    public String getSchema(int id) {
+        return schemasById.get(id);
+    }
+}
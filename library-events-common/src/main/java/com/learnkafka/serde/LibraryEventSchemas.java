@@ -0,0 +1,30 @@
+package com.learnkafka.serde;
+
+// Schemas del formato binario de library-events (codificacion estilo Avro: varints zigzag y strings UTF-8
+// con prefijo de longitud). El id del schema viaja en la cabecera SCHEMA_ID_HEADER como int de 4 bytes.
+public final class LibraryEventSchemas {
+
+    public static final String SUBJECT = "library-events-value";
+    public static final String SCHEMA_ID_HEADER = "library-event-schema-id";
+    public static final String REGISTRY_CONFIG = "library-event.schema.registry";
+
+    // Ids fijos: nunca se reutilizan ni se reasignan; un schema nuevo toma el siguiente
+    public static final int V1_ID = 1;
+    public static final int V2_ID = 2;
+    static final int FIRST_FREE_ID = 3;
+
+    public static final String V1 = "{\"type\":\"record\",\"name\":\"LibraryEvent\",\"namespace\":\"com.learnkafka\",\"fields\":["
+            + "{\"name\":\"libraryEventId\",\"type\":[\"null\",\"int\"]},"
+            + "{\"name\":\"libraryEventType\",\"type\":{\"type\":\"enum\",\"name\":\"LibraryEventType\",\"symbols\":[\"NEW\",\"UPDATE\"]}},"
+            + "{\"name\":\"book\",\"type\":{\"type\":\"record\",\"name\":\"Book\",\"fields\":["
+            + "{\"name\":\"bookId\",\"type\":\"int\"},"
+            + "{\"name\":\"bookName\",\"type\":\"string\"},"
+            + "{\"name\":\"bookAuthor\",\"type\":\"string\"}]}}]}";
+
+    // V2: libraryEventId pasa a long para los IDs Snowflake que asigna el productor; el resto no cambia
+    public static final String V2 = V1.replace("{\"name\":\"libraryEventId\",\"type\":[\"null\",\"int\"]}",
+            "{\"name\":\"libraryEventId\",\"type\":[\"null\",\"long\"]}");
+
+    private LibraryEventSchemas() {
+    }
+}
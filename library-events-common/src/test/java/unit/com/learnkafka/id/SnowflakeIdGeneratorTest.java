@@ -0,0 +1,94 @@
+package com.learnkafka.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    static final long NOW = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    void idCarriesTimestampAndNode() {
+
+        var generator = new SnowflakeIdGenerator(42, () -> NOW);
+
+        long id = generator.nextId();
+
+        assertEquals(NOW, SnowflakeIdGenerator.timestampMillis(id));
+        assertEquals(42, SnowflakeIdGenerator.nodeId(id));
+    }
+
+    @Test
+    void exhaustedSequenceBorrowsTheNextMillisecond() {
+
+        //given: el reloj no avanza
+        var generator = new SnowflakeIdGenerator(1, () -> NOW);
+
+        //when: se piden mas IDs de los que caben en un milisegundo
+        long previous = generator.nextId();
+        for (int i = 1; i <= 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+
+        //then
+        assertEquals(NOW + 1, SnowflakeIdGenerator.timestampMillis(previous));
+    }
+
+    @Test
+    void clockGoingBackwardsNeverRepeatsIds() {
+
+        //given
+        AtomicLong clock = new AtomicLong(NOW);
+        var generator = new SnowflakeIdGenerator(1, clock::get);
+        long before = generator.nextId();
+
+        //when
+        clock.set(NOW - 5_000);
+        long after = generator.nextId();
+
+        //then
+        assertTrue(after > before);
+    }
+
+    @Test
+    void concurrentCallersGetUniqueIds() throws InterruptedException {
+
+        //given
+        var generator = new SnowflakeIdGenerator(7);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        //then
+        assertEquals(400_000, ids.size());
+    }
+
+    @Test
+    void nodeIdOutOfRange() {
+
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+    }
+}
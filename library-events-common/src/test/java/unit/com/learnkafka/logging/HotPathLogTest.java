@@ -0,0 +1,88 @@
+package com.learnkafka.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class HotPathLogTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Logger hotPathLogger = (Logger) LoggerFactory.getLogger(HotPathLog.HOT_PATH_LOGGER);
+    ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        hotPathLogger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hotPathLogger.detachAppender(appender);
+    }
+
+    @Test
+    void record_isLimitedPerTypeAndWritesNoPayload() {
+
+        //given
+        HotPathLog.Event persisted = new HotPathLog(meterRegistry, 2).event("persisted");
+
+        //when: el tercer NEW del mismo segundo se descarta; UPDATE tiene su propio limite
+        persisted.record("NEW", 1L, "library-events", 0, 10L);
+        persisted.record("NEW", 2L, "library-events", 0, 11L);
+        persisted.record("NEW", 3L, "library-events", 0, 12L);
+        persisted.record("UPDATE", 1L, "library-events", 0, 13L);
+
+        //then
+        assertEquals(3, appender.list.size());
+        assertEquals("event=persisted type=NEW libraryEventId=1 topic=library-events partition=0 offset=10 suppressed=0",
+                appender.list.get(0).getFormattedMessage());
+        assertEquals(1.0, meterRegistry.get("library.events.log.suppressed").tag("event", "persisted").counter().count());
+    }
+
+    @Test
+    void record_zeroMaxPerSecondDisablesTheHotPathLog() {
+
+        //given
+        HotPathLog.Event received = new HotPathLog(meterRegistry, 0).event("received");
+
+        //when
+        received.record(null, 1L, "library-events", 0, 10L);
+
+        //then
+        assertFalse(appender.list.stream().anyMatch(event -> event.getFormattedMessage().contains("event=received")));
+    }
+
+    @Test
+    void debugEvent_isWrittenOnlyWithDebugEnabled() {
+
+        //given
+        HotPathLog.Event republished = new HotPathLog(meterRegistry, 10).debugEvent("republished");
+        Level level = hotPathLogger.getLevel();
+
+        try {
+            //when
+            hotPathLogger.setLevel(Level.INFO);
+            republished.record(null, 1L, "library-events", 0, 10L);
+            hotPathLogger.setLevel(Level.DEBUG);
+            republished.record(null, 2L, "library-events", 0, 11L);
+        } finally {
+            hotPathLogger.setLevel(level);
+        }
+
+        //then
+        assertEquals(1, appender.list.size());
+        assertEquals(Level.DEBUG, appender.list.get(0).getLevel());
+        assertEquals("event=republished type=- libraryEventId=2 topic=library-events partition=0 offset=11 suppressed=0",
+                appender.list.get(0).getFormattedMessage());
+    }
+}
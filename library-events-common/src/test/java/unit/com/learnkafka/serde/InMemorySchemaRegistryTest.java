@@ -0,0 +1,40 @@
+package com.learnkafka.serde;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemorySchemaRegistryTest {
+
+    @Test
+    void libraryEventSchemasHaveFixedIdsInEveryInstance() {
+
+        //given: el productor solo registra V2 y el consumidor V1 y V2, cada uno en su propia instancia
+        var producerRegistry = new InMemorySchemaRegistry();
+        var consumerRegistry = new InMemorySchemaRegistry();
+
+        //when
+        int producerV2 = producerRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V2);
+        consumerRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V1);
+        int consumerV2 = consumerRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V2);
+
+        //then
+        assertEquals(LibraryEventSchemas.V2_ID, producerV2);
+        assertEquals(LibraryEventSchemas.V2_ID, consumerV2);
+        assertEquals(LibraryEventSchemas.V1, consumerRegistry.getSchema(LibraryEventSchemas.V1_ID));
+    }
+
+    @Test
+    void otherSchemasGetTheNextFreeId() {
+
+        //given
+        var schemaRegistry = new InMemorySchemaRegistry();
+
+        //when
+        int id = schemaRegistry.register("other-value", "{\"type\":\"string\"}");
+
+        //then
+        assertEquals(3, id);
+        assertEquals(id, schemaRegistry.register("other-value", "{\"type\":\"string\"}"));
+    }
+}
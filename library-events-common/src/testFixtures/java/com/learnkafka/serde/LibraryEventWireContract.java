@@ -0,0 +1,20 @@
+package com.learnkafka.serde;
+
+// Contrato del formato binario entre productor y consumidor: no comparten classpath (cada uno tiene sus propias
+// clases com.learnkafka), asi que los dos prueban contra estos mismos bytes. El productor debe escribirlos con un
+// registry recien creado y el consumidor leerlos con otro registry recien creado.
+public final class LibraryEventWireContract {
+
+    public static final long LIBRARY_EVENT_ID = 1L << 40;
+    public static final String LIBRARY_EVENT_TYPE = "UPDATE";
+    public static final int BOOK_ID = 456;
+    public static final String BOOK_NAME = "Kafka Using Spring Boot";
+    public static final String BOOK_AUTHOR = "Dilip";
+
+    // Valor de la cabecera library-event-schema-id
+    public static final int SCHEMA_ID = LibraryEventSchemas.V2_ID;
+    public static final String VALUE_HEX = "028080808080400290072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970";
+
+    private LibraryEventWireContract() {
+    }
+}
@@ -0,0 +1,137 @@
+package com.learnkafka.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.learnkafka.model.Book;
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// Compara las dos lineas INFO por registro de antes (ConsumerRecord y entidad completos, appender sincrono) con
+// HotPathLog (sin payload, limitado por tipo y con AsyncAppender). Ambos usan el patron de consola de Spring Boot
+// y escriben en un stream que descarta los bytes, asi que solo se mide el coste del formateo y del appender.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class HotPathLoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%t] %-40.40logger{39} : %m%n";
+
+    private LoggerContext loggerContext;
+    private Logger payloadLogger;
+    private HotPathLog.Event sampledReceived;
+    private HotPathLog.Event sampledPersisted;
+    private HotPathLog.Event unlimitedReceived;
+    private HotPathLog.Event unlimitedPersisted;
+
+    private ConsumerRecord<Long, String> consumerRecord;
+    private LibraryEvent libraryEvent;
+
+    @Setup
+    public void setUp() {
+
+        loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+
+        // Camino anterior: appender sincrono en el hilo del listener
+        payloadLogger = loggerContext.getLogger("com.learnkafka.service.LibraryEventService");
+        payloadLogger.setLevel(Level.INFO);
+        payloadLogger.setAdditive(false);
+        payloadLogger.addAppender(nullAppender("SYNC"));
+
+        // Camino nuevo: la misma configuracion que logback-spring.xml
+        AsyncAppender asyncAppender = new AsyncAppender();
+        asyncAppender.setContext(loggerContext);
+        asyncAppender.setName("HOT_PATH");
+        asyncAppender.setQueueSize(8192);
+        asyncAppender.setDiscardingThreshold(0);
+        asyncAppender.setNeverBlock(true);
+        asyncAppender.addAppender(nullAppender("HOT_PATH_SINK"));
+        asyncAppender.start();
+        Logger hotPathLogger = loggerContext.getLogger(HotPathLog.HOT_PATH_LOGGER);
+        hotPathLogger.setLevel(Level.INFO);
+        hotPathLogger.setAdditive(false);
+        hotPathLogger.addAppender(asyncAppender);
+
+        HotPathLog sampled = new HotPathLog(new SimpleMeterRegistry(), 100);
+        sampledReceived = sampled.event("received");
+        sampledPersisted = sampled.event("persisted");
+        HotPathLog unlimited = new HotPathLog(new SimpleMeterRegistry(), Integer.MAX_VALUE);
+        unlimitedReceived = unlimited.event("received");
+        unlimitedPersisted = unlimited.event("persisted");
+
+        consumerRecord = new ConsumerRecord<>("library-events", 0, 42L, 7214522348683264L,
+                "{\"libraryEventId\":7214522348683264,\"libraryEventType\":\"NEW\",\"book\":" +
+                        "{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+        libraryEvent = LibraryEvent.builder()
+                .libraryEventId(7214522348683264L)
+                .libraryEventType(LibraryEventType.NEW)
+                .book(Book.builder().bookId(456).bookName("Kafka Using Spring Boot").bookAuthor("Dilip").build())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loggerContext.reset();
+    }
+
+    @Benchmark
+    public void payloadSynchronous() {
+        payloadLogger.info("ConsumerRecord : {} ", consumerRecord);
+        payloadLogger.info("Successfully persisted the library event {}", libraryEvent);
+    }
+
+    @Benchmark
+    public void hotPathSampled() {
+        record(sampledReceived, sampledPersisted);
+    }
+
+    // Sin limite: aisla el ahorro del formato sin payload y del AsyncAppender
+    @Benchmark
+    public void hotPathUnlimited() {
+        record(unlimitedReceived, unlimitedPersisted);
+    }
+
+    private void record(HotPathLog.Event received, HotPathLog.Event persisted) {
+        received.record(null, consumerRecord.key(), consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+        persisted.record(libraryEvent.getLibraryEventType(), libraryEvent.getLibraryEventId(),
+                consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+    }
+
+    private Appender<ILoggingEvent> nullAppender(String name) {
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(loggerContext);
+        appender.setName(name);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        return appender;
+    }
+}
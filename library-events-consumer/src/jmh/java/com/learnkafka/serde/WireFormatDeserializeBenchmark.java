@@ -0,0 +1,60 @@
+package com.learnkafka.serde;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.model.LibraryEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// Camino completo del listener hasta la entidad que usa el servicio: LibraryEventWireDeserializer -> LibraryEventValues.read.
+// JSON: String + objectMapper.readValue; binario: entidad decodificada + copia, sin pasar por JSON
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WireFormatDeserializeBenchmark {
+
+    private ObjectMapper objectMapper;
+    private LibraryEventWireDeserializer wireDeserializer;
+    private byte[] jsonBytes;
+    private RecordHeaders jsonHeaders;
+    private byte[] binaryBytes;
+    private RecordHeaders binaryHeaders;
+
+    @Setup
+    public void setUp() {
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        wireDeserializer = new LibraryEventWireDeserializer(new LibraryEventBinaryDeserializer(new InMemorySchemaRegistry()));
+
+        jsonBytes = ("{\"libraryEventId\":123,\"libraryEventType\":\"UPDATE\",\"book\":" +
+                "{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}")
+                .getBytes(StandardCharsets.UTF_8);
+        jsonHeaders = new RecordHeaders();
+        binaryBytes = HexFormat.of().parseHex("02f6010290072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970");
+        binaryHeaders = new RecordHeaders();
+        binaryHeaders.add(LibraryEventSchemas.SCHEMA_ID_HEADER, ByteBuffer.allocate(Integer.BYTES)
+                .putInt(LibraryEventSchemas.V2_ID).array());
+    }
+
+    @Benchmark
+    public LibraryEvent json() throws JsonProcessingException {
+        return LibraryEventValues.read(wireDeserializer.deserialize("library-events", jsonHeaders, jsonBytes), objectMapper);
+    }
+
+    @Benchmark
+    public LibraryEvent binary() throws JsonProcessingException {
+        return LibraryEventValues.read(wireDeserializer.deserialize("library-events", binaryHeaders, binaryBytes), objectMapper);
+    }
+}
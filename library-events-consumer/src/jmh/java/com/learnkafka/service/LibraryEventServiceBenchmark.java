@@ -0,0 +1,88 @@
+package com.learnkafka.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.learnkafka.LibraryEventsConsumerApplication;
+import com.learnkafka.config.LibraryEventsConsumerConfig;
+import com.learnkafka.repository.LibraryEventsRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// Mide el camino caliente del consumidor contra H2 en memoria, con los listeners de Kafka apagados
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LibraryEventServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private LibraryEventService libraryEventService;
+    private FailureService failureService;
+
+    private ConsumerRecord<Long, String> updateRecord;
+    private ConsumerRecord<Long, String> failedRecord;
+    private Exception failure;
+    private int nextBookId;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+
+        context = new SpringApplicationBuilder(LibraryEventsConsumerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("libraryListener.startup=false",
+                        "retryListener.startup=false",
+                        "logging.level.com.learnkafka=WARN")
+                .run();
+        libraryEventService = context.getBean(LibraryEventService.class);
+        failureService = context.getBean(FailureService.class);
+
+        // Inserta un evento para tener un ID valido sobre el que aplicar UPDATE
+        libraryEventService.processLibraryEvent(newRecord(nextBookId++));
+        Long libraryEventId = context.getBean(LibraryEventsRepository.class).findAll()
+                .iterator().next().getLibraryEventId();
+        updateRecord = new ConsumerRecord<>("library-events", 0, 0L, libraryEventId,
+                "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"UPDATE\",\"book\":" +
+                        "{\"bookId\":0,\"bookName\":\"Kafka Using Spring Boot 2.X\",\"bookAuthor\":\"Dilip\"}}");
+
+        failedRecord = newRecord(-1);
+        failure = new IllegalArgumentException("Not a valid library Event: ID does not exist");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void processNewLibraryEvent() throws JsonProcessingException {
+        // Cada NEW necesita un bookId distinto porque Book usa un @Id asignado
+        libraryEventService.processLibraryEvent(newRecord(nextBookId++));
+    }
+
+    @Benchmark
+    public void processUpdateLibraryEvent() throws JsonProcessingException {
+        libraryEventService.processLibraryEvent(updateRecord);
+    }
+
+    @Benchmark
+    public void saveFailedRecord() {
+        // DEAD para que el RetryScheduler no recoja las filas generadas por el benchmark
+        failureService.saveFailedRecord(failedRecord, failure, LibraryEventsConsumerConfig.DEAD);
+    }
+
+    private static ConsumerRecord<Long, String> newRecord(int bookId) {
+        return new ConsumerRecord<>("library-events", 0, 0L, null,
+                "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":" +
+                        "{\"bookId\":" + bookId + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+    }
+}
@@ -0,0 +1,40 @@
+package com.learnkafka.config;
+
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// KafkaTransactionManager desactiva la sincronizacion de transacciones para convivir con el JpaTransactionManager,
+// asi que TransactionSynchronization.afterCommit no esta disponible en el listener. Las acciones que el listener
+// registra en su hilo con afterCommit() se ejecutan al confirmarse la transaccion de Kafka del poll, y se descartan
+// si se aborta.
+public class AfterCommitKafkaTransactionManager<K, V> extends KafkaTransactionManager<K, V> {
+
+    private static final ThreadLocal<List<Runnable>> AFTER_COMMIT = ThreadLocal.withInitial(ArrayList::new);
+
+    public AfterCommitKafkaTransactionManager(ProducerFactory<K, V> producerFactory) {
+        super(producerFactory);
+    }
+
+    public static void afterCommit(Runnable action) {
+        AFTER_COMMIT.get().add(action);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        List<Runnable> actions = new ArrayList<>(AFTER_COMMIT.get());
+        AFTER_COMMIT.remove();
+        actions.forEach(Runnable::run);
+    }
+
+    // Se llama siempre al terminar, confirmada o abortada
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        AFTER_COMMIT.remove();
+        super.doCleanupAfterCompletion(transaction);
+    }
+}
@@ -1,13 +1,22 @@
 package com.learnkafka.config;
 
+import com.learnkafka.service.DatabaseCircuitBreaker;
 import com.learnkafka.service.FailureService;
 import com.learnkafka.service.LibraryEventService;
+import com.learnkafka.service.ProcessedRecordIndex;
+import com.learnkafka.state.LibraryStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
@@ -16,11 +25,17 @@ import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.util.backoff.FixedBackOff;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Configuration
@@ -43,49 +58,130 @@ public class LibraryEventsConsumerConfig {
     @Autowired
     FailureService failureService;
 
-    @Value("library-events.RETRY")
-    private String retryTopic;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ObjectProvider<LibraryStateStore> libraryStateStore;
+
+    @Autowired
+    ObjectProvider<ProcessedRecordIndex> processedRecordIndex;
+
+    @Autowired
+    RetryTiers retryTiers;
+
+    @Autowired
+    DatabaseCircuitBreaker circuitBreaker;
 
     @Value("library-events.DLT")
     private String deadLetterTopic;
 
+    @Value("${libraryListener.mode:record}")
+    private String listenerMode;
+
     // 1. Implementar la Estrategia de Recuperación (Publishing Recoverer)
+    // Es un bean para que el modo paralelo pueda recuperar registros fuera del contenedor con la misma logica
+    @Bean
     public DeadLetterPublishingRecoverer publishingRecoverer() {
+        return recovererFor(this.kafkaTemplate);
+    }
+
+    // Mismo enrutamiento con otra plantilla; el modo transactional publica con la del productor transaccional
+    public DeadLetterPublishingRecoverer recovererFor(KafkaOperations<?, ?> template) {
 
         // 1.1 Este recuperador toma el mensaje fallido y lo re-publica
-        return new DeadLetterPublishingRecoverer(this.kafkaTemplate, (record, exception) -> {
+        var recoverer = new DeadLetterPublishingRecoverer(template, (record, exception) -> {
             log.error("Exception in publishingRecoverer: {}", exception.getMessage(), exception);
 
-            // 1.2 Si el error es recuperable (ej. DB temporalmente caida)
-            if (exception.getCause() instanceof RecoverableDataAccessException) {
+            // 1.2 Si el error es recuperable (ej. DB temporalmente caida) y le quedan intentos
+            int tier = nextRetryTier(record, exception);
+            if (tier >= 0) {
 
-                // 1.3 envia el mensaje al topic de reintentos
-                return new TopicPartition(retryTopic, record.partition());
+                // 1.3 envia el mensaje al topic del siguiente nivel de reintentos
+                meterRegistry.counter("library.events.consumer.recovered",
+                        "destination", "retry", "tier", retryTiers.tierTag(tier)).increment();
+                return new TopicPartition(retryTiers.topic(tier), record.partition());
             } else {
 
-                // 1.4 Para todos los demas errores, envia al dead letter topic
+                // 1.4 Para todos los demas errores, o al agotar los intentos, envia al dead letter topic
+                meterRegistry.counter("library.events.consumer.recovered", "destination", "dlt", "tier", "none").increment();
                 return new TopicPartition(deadLetterTopic, record.partition());
             }
         });
+
+        // 1.5 Intento y vencimiento del reintento; el consumidor de reintentos no lo procesa antes de esa hora
+        recoverer.setHeadersFunction((record, exception) -> {
+            int tier = nextRetryTier(record, exception);
+            return tier >= 0 ? retryTiers.retryHeaders(record, tier) : new RecordHeaders();
+        });
+        return recoverer;
+    }
+
+    // Si no se puede publicar en RETRY/DLT el registro se guarda como FailureRecord para el RetryScheduler
+    // (en lotes con failureService.writeBehind), en lugar de reintentarlo sin fin en el contenedor
+    @SuppressWarnings("unchecked")
+    private ConsumerRecordRecoverer recoverer(DeadLetterPublishingRecoverer publishingRecoverer) {
+        return (record, exception) -> {
+            try {
+                publishingRecoverer.accept(record, exception);
+            } catch (RuntimeException e) {
+                log.error("Publishing failed for {}-{}@{}, saving failure record : {}",
+                        record.topic(), record.partition(), record.offset(), e.getMessage());
+                failureService.saveFailedRecord((ConsumerRecord<Long, ?>) record, exception, RETRY);
+            }
+        };
+    }
+
+    private int nextRetryTier(ConsumerRecord<?, ?> record, Exception exception) {
+        return isRecoverable(exception) ? retryTiers.nextTier(record) : -1;
+    }
+
+    // En modo batch la causa llega envuelta en BatchListenerFailedException, por eso se recorre toda la cadena
+    private static boolean isRecoverable(Throwable exception) {
+        for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof RecoverableDataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable rootCause(Throwable exception) {
+        Throwable cause = exception;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
     }
 
     // 2. Configurar el Manejador de Errores principal (Error Handler)
     public DefaultErrorHandler errorHandler() {
 
         // 2.1 Define una politica de reintentos: 2 intentos con 1 segundo de espera entre ellos.
-        var fixedBackOff = new FixedBackOff(1000L, 2L);
+        return errorHandler(new FixedBackOff(1000L, 2L));
+    }
+
+    private DefaultErrorHandler errorHandler(FixedBackOff fixedBackOff) {
 
         // 2.2 Crea el manejandor de errores, pasandole el recuperador y la politica de reintentos
-        var defaultErrorHandler = new DefaultErrorHandler(publishingRecoverer(), fixedBackOff);
+        var defaultErrorHandler = new DefaultErrorHandler(recoverer(publishingRecoverer()), fixedBackOff);
 
         // 2.3 Define excepciones que NO deben ser reintentadas (ej. un mensaje malformado)
         var exceptionsToIgnore = List.of(IllegalArgumentException.class);
         exceptionsToIgnore.forEach(defaultErrorHandler::addNotRetryableExceptions);
 
-        // 2.4 Añade un listener para registrar cada intento fallido.
+        // 2.4 Con el circuit breaker abierto el registro se reintenta sin limite: nunca va a RETRY/DLT ni se
+        // confirma su offset, y los contenedores pausados no vuelven a leerlo hasta que el breaker pase a HALF_OPEN
+        defaultErrorHandler.setBackOffFunction((record, exception) -> DatabaseCircuitBreaker.isRejection(exception)
+                ? new FixedBackOff(circuitBreaker.rejectedBackOffMs(), FixedBackOff.UNLIMITED_ATTEMPTS)
+                : null);
+
+        // 2.5 Añade un listener para registrar cada intento fallido.
         defaultErrorHandler.setRetryListeners(
                 (record, exception, deliveryAttempt) -> {
                     log.info("Failed Record in retry listener exception : {}" , exception.getMessage(), deliveryAttempt);
+                    meterRegistry.counter("library.events.consumer.retries",
+                            "exception", rootCause(exception).getClass().getSimpleName()).increment();
                 });
 
         return defaultErrorHandler;
@@ -112,6 +208,89 @@ public class LibraryEventsConsumerConfig {
 
         // 3.4 Asigna nuestro manejador de errores personalizado
         factory.setCommonErrorHandler(errorHandler());
+
+        // 3.5 Con el state store activo se restaura su snapshot; con la idempotencia, la ventana de cada particion
+        // arranca en su offset confirmado
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceListener());
+        return factory;
+    }
+
+    // 4. Fabrica para el modo paralelo (libraryListener.mode=parallel)
+    @Bean
+    @ConditionalOnProperty(name = "libraryListener.mode", havingValue = "parallel")
+    ConcurrentKafkaListenerContainerFactory<?, ?> parallelKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ObjectProvider<ConsumerFactory<Object, Object>> kafkaConsumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory
+                .getIfAvailable(() -> new DefaultKafkaConsumerFactory<>(this.kafkaProperties.buildConsumerProperties())));
+        factory.setConcurrency(3);
+
+        // 4.1 Los workers hacen ack desde otros hilos y en cualquier orden; con asyncAcks el contenedor
+        // difiere el commit hasta que no haya huecos, es decir, solo hasta el offset completado mas bajo
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+
+        factory.setCommonErrorHandler(errorHandler());
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceListener());
+        return factory;
+    }
+
+    // 5. Fabrica de los topics de reintento diferido (LibraryEventsRetryConsumer)
+    @Bean
+    ConcurrentKafkaListenerContainerFactory<?, ?> retryKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ObjectProvider<ConsumerFactory<Object, Object>> kafkaConsumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory
+                .getIfAvailable(() -> new DefaultKafkaConsumerFactory<>(this.kafkaProperties.buildConsumerProperties())));
+        factory.setConcurrency(3);
+
+        // 5.1 Ack manual: los registros que aun no vencen no se confirman, se vuelven a leer al reanudar la particion
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+
+        // 5.2 Sin reintentos bloqueantes: la espera entre intentos la dan los propios niveles
+        factory.setCommonErrorHandler(errorHandler(new FixedBackOff(0L, 0L)));
+
+        // 5.3 En modo transactional los reenvios de una transaccion abortada no deben reprocesarse; en el resto de
+        // modos se mantiene el read_uncommitted por defecto y los registros se leen sin esperar al LSO
+        if ("transactional".equals(listenerMode)) {
+            factory.getContainerProperties().getKafkaConsumerProperties()
+                    .setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        }
         return factory;
     }
+
+    // El contenedor admite un solo rebalance listener: se avisa al state store y al indice de idempotencia
+    // que esten activos, en ese orden
+    private ConsumerAwareRebalanceListener rebalanceListener() {
+
+        List<ConsumerAwareRebalanceListener> listeners = new ArrayList<>();
+        libraryStateStore.ifAvailable(listeners::add);
+        processedRecordIndex.ifAvailable(listeners::add);
+        return new ConsumerAwareRebalanceListener() {
+
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                listeners.forEach(listener -> listener.onPartitionsRevokedBeforeCommit(consumer, partitions));
+            }
+
+            @Override
+            public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                listeners.forEach(listener -> listener.onPartitionsRevokedAfterCommit(consumer, partitions));
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                listeners.forEach(listener -> listener.onPartitionsLost(consumer, partitions));
+            }
+
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                listeners.forEach(listener -> listener.onPartitionsAssigned(consumer, partitions));
+            }
+        };
+    }
 }
@@ -0,0 +1,24 @@
+package com.learnkafka.config;
+
+import com.learnkafka.state.LibraryStateStore;
+import com.learnkafka.state.StateStoreCommitInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "libraryEvents.stateStore.enabled", havingValue = "true")
+public class LibraryStateStoreConfig {
+
+    // Registra StateStoreCommitInterceptor en los consumidores de la fabrica de Spring Boot y le pasa el store
+    @Bean
+    DefaultKafkaConsumerFactoryCustomizer stateStoreCommitInterceptorCustomizer(LibraryStateStore libraryStateStore) {
+        return consumerFactory -> consumerFactory.updateConfigs(Map.of(
+                ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG, StateStoreCommitInterceptor.class.getName(),
+                StateStoreCommitInterceptor.STATE_STORE_CONFIG, libraryStateStore));
+    }
+}
@@ -0,0 +1,107 @@
+package com.learnkafka.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+// Niveles de reintento diferido: un topic por retardo (library-events.RETRY-5000, -30000, -300000).
+// Cada registro reenviado lleva su numero de intento y el instante a partir del cual vence; el consumidor
+// de reintentos pausa la particion hasta ese instante en lugar de reprocesarlo en el acto. Como todos los
+// registros de un nivel tienen el mismo retardo, si el primero no ha vencido tampoco lo han hecho los siguientes.
+// Pasados retryTopics.attempts intentos (repitiendo el ultimo nivel si hay mas intentos que niveles) va al DLT.
+@Component
+public class RetryTiers {
+
+    public static final String ATTEMPT_HEADER = "library-event-retry-attempt";
+    public static final String DUE_AT_HEADER = "library-event-retry-due-at";
+
+    private final String retryTopicPrefix;
+    private final long[] delaysMs;
+    private final int attempts;
+
+    public RetryTiers(@Value("${topics.retry}") String retryTopicPrefix,
+                      @Value("${retryTopics.delaysMs:5000,30000,300000}") long[] delaysMs,
+                      @Value("${retryTopics.attempts:3}") int attempts) {
+        if (delaysMs.length == 0) {
+            throw new IllegalArgumentException("retryTopics.delaysMs needs at least one delay");
+        }
+        this.retryTopicPrefix = retryTopicPrefix;
+        this.delaysMs = delaysMs.clone();
+        this.attempts = attempts;
+    }
+
+    public List<String> topics() {
+        return Arrays.stream(delaysMs).mapToObj(this::topicFor).toList();
+    }
+
+    public String topic(int tier) {
+        return topicFor(delaysMs[tier]);
+    }
+
+    // Etiqueta del nivel en las metricas
+    public String tierTag(int tier) {
+        return String.valueOf(delaysMs[tier]);
+    }
+
+    public long delayMs(int tier) {
+        return delaysMs[tier];
+    }
+
+    // Nivel de un topic de reintentos, o -1 si no lo es
+    public int tierOf(String topic) {
+        for (int tier = 0; tier < delaysMs.length; tier++) {
+            if (topic(tier).equals(topic)) {
+                return tier;
+            }
+        }
+        return -1;
+    }
+
+    // Nivel al que debe ir el siguiente reintento del registro, o -1 si ya agoto los intentos
+    public int nextTier(ConsumerRecord<?, ?> record) {
+        int attempt = attempt(record);
+        return attempt < attempts ? Math.min(attempt, delaysMs.length - 1) : -1;
+    }
+
+    // Cabeceras que se añaden al reenviar el registro al nivel indicado
+    public Headers retryHeaders(ConsumerRecord<?, ?> record, int tier) {
+        long dueAt = System.currentTimeMillis() + delaysMs[tier];
+        return new RecordHeaders()
+                .add(ATTEMPT_HEADER, String.valueOf(attempt(record) + 1).getBytes(StandardCharsets.UTF_8))
+                .add(DUE_AT_HEADER, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Reintentos diferidos que ya lleva el registro; 0 si viene del topic principal
+    public static int attempt(ConsumerRecord<?, ?> record) {
+        return (int) longHeader(record, ATTEMPT_HEADER);
+    }
+
+    // Epoch millis a partir del cual se puede reprocesar; 0 si no tiene
+    public static long dueAt(ConsumerRecord<?, ?> record) {
+        return longHeader(record, DUE_AT_HEADER);
+    }
+
+    // El DeadLetterPublishingRecoverer conserva las cabeceras originales, la ultima es la del ultimo reenvio
+    private static long longHeader(ConsumerRecord<?, ?> record, String key) {
+        Header header = record.headers().lastHeader(key);
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private String topicFor(long delayMs) {
+        return retryTopicPrefix + "-" + delayMs;
+    }
+}
@@ -0,0 +1,85 @@
+package com.learnkafka.config;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.UUID;
+
+// Modo exactly-once (libraryListener.mode=transactional). El productor transaccional, su plantilla y el
+// KafkaTransactionManager no son beans: un ProducerFactory, KafkaTemplate o TransactionManager mas haria que Spring
+// Boot dejara de crear los suyos (incluido el JpaTransactionManager que usa LibraryEventService).
+@Configuration
+@ConditionalOnProperty(name = "libraryListener.mode", havingValue = "transactional")
+public class TransactionalKafkaConfig {
+
+    private final KafkaProperties kafkaProperties;
+    private final DefaultKafkaProducerFactory<Long, String> transactionalProducerFactory;
+    private final KafkaTemplate<Long, String> transactionalKafkaTemplate;
+
+    // Con EOS v2 el transactional.id no tiene que ser estable, pero si unico por instancia: dos replicas con el
+    // mismo prefijo se harian fencing entre si
+    public TransactionalKafkaConfig(KafkaProperties kafkaProperties,
+                                    @Value("${libraryEvents.exactlyOnce.transactionIdPrefix:}") String transactionIdPrefix) {
+        this.kafkaProperties = kafkaProperties;
+        this.transactionalProducerFactory = new DefaultKafkaProducerFactory<>(kafkaProperties.buildProducerProperties());
+        this.transactionalProducerFactory.setTransactionIdPrefix(transactionIdPrefix.isBlank()
+                ? "library-events-consumer-" + UUID.randomUUID() + "-" : transactionIdPrefix);
+        this.transactionalKafkaTemplate = new KafkaTemplate<>(transactionalProducerFactory);
+    }
+
+    // 1. Los envios a RETRY/DLT van en la transaccion de Kafka del poll
+    @Bean
+    public DeadLetterPublishingRecoverer transactionalPublishingRecoverer(LibraryEventsConsumerConfig libraryEventsConsumerConfig) {
+        return libraryEventsConsumerConfig.recovererFor(transactionalKafkaTemplate);
+    }
+
+    // 2. Un poll = una transaccion de Kafka (offsets + envios del recoverer) que envuelve la transaccion JPA del servicio
+    @Bean
+    ConcurrentKafkaListenerContainerFactory<?, ?> transactionalKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ObjectProvider<ConsumerFactory<Object, Object>> kafkaConsumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory
+                .getIfAvailable(() -> new DefaultKafkaConsumerFactory<>(this.kafkaProperties.buildConsumerProperties())));
+        // 2.1 La concurrencia configurada (spring.kafka.listener.concurrency) la aplica el configurer; 3 si no hay.
+        // Con libraryEvents.autoscaler.enabled=true el autoscaler la ajusta en tiempo de ejecucion, igual que al principal
+        if (kafkaProperties.getListener().getConcurrency() == null) {
+            factory.setConcurrency(3);
+        }
+
+        // 2.2 Listener batch: el coste de la transaccion se paga una vez por poll y no por registro
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setKafkaAwareTransactionManager(new AfterCommitKafkaTransactionManager<>(transactionalProducerFactory));
+
+        // 2.3 read_committed: no se leen registros de transacciones abortadas ni pendientes
+        factory.getContainerProperties().getKafkaConsumerProperties()
+                .setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+        // 2.4 Los registros invalidos se recuperan dentro del listener; lo que llega aqui es un fallo de infraestructura
+        // (base de datos, broker). Se rebobina el poll y se reintenta sin limite: los registros ya aplicados los
+        // descarta el servicio por el offset guardado en la base de datos
+        factory.setAfterRollbackProcessor(new DefaultAfterRollbackProcessor<>(new FixedBackOff(1000L, FixedBackOff.UNLIMITED_ATTEMPTS)));
+        return factory;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        transactionalProducerFactory.destroy();
+    }
+}
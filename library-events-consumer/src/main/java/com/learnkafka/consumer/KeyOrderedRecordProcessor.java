@@ -0,0 +1,172 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.config.LibraryEventsConsumerConfig;
+import com.learnkafka.scheduler.ConsumerLagMonitor;
+import com.learnkafka.service.DatabaseUnavailableException;
+import com.learnkafka.service.FailureService;
+import com.learnkafka.service.LibraryEventService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Reparte los registros de una particion entre "carriles" de un solo hilo. Todos los registros con la
+// misma key (libraryEventId) caen en el mismo carril, por lo que se procesan en orden; keys distintas
+// avanzan en paralelo. El commit lo hace el contenedor con asyncAcks, sin saltarse offsets pendientes.
+@Component
+@ConditionalOnProperty(name = "libraryListener.mode", havingValue = "parallel")
+@Slf4j
+public class KeyOrderedRecordProcessor {
+
+    // Misma politica que el DefaultErrorHandler: 1 intento + 2 reintentos con 1 segundo de espera
+    static final int MAX_ATTEMPTS = 3;
+    static final long BACK_OFF_MS = 1000L;
+
+    private final LibraryEventService libraryEventService;
+    private final DeadLetterPublishingRecoverer publishingRecoverer;
+    private final FailureService failureService;
+    private final ConsumerLagMonitor consumerLagMonitor;
+    private final ExecutorService[] lanes;
+    private final Semaphore inFlight;
+
+    public KeyOrderedRecordProcessor(LibraryEventService libraryEventService,
+                                     DeadLetterPublishingRecoverer publishingRecoverer,
+                                     FailureService failureService,
+                                     ConsumerLagMonitor consumerLagMonitor,
+                                     @Value("${libraryListener.parallel.lanes:16}") int laneCount,
+                                     @Value("${libraryListener.parallel.maxInFlight:1000}") int maxInFlight) {
+        this.libraryEventService = libraryEventService;
+        this.publishingRecoverer = publishingRecoverer;
+        this.failureService = failureService;
+        this.consumerLagMonitor = consumerLagMonitor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.lanes = new ExecutorService[laneCount];
+        for (int lane = 0; lane < laneCount; lane++) {
+            lanes[lane] = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("library-events-lane-" + lane + "-"));
+        }
+    }
+
+    // Se invoca desde el hilo del listener. Bloquea cuando hay maxInFlight registros pendientes,
+    // lo que frena el poll en lugar de acumular registros en memoria.
+    public void submit(ConsumerRecord<Long, ?> consumerRecord, Acknowledgment acknowledgment) throws InterruptedException {
+
+        inFlight.acquire();
+        try {
+            lanes[laneFor(consumerRecord)].execute(() -> process(consumerRecord, acknowledgment));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    int laneFor(ConsumerRecord<Long, ?> consumerRecord) {
+
+        // Los NEW sin key no tienen orden que preservar; se reparten por offset
+        int hash = consumerRecord.key() != null ? consumerRecord.key().hashCode() : Long.hashCode(consumerRecord.offset());
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    private void process(ConsumerRecord<Long, ?> consumerRecord, Acknowledgment acknowledgment) {
+
+        try {
+            try {
+                processWithRetries(consumerRecord);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                recover(consumerRecord, e);
+                acknowledgment.acknowledge();
+                return;
+            }
+            acknowledgment.acknowledge();
+            consumerLagMonitor.recordProcessed(LibraryEventsParallelConsumer.GROUP_ID, consumerRecord);
+        } catch (InterruptedException e) {
+            // Apagado con la base de datos caida: sin ack, el registro se reprocesa tras el reinicio
+            Thread.currentThread().interrupt();
+            log.warn("Lane interrupted at partition {} offset {}, offset will not be committed",
+                    consumerRecord.partition(), consumerRecord.offset());
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void processWithRetries(ConsumerRecord<Long, ?> consumerRecord) throws Exception {
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                libraryEventService.processLibraryEvent(consumerRecord);
+                return;
+            } catch (IllegalArgumentException e) {
+                // Igual que en el error handler: un mensaje invalido no se reintenta
+                throw e;
+            } catch (DatabaseUnavailableException e) {
+                // Circuit breaker abierto: el carril espera sin consumir intentos, conservando el orden de la key
+                attempt--;
+                Thread.sleep(BACK_OFF_MS);
+            } catch (Exception e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("Failed Record in lane retry exception : {}, attempt : {}", e.getMessage(), attempt);
+                Thread.sleep(BACK_OFF_MS);
+            }
+        }
+    }
+
+    // Solo hay ack cuando el registro quedo en RETRY/DLT o como FailureRecord. Si fallan los dos, el carril se queda
+    // bloqueado reintentando (como con el circuit breaker abierto): con asyncAcks el commit de la particion no pasa de
+    // este offset y, si la aplicacion se detiene antes, el registro se vuelve a entregar
+    private void recover(ConsumerRecord<Long, ?> consumerRecord, Exception exception) throws InterruptedException {
+
+        while (!tryRecover(consumerRecord, exception)) {
+            Thread.sleep(BACK_OFF_MS);
+        }
+    }
+
+    private boolean tryRecover(ConsumerRecord<Long, ?> consumerRecord, Exception exception) {
+
+        try {
+            // Se envuelve como lo haria el contenedor para que publishingRecoverer() elija RETRY o DLT igual
+            publishingRecoverer.accept(consumerRecord, new ListenerExecutionFailedException(exception.getMessage(), exception));
+            return true;
+        } catch (Exception recoveryException) {
+            // Sin RETRY/DLT el registro queda como FailureRecord y lo reintenta el RetryScheduler
+            log.error("Recovery failed for partition {} offset {}, saving it as a failure record : {}",
+                    consumerRecord.partition(), consumerRecord.offset(), recoveryException.getMessage());
+        }
+        try {
+            failureService.saveFailedRecord(consumerRecord, exception, LibraryEventsConsumerConfig.RETRY);
+            return true;
+        } catch (Exception saveException) {
+            log.error("Failure record not saved for partition {} offset {}, retrying recovery in {} ms : {}",
+                    consumerRecord.partition(), consumerRecord.offset(), BACK_OFF_MS, saveException.getMessage(), saveException);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+
+        // Los contenedores ya se detuvieron; se deja terminar el trabajo en curso
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                lane.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.scheduler.ConsumerLagMonitor;
+import com.learnkafka.service.LibraryEventService;
+import com.learnkafka.service.ProcessedRecordIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "libraryListener.mode", havingValue = "batch") // Solo activo con libraryListener.mode=batch
+@Slf4j
+public class LibraryEventsBatchConsumer {
+
+    static final String GROUP_ID = "library-events-listener-group";
+
+    private final LibraryEventService libraryEventService;
+    // Solo con libraryEvents.idempotency.enabled=true
+    private final ProcessedRecordIndex processedRecordIndex;
+    private final ConsumerLagMonitor consumerLagMonitor;
+
+    public LibraryEventsBatchConsumer(LibraryEventService libraryEventService,
+                                      ObjectProvider<ProcessedRecordIndex> processedRecordIndex,
+                                      ConsumerLagMonitor consumerLagMonitor) {
+        this.libraryEventService = libraryEventService;
+        this.processedRecordIndex = processedRecordIndex.getIfAvailable();
+        this.consumerLagMonitor = consumerLagMonitor;
+    }
+
+    @KafkaListener(topics = {"library-events"},
+            groupId = GROUP_ID,
+            batch = "true", // 1. Recibe todos los registros de un poll en una sola invocacion
+            autoStartup = "${libraryListener.startup:true}")
+    public void onMessage(List<ConsumerRecord<Long, ?>> consumerRecords) {
+
+        // 2. Registra el tamaño del lote recibido
+        log.info("ConsumerRecords batch size : {} ", consumerRecords.size());
+
+        // 3. Descarta los registros reentregados que ya se persistieron
+        if (processedRecordIndex != null) {
+            consumerRecords = consumerRecords.stream()
+                    .filter(consumerRecord -> !processedRecordIndex.isDuplicate(consumerRecord))
+                    .toList();
+            if (consumerRecords.isEmpty()) {
+                return;
+            }
+        }
+
+        // 4. Deserializa, valida y persiste el lote en una sola transaccion
+        libraryEventService.processLibraryEvents(consumerRecords);
+        consumerRecords.forEach(consumerRecord -> consumerLagMonitor.recordProcessed(GROUP_ID, consumerRecord));
+    }
+}
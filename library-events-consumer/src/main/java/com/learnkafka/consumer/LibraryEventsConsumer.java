@@ -1,32 +1,54 @@
 package com.learnkafka.consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.learnkafka.logging.HotPathLog;
+import com.learnkafka.scheduler.ConsumerLagMonitor;
 import com.learnkafka.service.LibraryEventService;
+import com.learnkafka.service.ProcessedRecordIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(name = "libraryListener.mode", havingValue = "record", matchIfMissing = true)
 @Slf4j
 public class LibraryEventsConsumer {
 
-    private final LibraryEventService libraryEventService;
+    static final String GROUP_ID = "library-events-listener-group";
 
-    public LibraryEventsConsumer(LibraryEventService libraryEventService) {
+    private final LibraryEventService libraryEventService;
+    // Solo con libraryEvents.idempotency.enabled=true
+    private final ProcessedRecordIndex processedRecordIndex;
+    private final HotPathLog.Event received;
+    private final ConsumerLagMonitor consumerLagMonitor;
+
+    public LibraryEventsConsumer(LibraryEventService libraryEventService,
+                                 ObjectProvider<ProcessedRecordIndex> processedRecordIndex, HotPathLog hotPathLog,
+                                 ConsumerLagMonitor consumerLagMonitor) {
         this.libraryEventService = libraryEventService;
-
+        this.processedRecordIndex = processedRecordIndex.getIfAvailable();
+        this.received = hotPathLog.event("received");
+        this.consumerLagMonitor = consumerLagMonitor;
     }
 
     @KafkaListener(topics = {"library-events"}, // 1. Especifica el topic a escuchar
-    groupId = "library-events-listener-group",  // 2. Asigna el consumidor a un grupo
+    groupId = GROUP_ID,  // 2. Asigna el consumidor a un grupo
     autoStartup = "${libraryListener.startup:true}") // 3. Controla el inicio automatico
-    public void onMessage(ConsumerRecord<Integer, String> consumerRecord) throws JsonProcessingException {
+    public void onMessage(ConsumerRecord<Long, ?> consumerRecord) throws JsonProcessingException {
+
+        // 4. Registra el mensaje recibido para trazabilidad (muestreado y sin payload)
+        received.record(null, consumerRecord.key(), consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
 
-        // 4. Registra el mensaje recibido para trazabilidad
-        log.info("ConsumerRecord : {} ", consumerRecord);
+        // 5. Un registro reentregado que ya se persistio no se vuelve a procesar
+        if (processedRecordIndex != null && processedRecordIndex.isDuplicate(consumerRecord)) {
+            return;
+        }
 
-        // 5. Delega el procesamiento completo a la capa de servicio
-        libraryEventService.proccessLibraryEvent(consumerRecord);
+        // 6. Delega el procesamiento completo a la capa de servicio
+        libraryEventService.processLibraryEvent(consumerRecord);
+        consumerLagMonitor.recordProcessed(GROUP_ID, consumerRecord);
     }
 }
@@ -8,11 +8,11 @@ import org.springframework.kafka.support.Acknowledgment;
 
 //@Component
 @Slf4j
-public class LibraryEventsConsumerManualOffset implements AcknowledgingMessageListener<Integer,String> {
+public class LibraryEventsConsumerManualOffset implements AcknowledgingMessageListener<Long, String> {
 
     @Override
     @KafkaListener(topics = {"library-events"})
-    public void onMessage(ConsumerRecord<Integer, String> consumerRecord, Acknowledgment acknowledgment) {
+    public void onMessage(ConsumerRecord<Long, String> consumerRecord, Acknowledgment acknowledgment) {
         log.info("ConsumerRecord in Manual Offset Consumer: {} ", consumerRecord );
         acknowledgment.acknowledge();
     }
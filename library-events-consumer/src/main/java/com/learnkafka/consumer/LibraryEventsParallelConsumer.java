@@ -0,0 +1,44 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.service.ProcessedRecordIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "libraryListener.mode", havingValue = "parallel") // Solo activo con libraryListener.mode=parallel
+@Slf4j
+public class LibraryEventsParallelConsumer {
+
+    static final String GROUP_ID = "library-events-listener-group";
+
+    private final KeyOrderedRecordProcessor keyOrderedRecordProcessor;
+    // Solo con libraryEvents.idempotency.enabled=true
+    private final ProcessedRecordIndex processedRecordIndex;
+
+    public LibraryEventsParallelConsumer(KeyOrderedRecordProcessor keyOrderedRecordProcessor,
+                                         ObjectProvider<ProcessedRecordIndex> processedRecordIndex) {
+        this.keyOrderedRecordProcessor = keyOrderedRecordProcessor;
+        this.processedRecordIndex = processedRecordIndex.getIfAvailable();
+    }
+
+    @KafkaListener(topics = {"library-events"},
+            groupId = GROUP_ID,
+            containerFactory = "parallelKafkaListenerContainerFactory", // 1. Ack manual asincrono
+            autoStartup = "${libraryListener.startup:true}")
+    public void onMessage(ConsumerRecord<Long, ?> consumerRecord, Acknowledgment acknowledgment) throws InterruptedException {
+
+        // 2. Un registro ya persistido solo necesita su ack para que el commit avance
+        if (processedRecordIndex != null && processedRecordIndex.isDuplicate(consumerRecord)) {
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        // 3. Entrega el registro al carril de su key; el ack llega cuando el worker termina
+        keyOrderedRecordProcessor.submit(consumerRecord, acknowledgment);
+    }
+}
@@ -1,27 +1,135 @@
 package com.learnkafka.consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.learnkafka.config.RetryTiers;
+import com.learnkafka.logging.HotPathLog;
+import com.learnkafka.scheduler.ConsumerLagMonitor;
 import com.learnkafka.service.LibraryEventService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Consume todos los niveles de RetryTiers. Si un registro aun no vence, rebobina su particion a ese offset,
+// la pausa en el contenedor y programa su reanudacion para la hora de vencimiento: el hilo del consumidor
+// sigue haciendo poll (sin rebalanceos por max.poll.interval.ms) y atiende las demas particiones.
 @Component
 @Slf4j
-public class LibraryEventsRetryConsumer {
+public class LibraryEventsRetryConsumer implements ConsumerSeekAware {
+
+    static final String LISTENER_ID = "library-events-retry";
+    static final String GROUP_ID = "retry-listener-group";
 
-    @Autowired
-    private LibraryEventService libraryEventsService;
+    private final LibraryEventService libraryEventsService;
+    private final RetryTiers retryTiers;
+    private final KafkaListenerEndpointRegistry endpointRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ConsumerLagMonitor consumerLagMonitor;
+    private final HotPathLog.Event retried;
+    // Offset al que se rebobino cada particion pausada; los registros posteriores del mismo poll se descartan
+    // sin ack y se vuelven a leer al reanudar
+    private final Map<TopicPartition, Long> rewoundTo = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService resumeScheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("retry-resume-"));
+
+    public LibraryEventsRetryConsumer(LibraryEventService libraryEventsService, RetryTiers retryTiers,
+                                      KafkaListenerEndpointRegistry endpointRegistry, MeterRegistry meterRegistry,
+                                      ConsumerLagMonitor consumerLagMonitor, HotPathLog hotPathLog) {
+        this.libraryEventsService = libraryEventsService;
+        this.retryTiers = retryTiers;
+        this.endpointRegistry = endpointRegistry;
+        this.meterRegistry = meterRegistry;
+        this.consumerLagMonitor = consumerLagMonitor;
+        this.retried = hotPathLog.event("retried");
+    }
 
-    @KafkaListener(topics = {"${topics.retry}"}
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false
+            , topics = "#{@retryTiers.topics()}"
             , autoStartup = "${retryListener.startup:true}"
-            , groupId = "retry-listener-group")
-    public void onMessage(ConsumerRecord<Integer, String> consumerRecord) throws JsonProcessingException {
+            , groupId = GROUP_ID
+            , containerFactory = "retryKafkaListenerContainerFactory")
+    public void onMessage(ConsumerRecord<Long, String> consumerRecord, Acknowledgment acknowledgment,
+                          Consumer<?, ?> consumer) throws JsonProcessingException {
 
-        log.info("ConsumerRecord in Retry Consumer: {} ", consumerRecord);
-        libraryEventsService.processLibraryEvent(consumerRecord);
+        var topicPartition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+        String tier = tierTag(consumerRecord.topic());
+
+        // 1. Registros del poll que ya se rebobino: se descartan hasta que vuelva el registro pendiente
+        Long rewound = rewoundTo.get(topicPartition);
+        if (rewound != null) {
+            if (consumerRecord.offset() > rewound) {
+                return;
+            }
+            rewoundTo.remove(topicPartition);
+        }
+
+        // 2. Aun no vence: rebobina y pausa la particion hasta su hora, sin dormir el hilo
+        long dueAt = RetryTiers.dueAt(consumerRecord);
+        long now = System.currentTimeMillis();
+        if (dueAt > now) {
+            pause(consumer, topicPartition, consumerRecord.offset(), dueAt - now, tier);
+            return;
+        }
+
+        // 3. Reprocesa; si vuelve a fallar el error handler lo envia al siguiente nivel o al DLT.
+        // El topic identifica el nivel; el intento solo va al log de depuracion
+        retried.record(null, consumerRecord.key(), consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+        log.debug("Retrying record {}-{}@{} (tier {} ms, attempt {})", consumerRecord.topic(), consumerRecord.partition(),
+                consumerRecord.offset(), tier, RetryTiers.attempt(consumerRecord));
+        if (dueAt > 0) {
+            meterRegistry.timer("library.events.consumer.retry.lateness", "tier", tier)
+                    .record(now - dueAt, TimeUnit.MILLISECONDS);
+        }
+        try {
+            libraryEventsService.processLibraryEvent(consumerRecord);
+        } catch (RuntimeException | JsonProcessingException e) {
+            meterRegistry.counter("library.events.consumer.retry.processed", "tier", tier, "outcome", "failure").increment();
+            throw e;
+        }
+        meterRegistry.counter("library.events.consumer.retry.processed", "tier", tier, "outcome", "success").increment();
+        acknowledgment.acknowledge();
+        consumerLagMonitor.recordProcessed(GROUP_ID, consumerRecord);
+    }
+
+    private void pause(Consumer<?, ?> consumer, TopicPartition topicPartition, long offset, long delayMs, String tier) {
+
+        MessageListenerContainer container = endpointRegistry.getListenerContainer(LISTENER_ID);
+        consumer.seek(topicPartition, offset);
+        rewoundTo.put(topicPartition, offset);
+        container.pausePartition(topicPartition);
+        resumeScheduler.schedule(() -> container.resumePartition(topicPartition), delayMs, TimeUnit.MILLISECONDS);
+        meterRegistry.counter("library.events.consumer.retry.pauses", "tier", tier).increment();
+        log.debug("Paused {} for {} ms until offset {} is due", topicPartition, delayMs, offset);
+    }
+
+    // Tras un rebalanceo la posicion sale del offset confirmado: los rebobinados anteriores ya no aplican
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        assignments.keySet().forEach(rewoundTo::remove);
+    }
+
+    private String tierTag(String topic) {
+        int tier = retryTiers.tierOf(topic);
+        return tier >= 0 ? retryTiers.tierTag(tier) : "unknown";
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        resumeScheduler.shutdownNow();
     }
-}
\ No newline at end of file
+}
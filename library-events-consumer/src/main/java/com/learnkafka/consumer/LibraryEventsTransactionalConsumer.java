@@ -0,0 +1,79 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.config.AfterCommitKafkaTransactionManager;
+import com.learnkafka.scheduler.ConsumerLagMonitor;
+import com.learnkafka.service.LibraryEventService;
+import com.learnkafka.state.LibraryStateStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "libraryListener.mode", havingValue = "transactional") // Modo exactly-once
+@Slf4j
+public class LibraryEventsTransactionalConsumer {
+
+    static final String GROUP_ID = "library-events-listener-group";
+
+    private final LibraryEventService libraryEventService;
+    private final DeadLetterPublishingRecoverer transactionalPublishingRecoverer;
+    private final ConsumerLagMonitor consumerLagMonitor;
+    // Solo con libraryEvents.stateStore.enabled=true
+    private final LibraryStateStore libraryStateStore;
+
+    public LibraryEventsTransactionalConsumer(LibraryEventService libraryEventService,
+                                              @Qualifier("transactionalPublishingRecoverer")
+                                              DeadLetterPublishingRecoverer transactionalPublishingRecoverer,
+                                              ConsumerLagMonitor consumerLagMonitor,
+                                              ObjectProvider<LibraryStateStore> libraryStateStore) {
+        this.libraryEventService = libraryEventService;
+        this.transactionalPublishingRecoverer = transactionalPublishingRecoverer;
+        this.consumerLagMonitor = consumerLagMonitor;
+        this.libraryStateStore = libraryStateStore.getIfAvailable();
+    }
+
+    @KafkaListener(topics = {"library-events"},
+            groupId = GROUP_ID,
+            containerFactory = "transactionalKafkaListenerContainerFactory",
+            autoStartup = "${libraryListener.startup:true}")
+    public void onMessage(List<ConsumerRecord<Long, ?>> consumerRecords) {
+
+        // 1. El contenedor ya abrio la transaccion de Kafka de este poll
+        log.info("Transactional batch received with {} records", consumerRecords.size());
+
+        // 2. Se envuelve como lo haria el contenedor para que el recoverer elija RETRY o DLT igual
+        libraryEventService.processLibraryEventsTransactionally(consumerRecords, GROUP_ID,
+                (consumerRecord, exception) -> transactionalPublishingRecoverer.accept(consumerRecord,
+                        new ListenerExecutionFailedException(exception.getMessage(), exception)));
+        consumerRecords.forEach(consumerRecord -> consumerLagMonitor.recordProcessed(GROUP_ID, consumerRecord));
+
+        // 3. Los offsets van en la transaccion (sendOffsetsToTransaction) y no pasan por StateStoreCommitInterceptor:
+        // el store los recibe cuando la transaccion de Kafka se confirma, nunca si se aborta
+        if (libraryStateStore != null) {
+            Map<TopicPartition, OffsetAndMetadata> offsets = nextOffsets(consumerRecords);
+            AfterCommitKafkaTransactionManager.afterCommit(() -> libraryStateStore.committed(offsets));
+        }
+    }
+
+    private static Map<TopicPartition, OffsetAndMetadata> nextOffsets(List<ConsumerRecord<Long, ?>> consumerRecords) {
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        consumerRecords.forEach(consumerRecord -> offsets.merge(
+                new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                new OffsetAndMetadata(consumerRecord.offset() + 1),
+                (previous, next) -> next.offset() > previous.offset() ? next : previous));
+        return offsets;
+    }
+}
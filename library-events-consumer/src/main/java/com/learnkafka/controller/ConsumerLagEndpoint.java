@@ -0,0 +1,24 @@
+package com.learnkafka.controller;
+
+import com.learnkafka.scheduler.ConsumerLagMonitor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// GET /actuator/consumerlag: lag y antiguedad por particion de cada grupo y backlog de FailureRecord por estado.
+// Devuelve la ultima lectura de ConsumerLagMonitor, asi que consultarlo no genera carga en el broker
+@Component
+@Endpoint(id = "consumerlag")
+public class ConsumerLagEndpoint {
+
+    private final ConsumerLagMonitor consumerLagMonitor;
+
+    public ConsumerLagEndpoint(ConsumerLagMonitor consumerLagMonitor) {
+        this.consumerLagMonitor = consumerLagMonitor;
+    }
+
+    @ReadOperation
+    public ConsumerLagMonitor.LagReport consumerLag() {
+        return consumerLagMonitor.report();
+    }
+}
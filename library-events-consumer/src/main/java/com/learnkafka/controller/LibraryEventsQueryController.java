@@ -0,0 +1,48 @@
+package com.learnkafka.controller;
+
+import com.learnkafka.model.LibraryEventView;
+import com.learnkafka.service.LibraryEventQueryService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// API de lectura de los eventos persistidos por el consumidor, para no consultar la base H2 directamente
+@RestController
+public class LibraryEventsQueryController {
+
+    private final LibraryEventQueryService libraryEventQueryService;
+    private final int maxPageSize;
+
+    public LibraryEventsQueryController(LibraryEventQueryService libraryEventQueryService,
+                                        @Value("${libraryEvents.query.maxPageSize:100}") int maxPageSize) {
+        this.libraryEventQueryService = libraryEventQueryService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @GetMapping("/v1/libraryevents/{libraryEventId}")
+    public ResponseEntity<LibraryEventView> getLibraryEvent(@PathVariable Long libraryEventId) {
+        return ResponseEntity.of(libraryEventQueryService.findById(libraryEventId));
+    }
+
+    // Filtros por igualdad, opcionales y combinables; orden estable por ID para paginar
+    @GetMapping("/v1/libraryevents")
+    public ResponseEntity<?> searchLibraryEvents(@RequestParam(required = false) String bookAuthor,
+                                                 @RequestParam(required = false) String bookName,
+                                                 @RequestParam(defaultValue = "0") int page,
+                                                 @RequestParam(defaultValue = "20") int size) {
+
+        if (page < 0 || size < 1 || size > maxPageSize) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("page must be >= 0 and size between 1 and " + maxPageSize);
+        }
+        var pageable = PageRequest.of(page, size, Sort.by("libraryEventId"));
+        return ResponseEntity.ok(new PagedModel<>(libraryEventQueryService.search(bookAuthor, bookName, pageable)));
+    }
+}
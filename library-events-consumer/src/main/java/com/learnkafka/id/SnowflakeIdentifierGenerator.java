@@ -0,0 +1,47 @@
+package com.learnkafka.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.AnnotationBasedGenerator;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.GeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+// Generador de Hibernate detras de @SnowflakeId. El nodo del consumidor se configura con
+// spring.jpa.properties.library_events.id.node_id y debe ser distinto de los nodos de los productores.
+// Con Spring, Hibernate pide el generador al SpringBeanContainer: por eso solo tiene el constructor vacio
+// y lee su configuracion en initialize(), que Hibernate llama despues de crearlo.
+public class SnowflakeIdentifierGenerator implements BeforeExecutionGenerator, AnnotationBasedGenerator<SnowflakeId> {
+
+    public static final String NODE_ID_SETTING = "library_events.id.node_id";
+
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Override
+    public void initialize(SnowflakeId annotation, Member member, GeneratorCreationContext context) {
+        int nodeId = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSetting(NODE_ID_SETTING, StandardConverters.INTEGER, SnowflakeIdGenerator.MAX_NODE_ID);
+        this.snowflakeIdGenerator = new SnowflakeIdGenerator(nodeId);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return currentValue != null ? currentValue : snowflakeIdGenerator.nextId();
+    }
+
+    // Con un ID asignado Hibernate no genera y decide entre INSERT y UPDATE consultando la fila
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -2,8 +2,10 @@ package com.learnkafka.model;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
 import lombok.*;
 
 @AllArgsConstructor
@@ -11,6 +13,10 @@ import lombok.*;
 @Data
 @Builder
 @Entity
+// Indices de la busqueda de GET /v1/libraryevents: el compuesto cubre autor y autor + nombre
+@Table(indexes = {
+        @Index(name = "idx_book_author_name", columnList = "bookAuthor, bookName"),
+        @Index(name = "idx_book_name", columnList = "bookName")})
 public class Book {
 
     @Id
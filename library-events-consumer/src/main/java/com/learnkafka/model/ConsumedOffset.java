@@ -0,0 +1,31 @@
+package com.learnkafka.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+// Modo transactional: siguiente offset a aplicar por grupo y particion, escrito en la misma transaccion
+// que los eventos. Los registros por debajo ya estan en la base de datos aunque Kafka no llegara a confirmarlos.
+public class ConsumedOffset {
+
+    // <groupId>:<topic>-<partition>
+    @Id
+    private String id;
+
+    private String groupId;
+    private String topic;
+    private Integer partition;
+    private Long nextOffset;
+
+    public static String id(String groupId, String topic, int partition) {
+        return groupId + ":" + topic + "-" + partition;
+    }
+}
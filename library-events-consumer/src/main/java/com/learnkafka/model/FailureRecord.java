@@ -3,16 +3,23 @@ package com.learnkafka.model;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder
 @Entity
+// Soporta la busqueda de candidatos del RetryScheduler: status = ? ... order by bookId
+@Table(indexes = @Index(name = "idx_failure_record_status_id", columnList = "status, bookId"))
 public class FailureRecord {
 
     @Id
@@ -20,10 +27,23 @@ public class FailureRecord {
     private Integer bookId;
 
     private String topic;
-    private Integer key_value;
+    private Long key_value;
     private String errorRecord;
     private Integer partition;
     private Long offset_value;
     private String exception;
     private String status;
+
+    // Reintentos realizados por el RetryScheduler y momento a partir del cual se puede reintentar de nuevo
+    private Integer attempts;
+    private Instant nextAttemptAt;
+
+    // Reparto del backlog entre replicas: instancia que reclamo el registro y hasta cuando le pertenece.
+    // Si la instancia cae, el registro vuelve a estar disponible cuando vence leaseExpiresAt.
+    private String owner;
+    private Instant leaseExpiresAt;
+
+    // Detecta que otra instancia reclamo el registro despues de que venciera nuestro lease
+    @Version
+    private Integer version;
 }
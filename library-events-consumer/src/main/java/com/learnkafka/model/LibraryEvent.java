@@ -1,5 +1,6 @@
 package com.learnkafka.model;
 
+import com.learnkafka.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -11,8 +12,9 @@ import lombok.*;
 public class LibraryEvent {
 
     @Id // Especifica que este campo es la clave primaria
-    @GeneratedValue // Configura la estrategia de generacion de claves primarias (automatica por defecto)
-    private Integer libraryEventId;
+    // El productor asigna un ID Snowflake a los NEW (tambien es la key del registro); si llega vacio se genera aqui
+    @SnowflakeId
+    private Long libraryEventId;
 
     @Enumerated(EnumType.STRING) // Persiste el enum como un STRING ("NEW, "UPDATE") en lugar de un numero.
     private LibraryEventType libraryEventType;
@@ -0,0 +1,19 @@
+package com.learnkafka.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+// Respuesta de la API de lectura, con la misma forma JSON que el LibraryEvent del productor.
+// Es inmutable y no arrastra la relacion bidireccional de las entidades, asi que se puede cachear.
+// El ID Snowflake va como cadena, igual que en el productor, para no perder precision en clientes JavaScript.
+public record LibraryEventView(@JsonFormat(shape = JsonFormat.Shape.STRING) Long libraryEventId,
+                               LibraryEventType libraryEventType, BookView book) {
+
+    public record BookView(Integer bookId, String bookName, String bookAuthor) {
+    }
+
+    public static LibraryEventView from(LibraryEvent libraryEvent) {
+        Book book = libraryEvent.getBook();
+        return new LibraryEventView(libraryEvent.getLibraryEventId(), libraryEvent.getLibraryEventType(),
+                book == null ? null : new BookView(book.getBookId(), book.getBookName(), book.getBookAuthor()));
+    }
+}
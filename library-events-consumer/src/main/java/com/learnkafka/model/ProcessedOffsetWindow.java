@@ -0,0 +1,33 @@
+package com.learnkafka.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+// Registros ya persistidos de una particion: todos los offsets por debajo de lowWatermark, mas los marcados en el
+// bitmap de la ventana [lowWatermark, lowWatermark + tamaño). Es el ultimo checkpoint de la ventana en memoria.
+public class ProcessedOffsetWindow {
+
+    // <topic>-<partition>
+    @Id
+    private String id;
+
+    private String topic;
+    // partition y window son palabras reservadas en H2
+    @Column(name = "partition_id")
+    private Integer partition;
+    private Long lowWatermark;
+
+    // BitSet.toByteArray(); bit i = offset lowWatermark + i
+    @Column(name = "offset_window", length = 1024)
+    private byte[] window;
+}
@@ -0,0 +1,7 @@
+package com.learnkafka.repository;
+
+import com.learnkafka.model.ConsumedOffset;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ConsumedOffsetRepository extends CrudRepository<ConsumedOffset, String> {
+}
@@ -1,12 +1,47 @@
 package com.learnkafka.repository;
 
 import com.learnkafka.model.FailureRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface FailureRecordRepository extends CrudRepository<FailureRecord, Integer> {
 
     List<FailureRecord> findAllByStatus(String status);
 
+    // Candidatos a reclamar: vencidos y sin lease vigente de otra instancia
+    @Query("select f.bookId from FailureRecord f where f.status = :status"
+            + " and (f.nextAttemptAt is null or f.nextAttemptAt <= :now)"
+            + " and (f.leaseExpiresAt is null or f.leaseExpiresAt < :now) order by f.bookId")
+    List<Integer> findClaimableIds(@Param("status") String status, @Param("now") Instant now, Pageable pageable);
+
+    // Reclamo atomico: la condicion del lease se vuelve a evaluar en el UPDATE, asi que si dos instancias
+    // compiten por la misma fila solo una la actualiza (el equivalente portable a SELECT ... FOR UPDATE SKIP LOCKED)
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update FailureRecord f set f.owner = :owner, f.leaseExpiresAt = :leaseUntil, f.version = f.version + 1"
+            + " where f.bookId in :ids and f.status = :status"
+            + " and (f.leaseExpiresAt is null or f.leaseExpiresAt < :now)")
+    int claim(@Param("ids") List<Integer> ids, @Param("status") String status, @Param("owner") String owner,
+              @Param("leaseUntil") Instant leaseUntil, @Param("now") Instant now);
+
+    // Registros con lease vigente de esta instancia
+    List<FailureRecord> findByOwnerAndStatusAndLeaseExpiresAtGreaterThanOrderByBookId(String owner, String status, Instant now);
+
+    // Backlog por estado en una sola consulta (ConsumerLagMonitor)
+    @Query("select f.status as status, count(f) as count from FailureRecord f group by f.status")
+    List<StatusCount> countByStatus();
+
+    interface StatusCount {
+        String getStatus();
+
+        Long getCount();
+    }
+
 }
@@ -0,0 +1,130 @@
+package com.learnkafka.repository;
+
+import com.learnkafka.id.SnowflakeIdGenerator;
+import com.learnkafka.model.Book;
+import com.learnkafka.model.LibraryEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Persistencia por JDBC (libraryEvents.persistence.mode=jdbc): un INSERT condicional para los NEW y un UPDATE
+// para los UPDATE, sin el SELECT previo que hace Hibernate con IDs asignados ni el dirty checking de las entidades.
+// Un NEW reentregado no pisa el estado que dejo un UPDATE posterior: si la fila ya existe no se escribe nada.
+// INSERT ... SELECT ... WHERE NOT EXISTS vale en H2 y Postgres (alli tambien INSERT ... ON CONFLICT DO NOTHING).
+@Repository
+@ConditionalOnProperty(name = "libraryEvents.persistence.mode", havingValue = "jdbc")
+public class LibraryEventJdbcRepository {
+
+    static final String INSERT_LIBRARY_EVENT = "insert into library_event (library_event_id, library_event_type)"
+            + " select ?, ? where not exists (select 1 from library_event where library_event_id = ?)";
+    static final String UPDATE_LIBRARY_EVENT = "update library_event set library_event_type = ? where library_event_id = ?";
+    static final String INSERT_BOOK = "insert into book (book_id, book_name, book_author, library_event_id)"
+            + " select ?, ?, ?, ? where not exists (select 1 from book where book_id = ?)";
+    static final String UPDATE_BOOK = "update book set book_name = ?, book_author = ?, library_event_id = ? where book_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final int batchSize;
+
+    public LibraryEventJdbcRepository(JdbcTemplate jdbcTemplate,
+                                      @Value("${spring.jpa.properties.library_events.id.node_id:1023}") int nodeId,
+                                      @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Mismo nodo que SnowflakeIdentifierGenerator para los NEW que llegan sin ID
+        this.snowflakeIdGenerator = new SnowflakeIdGenerator(nodeId);
+        this.batchSize = batchSize;
+    }
+
+    // Dos round trips por cada batchSize eventos (uno por tabla). Las filas que ya existen se dejan como estan.
+    // Debe ejecutarse dentro de una transaccion.
+    public void insertAll(List<LibraryEvent> libraryEvents) {
+
+        if (libraryEvents.isEmpty()) {
+            return;
+        }
+        libraryEvents.forEach(libraryEvent -> {
+            if (libraryEvent.getLibraryEventId() == null) {
+                libraryEvent.setLibraryEventId(snowflakeIdGenerator.nextId());
+            }
+            libraryEvent.getBook().setLibraryEvent(libraryEvent);
+        });
+        jdbcTemplate.batchUpdate(INSERT_LIBRARY_EVENT, libraryEvents, batchSize, (ps, libraryEvent) -> {
+            ps.setLong(1, libraryEvent.getLibraryEventId());
+            ps.setString(2, libraryEvent.getLibraryEventType().name());
+            ps.setLong(3, libraryEvent.getLibraryEventId());
+        });
+        jdbcTemplate.batchUpdate(INSERT_BOOK, libraryEvents, batchSize, (ps, libraryEvent) -> {
+            Book book = libraryEvent.getBook();
+            ps.setInt(1, book.getBookId());
+            ps.setString(2, book.getBookName());
+            ps.setString(3, book.getBookAuthor());
+            ps.setLong(4, libraryEvent.getLibraryEventId());
+            ps.setInt(5, book.getBookId());
+        });
+    }
+
+    // UPDATE ya validados (el evento existe), en el orden recibido: dos round trips por cada batchSize eventos mas
+    // uno si algun UPDATE trae un bookId que aun no existe. Debe ejecutarse dentro de una transaccion.
+    public void updateAll(List<LibraryEvent> libraryEvents) {
+
+        if (libraryEvents.isEmpty()) {
+            return;
+        }
+        libraryEvents.forEach(libraryEvent -> libraryEvent.getBook().setLibraryEvent(libraryEvent));
+        jdbcTemplate.batchUpdate(UPDATE_LIBRARY_EVENT, libraryEvents, batchSize, (ps, libraryEvent) -> {
+            ps.setString(1, libraryEvent.getLibraryEventType().name());
+            ps.setLong(2, libraryEvent.getLibraryEventId());
+        });
+        int[][] updatedBooks = jdbcTemplate.batchUpdate(UPDATE_BOOK, libraryEvents, batchSize, (ps, libraryEvent) -> {
+            Book book = libraryEvent.getBook();
+            ps.setString(1, book.getBookName());
+            ps.setString(2, book.getBookAuthor());
+            ps.setLong(3, libraryEvent.getLibraryEventId());
+            ps.setInt(4, book.getBookId());
+        });
+        List<LibraryEvent> newBooks = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updatedBooks) {
+            for (int updated : batch) {
+                if (updated == 0) {
+                    newBooks.add(libraryEvents.get(index));
+                }
+                index++;
+            }
+        }
+        if (!newBooks.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_BOOK, newBooks, batchSize, (ps, libraryEvent) -> {
+                Book book = libraryEvent.getBook();
+                ps.setInt(1, book.getBookId());
+                ps.setString(2, book.getBookName());
+                ps.setString(3, book.getBookAuthor());
+                ps.setLong(4, libraryEvent.getLibraryEventId());
+                ps.setInt(5, book.getBookId());
+            });
+        }
+    }
+
+    // UPDATE condicional: el numero de filas afectadas sustituye al findById de validacion.
+    // Devuelve false (sin tocar Book) si el evento no existe. Un libro que aun no existe (bookId nuevo) se inserta.
+    // Debe ejecutarse dentro de una transaccion.
+    public boolean update(LibraryEvent libraryEvent) {
+
+        int updated = jdbcTemplate.update(UPDATE_LIBRARY_EVENT,
+                libraryEvent.getLibraryEventType().name(), libraryEvent.getLibraryEventId());
+        if (updated == 0) {
+            return false;
+        }
+        Book book = libraryEvent.getBook();
+        book.setLibraryEvent(libraryEvent);
+        if (jdbcTemplate.update(UPDATE_BOOK, book.getBookName(), book.getBookAuthor(), libraryEvent.getLibraryEventId(),
+                book.getBookId()) == 0) {
+            jdbcTemplate.update(INSERT_BOOK, book.getBookId(), book.getBookName(), book.getBookAuthor(),
+                    libraryEvent.getLibraryEventId(), book.getBookId());
+        }
+        return true;
+    }
+}
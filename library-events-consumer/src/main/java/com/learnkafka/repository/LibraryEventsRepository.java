@@ -1,7 +1,24 @@
 package com.learnkafka.repository;
 
 import com.learnkafka.model.LibraryEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.CrudRepository;
 
-public interface LibraryEventsRepository extends CrudRepository<LibraryEvent, Integer> {
+import java.util.List;
+
+public interface LibraryEventsRepository extends CrudRepository<LibraryEvent, Long> {
+
+    // Paginacion por clave (keyset) para recorrer solo los IDs sin cargar las entidades
+    @Query("select e.libraryEventId from LibraryEvent e where e.libraryEventId > :afterId order by e.libraryEventId")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Busqueda por igualdad para aprovechar los indices de Book; un filtro nulo no restringe
+    @Query(value = "select e from LibraryEvent e join fetch e.book b"
+            + " where (:bookAuthor is null or b.bookAuthor = :bookAuthor) and (:bookName is null or b.bookName = :bookName)",
+            countQuery = "select count(e) from LibraryEvent e join e.book b"
+                    + " where (:bookAuthor is null or b.bookAuthor = :bookAuthor) and (:bookName is null or b.bookName = :bookName)")
+    Page<LibraryEvent> search(@Param("bookAuthor") String bookAuthor, @Param("bookName") String bookName, Pageable pageable);
 }
@@ -0,0 +1,7 @@
+package com.learnkafka.repository;
+
+import com.learnkafka.model.ProcessedOffsetWindow;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ProcessedOffsetWindowRepository extends CrudRepository<ProcessedOffsetWindow, String> {
+}
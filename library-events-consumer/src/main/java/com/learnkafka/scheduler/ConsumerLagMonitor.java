@@ -0,0 +1,306 @@
+package com.learnkafka.scheduler;
+
+import com.learnkafka.repository.FailureRecordRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Lag y frescura de los grupos del consumidor, sin herramientas externas. Cada intervalMs un unico AdminClient
+// lee los offsets confirmados de cada grupo y el log-end de sus particiones, y una consulta agrupada cuenta los
+// FailureRecord por estado; el endpoint y los gauges leen esa copia, nunca llaman al broker ni a la base de datos.
+// La antiguedad del ultimo registro procesado sale del timestamp del registro, que los listeners notifican con
+// recordProcessed(), y se calcula al leerla.
+// Las llamadas al broker bloquean hasta 10 s cada una, asi que el refresco corre en su propio hilo y no retrasa las
+// tareas @Scheduled, que comparten el unico hilo del planificador por defecto.
+@Component
+@Slf4j
+public class ConsumerLagMonitor {
+
+    public record PartitionLag(String topic, int partition, long committedOffset, long logEndOffset, long lag,
+                               Long lastRecordAgeMs) {
+    }
+
+    public record GroupLag(long totalLag, List<PartitionLag> partitions) {
+    }
+
+    public record LagReport(Instant refreshedAt, Map<String, GroupLag> groups, Map<String, Long> failureRecords) {
+    }
+
+    private record GroupPartition(String groupId, TopicPartition topicPartition) {
+    }
+
+    // Offsets de la ultima lectura de una particion; los gauges guardan la referencia
+    private static final class Offsets {
+        private volatile long committed;
+        private volatile long logEnd;
+        // false mientras solo la conozca recordProcessed()
+        private volatile boolean read;
+        private final AtomicLong lastRecordTimestamp = new AtomicLong(-1);
+    }
+
+    private final KafkaProperties kafkaProperties;
+    private final FailureRecordRepository failureRecordRepository;
+    private final MeterRegistry meterRegistry;
+    private final List<String> groupIds;
+    private final long intervalMs;
+    private final Map<GroupPartition, Offsets> offsets = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> failureRecords = new ConcurrentHashMap<>();
+
+    private volatile Instant refreshedAt;
+    private Admin admin;
+    private ScheduledExecutorService executor;
+
+    public ConsumerLagMonitor(KafkaProperties kafkaProperties, FailureRecordRepository failureRecordRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${libraryEvents.lagMonitor.groups:library-events-listener-group,retry-listener-group}") List<String> groupIds,
+                              @Value("${libraryEvents.lagMonitor.intervalMs:15000}") long intervalMs) {
+        this.kafkaProperties = kafkaProperties;
+        this.failureRecordRepository = failureRecordRepository;
+        this.meterRegistry = meterRegistry;
+        this.groupIds = groupIds;
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("lag-monitor-"));
+        executor.scheduleWithFixedDelay(this::refresh, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Llamado por los listeners tras procesar el registro; NO_TIMESTAMP (p.ej. los del RetryScheduler) se ignora
+    public void recordProcessed(String groupId, ConsumerRecord<?, ?> consumerRecord) {
+
+        if (consumerRecord.timestamp() < 0) {
+            return;
+        }
+        offsets(new GroupPartition(groupId, new TopicPartition(consumerRecord.topic(), consumerRecord.partition())))
+                .lastRecordTimestamp.accumulateAndGet(consumerRecord.timestamp(), Math::max);
+    }
+
+    public void refresh() {
+
+        // 1. Un fallo en un grupo no impide refrescar el resto; se conservan los ultimos valores leidos
+        for (String groupId : groupIds) {
+            try {
+                Map<TopicPartition, Long> committed = committedOffsets(groupId);
+                update(groupId, committed, logEndOffsets(committed.keySet()));
+            } catch (Exception e) {
+                log.warn("Lag monitor could not read the offsets of group {} : {}", groupId, e.getMessage());
+            }
+        }
+
+        // 2. Backlog de FailureRecord por estado
+        try {
+            Map<String, Long> counts = new HashMap<>();
+            failureRecordRepository.countByStatus()
+                    .forEach(statusCount -> counts.put(statusCount.getStatus(), statusCount.getCount()));
+            updateFailureRecords(counts);
+        } catch (Exception e) {
+            log.warn("Lag monitor could not count the failure records : {}", e.getMessage());
+        }
+        refreshedAt = Instant.now();
+    }
+
+    void update(String groupId, Map<TopicPartition, Long> committed, Map<TopicPartition, Long> logEnd) {
+
+        committed.forEach((topicPartition, committedOffset) -> {
+            Offsets partitionOffsets = offsets(new GroupPartition(groupId, topicPartition));
+            partitionOffsets.committed = committedOffset;
+            partitionOffsets.logEnd = logEnd.getOrDefault(topicPartition, committedOffset);
+            partitionOffsets.read = true;
+        });
+    }
+
+    void updateFailureRecords(Map<String, Long> counts) {
+
+        // Un estado que desaparece de la consulta ya no tiene filas
+        failureRecords.forEach((status, count) -> count.set(counts.getOrDefault(status, 0L)));
+        counts.forEach((status, count) -> failureRecords.computeIfAbsent(status, this::registerFailureRecords).set(count));
+    }
+
+    // Lag por particion de un topic del grupo en el ultimo refresco; vacio si aun no se ha leido ninguno
+    public Map<TopicPartition, Long> lagByPartition(String groupId, String topic) {
+
+        Map<TopicPartition, Long> lagByPartition = new HashMap<>();
+        offsets.forEach((groupPartition, partitionOffsets) -> {
+            if (partitionOffsets.read && groupPartition.groupId().equals(groupId)
+                    && groupPartition.topicPartition().topic().equals(topic)) {
+                lagByPartition.put(groupPartition.topicPartition(), lag(partitionOffsets));
+            }
+        });
+        return lagByPartition;
+    }
+
+    public LagReport report() {
+        return report(System.currentTimeMillis());
+    }
+
+    LagReport report(long now) {
+
+        Map<String, List<PartitionLag>> partitionsByGroup = new LinkedHashMap<>();
+        groupIds.forEach(groupId -> partitionsByGroup.put(groupId, new ArrayList<>()));
+        offsets.forEach((groupPartition, partitionOffsets) -> partitionsByGroup
+                .computeIfAbsent(groupPartition.groupId(), groupId -> new ArrayList<>())
+                .add(new PartitionLag(groupPartition.topicPartition().topic(), groupPartition.topicPartition().partition(),
+                        partitionOffsets.committed, partitionOffsets.logEnd, lag(partitionOffsets),
+                        age(partitionOffsets, now))));
+
+        Map<String, GroupLag> groups = new LinkedHashMap<>();
+        partitionsByGroup.forEach((groupId, partitions) -> {
+            partitions.sort(Comparator.comparing(PartitionLag::topic).thenComparingInt(PartitionLag::partition));
+            groups.put(groupId, new GroupLag(partitions.stream().mapToLong(PartitionLag::lag).sum(), partitions));
+        });
+        Map<String, Long> failureCounts = failureRecords.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get(), (a, b) -> a, TreeMap::new));
+        return new LagReport(refreshedAt, groups, failureCounts);
+    }
+
+    private static long lag(Offsets partitionOffsets) {
+        return Math.max(0, partitionOffsets.logEnd - partitionOffsets.committed);
+    }
+
+    // null si esta instancia aun no ha procesado ningun registro de la particion
+    private static Long age(Offsets partitionOffsets, long now) {
+        long timestamp = partitionOffsets.lastRecordTimestamp.get();
+        return timestamp < 0 ? null : Math.max(0, now - timestamp);
+    }
+
+    // Los gauges se registran la primera vez que aparece la particion
+    private Offsets offsets(GroupPartition groupPartition) {
+        return offsets.computeIfAbsent(groupPartition, this::registerOffsets);
+    }
+
+    private Offsets registerOffsets(GroupPartition groupPartition) {
+
+        Offsets partitionOffsets = new Offsets();
+        String topic = groupPartition.topicPartition().topic();
+        String partition = String.valueOf(groupPartition.topicPartition().partition());
+        Gauge.builder("library.events.consumer.partition.lag", partitionOffsets, ConsumerLagMonitor::lag)
+                .tags("group", groupPartition.groupId(), "topic", topic, "partition", partition)
+                .description("Log-end offset minus the committed offset of the group").register(meterRegistry);
+        Gauge.builder("library.events.consumer.record.age", partitionOffsets, value -> {
+                    Long age = age(value, System.currentTimeMillis());
+                    return age == null ? Double.NaN : age;
+                })
+                .tags("group", groupPartition.groupId(), "topic", topic, "partition", partition)
+                .baseUnit("milliseconds")
+                .description("Age of the last record processed by this instance, from the record timestamp")
+                .register(meterRegistry);
+        return partitionOffsets;
+    }
+
+    private AtomicLong registerFailureRecords(String status) {
+        AtomicLong count = new AtomicLong();
+        Gauge.builder("library.events.failure.records", count, AtomicLong::get)
+                .tag("status", status).description("FailureRecord rows by status").register(meterRegistry);
+        return count;
+    }
+
+    // Todas las particiones de los topics del grupo (con offset confirmado o asignadas a un miembro). Una particion
+    // sin offset confirmado se leera desde el principio: su lag es todo lo que conserva el log
+    private Map<TopicPartition, Long> committedOffsets(String groupId) throws Exception {
+
+        Map<TopicPartition, OffsetAndMetadata> committed = admin().listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get(10, TimeUnit.SECONDS);
+        Map<TopicPartition, Long> committedOffsets = new HashMap<>();
+        committed.forEach((topicPartition, offset) -> {
+            if (offset != null) {
+                committedOffsets.put(topicPartition, offset.offset());
+            }
+        });
+
+        Set<String> topics = new HashSet<>();
+        committed.keySet().forEach(topicPartition -> topics.add(topicPartition.topic()));
+        for (MemberDescription member : admin().describeConsumerGroups(List.of(groupId)).describedGroups().get(groupId)
+                .get(10, TimeUnit.SECONDS).members()) {
+            member.assignment().topicPartitions().forEach(topicPartition -> topics.add(topicPartition.topic()));
+        }
+        if (topics.isEmpty()) {
+            return committedOffsets;
+        }
+        Map<TopicPartition, OffsetSpec> earliestSpec = new HashMap<>();
+        for (TopicDescription description : admin().describeTopics(topics).allTopicNames().get(10, TimeUnit.SECONDS).values()) {
+            description.partitions().forEach(partition -> {
+                var topicPartition = new TopicPartition(description.name(), partition.partition());
+                if (!committedOffsets.containsKey(topicPartition)) {
+                    earliestSpec.put(topicPartition, OffsetSpec.earliest());
+                }
+            });
+        }
+        if (!earliestSpec.isEmpty()) {
+            admin().listOffsets(earliestSpec).all().get(10, TimeUnit.SECONDS)
+                    .forEach((topicPartition, info) -> committedOffsets.put(topicPartition, info.offset()));
+        }
+        return committedOffsets;
+    }
+
+    private Map<TopicPartition, Long> logEndOffsets(Iterable<TopicPartition> topicPartitions) throws Exception {
+
+        Map<TopicPartition, OffsetSpec> latestSpec = new HashMap<>();
+        topicPartitions.forEach(topicPartition -> latestSpec.put(topicPartition, OffsetSpec.latest()));
+        if (latestSpec.isEmpty()) {
+            return Map.of();
+        }
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest =
+                admin().listOffsets(latestSpec).all().get(10, TimeUnit.SECONDS);
+        Map<TopicPartition, Long> logEndOffsets = new HashMap<>();
+        latest.forEach((topicPartition, info) -> logEndOffsets.put(topicPartition, info.offset()));
+        return logEndOffsets;
+    }
+
+    // Se crea una vez y se reutiliza en cada refresco; mismos brokers y seguridad que el consumidor
+    private synchronized Admin admin() {
+        if (admin == null) {
+            Map<String, Object> config = new HashMap<>();
+            kafkaProperties.buildConsumerProperties().forEach((key, value) -> {
+                if (AdminClientConfig.configNames().contains(key)) {
+                    config.put(key, value);
+                }
+            });
+            admin = Admin.create(config);
+        }
+        return admin;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (admin != null) {
+            admin.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.learnkafka.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ajusta la concurrencia del listener principal segun el lag del grupo, entre minConcurrency y
+// min(maxConcurrency, particiones). Cambiar la concurrencia obliga a parar y arrancar el contenedor, lo que
+// provoca un rebalanceo; por eso un cambio solo se aplica tras varias evaluaciones seguidas en la misma
+// direccion (mas para bajar que para subir) y nunca antes de cooldownMs desde el anterior.
+// El lag sale de la ultima lectura de ConsumerLagMonitor, asi que esta tarea no llama al broker.
+@Component
+@ConditionalOnProperty(name = "libraryEvents.autoscaler.enabled", havingValue = "true")
+@Slf4j
+public class ListenerConcurrencyAutoscaler {
+
+    record Decision(int concurrency, String reason) {
+    }
+
+    private final KafkaListenerEndpointRegistry endpointRegistry;
+    private final ConsumerLagMonitor lagMonitor;
+    private final String topic;
+    private final String groupId;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long targetLagPerConsumer;
+    private final int scaleUpEvaluations;
+    private final int scaleDownEvaluations;
+    private final long cooldownMs;
+    private final AtomicLong lag = new AtomicLong();
+    private final AtomicInteger concurrency = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    private int scaleUpVotes;
+    private int scaleDownVotes;
+    private long lastScaledAt;
+
+    public ListenerConcurrencyAutoscaler(KafkaListenerEndpointRegistry endpointRegistry, ConsumerLagMonitor lagMonitor,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${libraryEvents.autoscaler.topic:library-events}") String topic,
+                                         @Value("${libraryEvents.autoscaler.groupId:library-events-listener-group}") String groupId,
+                                         @Value("${libraryEvents.autoscaler.minConcurrency:1}") int minConcurrency,
+                                         @Value("${libraryEvents.autoscaler.maxConcurrency:6}") int maxConcurrency,
+                                         @Value("${libraryEvents.autoscaler.targetLagPerConsumer:1000}") long targetLagPerConsumer,
+                                         @Value("${libraryEvents.autoscaler.scaleUpEvaluations:2}") int scaleUpEvaluations,
+                                         @Value("${libraryEvents.autoscaler.scaleDownEvaluations:5}") int scaleDownEvaluations,
+                                         @Value("${libraryEvents.autoscaler.cooldownMs:120000}") long cooldownMs) {
+        this.endpointRegistry = endpointRegistry;
+        this.lagMonitor = lagMonitor;
+        this.meterRegistry = meterRegistry;
+        this.topic = topic;
+        this.groupId = groupId;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLagPerConsumer = targetLagPerConsumer;
+        this.scaleUpEvaluations = scaleUpEvaluations;
+        this.scaleDownEvaluations = scaleDownEvaluations;
+        this.cooldownMs = cooldownMs;
+        Gauge.builder("library.events.consumer.lag", lag, AtomicLong::get)
+                .tag("group", groupId).description("Total lag of the listener group").register(meterRegistry);
+        Gauge.builder("library.events.consumer.concurrency", concurrency, AtomicInteger::get)
+                .tag("group", groupId).description("Concurrency of the listener container").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${libraryEvents.autoscaler.intervalMs:30000}",
+            initialDelayString = "${libraryEvents.autoscaler.intervalMs:30000}")
+    public void autoscale() {
+
+        // 1. Solo el contenedor del listener principal, y nunca mientras esta pausado (ej. circuit breaker abierto)
+        ConcurrentMessageListenerContainer<?, ?> container = container();
+        if (container == null || !container.isRunning()) {
+            return;
+        }
+        int current = container.getConcurrency();
+        concurrency.set(current);
+        if (container.isPauseRequested()) {
+            log.debug("Autoscaler keeps concurrency {} of group {}: container is paused", current, groupId);
+            return;
+        }
+
+        // 2. Lag por particion: ultimo offset del topic menos el offset confirmado por el grupo (o el primero
+        // del log si aun no hay ninguno). Incluye todas las particiones del topic
+        Map<TopicPartition, Long> lagByPartition = lagMonitor.lagByPartition(groupId, topic);
+        if (lagByPartition.isEmpty()) {
+            log.debug("Autoscaler keeps concurrency {} of group {}: no lag read yet", current, groupId);
+            return;
+        }
+        int partitions = lagByPartition.size();
+
+        // 3. Decide y, si cambia, reinicia el contenedor con la nueva concurrencia
+        Decision decision = evaluate(current, partitions, lagByPartition, System.currentTimeMillis());
+        if (decision.concurrency() == current) {
+            log.debug("Autoscaler keeps concurrency {} of group {}: {}", current, groupId, decision.reason());
+            return;
+        }
+        log.info("Autoscaler scales group {} from {} to {} consumers: {}", groupId, current, decision.concurrency(), decision.reason());
+        container.stop();
+        container.setConcurrency(decision.concurrency());
+        container.start();
+        concurrency.set(decision.concurrency());
+        meterRegistry.counter("library.events.consumer.autoscaler.decisions",
+                "direction", decision.concurrency() > current ? "up" : "down").increment();
+    }
+
+    Decision evaluate(int current, int partitions, Map<TopicPartition, Long> lagByPartition, long now) {
+
+        long totalLag = lagByPartition.values().stream().mapToLong(Long::longValue).sum();
+        long laggingPartitions = lagByPartition.values().stream().filter(partitionLag -> partitionLag > 0).count();
+        lag.set(totalLag);
+
+        // Mas consumidores que particiones solo añade hilos ociosos
+        int upperBound = Math.max(1, Math.min(maxConcurrency, partitions));
+        int lowerBound = Math.min(minConcurrency, upperBound);
+        long needed = (totalLag + targetLagPerConsumer - 1) / targetLagPerConsumer;
+        int desired = (int) Math.max(lowerBound, Math.min(upperBound, needed));
+        String lagReason = "lag " + totalLag + " on " + laggingPartitions + "/" + partitions
+                + " partitions, target " + targetLagPerConsumer + " per consumer";
+
+        if (desired == current) {
+            scaleUpVotes = 0;
+            scaleDownVotes = 0;
+            return new Decision(current, lagReason);
+        }
+        if (desired > current) {
+            scaleDownVotes = 0;
+            if (++scaleUpVotes < scaleUpEvaluations) {
+                return new Decision(current, lagReason + ", wants " + desired + " (" + scaleUpVotes + "/" + scaleUpEvaluations + " evaluations)");
+            }
+        } else {
+            scaleUpVotes = 0;
+            if (++scaleDownVotes < scaleDownEvaluations) {
+                return new Decision(current, lagReason + ", wants " + desired + " (" + scaleDownVotes + "/" + scaleDownEvaluations + " evaluations)");
+            }
+        }
+        if (now - lastScaledAt < cooldownMs) {
+            return new Decision(current, lagReason + ", wants " + desired + " but last change was "
+                    + (now - lastScaledAt) + " ms ago (cooldown " + cooldownMs + " ms)");
+        }
+        scaleUpVotes = 0;
+        scaleDownVotes = 0;
+        lastScaledAt = now;
+        return new Decision(desired, lagReason);
+    }
+
+    private ConcurrentMessageListenerContainer<?, ?> container() {
+        for (MessageListenerContainer container : endpointRegistry.getListenerContainers()) {
+            String[] topics = container.getContainerProperties().getTopics();
+            if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrentContainer
+                    && groupId.equals(container.getGroupId())
+                    && topics != null && List.of(topics).contains(topic)) {
+                return concurrentContainer;
+            }
+        }
+        return null;
+    }
+}
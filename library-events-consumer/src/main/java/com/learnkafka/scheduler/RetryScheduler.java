@@ -3,57 +3,187 @@ package com.learnkafka.scheduler;
 import com.learnkafka.config.LibraryEventsConsumerConfig;
 import com.learnkafka.model.FailureRecord;
 import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.service.DatabaseUnavailableException;
 import com.learnkafka.service.LibraryEventService;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 @Component
 @Slf4j
 public class RetryScheduler {
 
     private final LibraryEventService libraryEventService;
     private final FailureRecordRepository failureRecordRepository;
+    private final ExecutorService retryExecutor;
+    private final int pageSize;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final String instanceId;
+    private final Duration lease;
 
-    public RetryScheduler(LibraryEventService libraryEventService, FailureRecordRepository failureRecordRepository) {
+    public RetryScheduler(LibraryEventService libraryEventService, FailureRecordRepository failureRecordRepository,
+                          @Value("${retryScheduler.pageSize:50}") int pageSize,
+                          @Value("${retryScheduler.threads:4}") int threads,
+                          @Value("${retryScheduler.maxAttempts:5}") int maxAttempts,
+                          @Value("${retryScheduler.initialBackoffMs:10000}") long initialBackoffMs,
+                          @Value("${retryScheduler.maxBackoffMs:600000}") long maxBackoffMs,
+                          @Value("${retryScheduler.instanceId:}") String instanceId,
+                          @Value("${retryScheduler.leaseMs:60000}") long leaseMs) {
         this.libraryEventService = libraryEventService;
         this.failureRecordRepository = failureRecordRepository;
+        this.retryExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("retry-scheduler-"));
+        this.pageSize = pageSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.instanceId = instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+        this.lease = Duration.ofMillis(leaseMs);
     }
 
-    @Scheduled(fixedRate = 10000) // Ejecuta la tarea cada 10 segundos
-    public void retryFailedRecords() {
+    // fixedDelay: la siguiente pasada empieza 10s despues de que termine la anterior, nunca se solapan ni se acumulan
+    @Scheduled(fixedDelayString = "${retryScheduler.fixedDelayMs:10000}", initialDelayString = "${retryScheduler.initialDelayMs:0}")
+    public void retryFailedRecords() throws InterruptedException {
         log.info("Retrying failed records started!");
 
-        // 1. Define el estado de los registros a buscar.
+        // 1. Define el estado de los registros a buscar y el instante de corte de esta pasada.
         var status = LibraryEventsConsumerConfig.RETRY;
+        var now = Instant.now();
+
+        // 2. Reclama lotes pequeños hasta que no quede nada disponible; cada replica se lleva lotes distintos
+        //    y solo un lote vive en memoria. Un lote en el que otra instancia gano todos los registros no
+        //    termina la pasada: se sigue mientras haya candidatos.
+        int retried = 0;
+        Set<Integer> attempted = new HashSet<>();
+        List<Integer> candidateIds;
+        while (!(candidateIds = failureRecordRepository.findClaimableIds(status, now, PageRequest.ofSize(pageSize))).isEmpty()) {
+
+            List<FailureRecord> claimed = claimBatch(candidateIds, status, now, attempted);
+
+            // 3. Reintenta el lote en paralelo y espera a que termine antes de reclamar el siguiente.
+            retryExecutor.invokeAll(tasksByKey(claimed, now));
+            retried += claimed.size();
+        }
+
+        log.info("Retrying failed records completed by {}, records retried : {}", instanceId, retried);
+    }
+
+    private List<FailureRecord> claimBatch(List<Integer> candidateIds, String status, Instant now, Set<Integer> attempted) {
+
+        int claimed = failureRecordRepository.claim(candidateIds, status, instanceId, now.plus(lease), now);
+        log.debug("Instance {} claimed {} of {} candidate records", instanceId, claimed, candidateIds.size());
+
+        // Los registros que otra instancia gano en la carrera simplemente no aparecen aqui. Uno ya intentado en esta
+        // pasada sigue con owner y lease si no se pudo guardar su resultado: se salta y se recupera al vencer el lease
+        return failureRecordRepository.findByOwnerAndStatusAndLeaseExpiresAtGreaterThanOrderByBookId(instanceId, status, now)
+                .stream()
+                .filter(failureRecord -> attempted.add(failureRecord.getBookId()))
+                .toList();
+    }
 
-        // 2. Busca en la base de datos todos los registros marcados para reintento
-        failureRecordRepository.findAllByStatus(status)
-                .forEach(failureRecord -> {
-                    log.info("Retrying record: {}", failureRecord);
-                    try {
-                        // 3. Reconstruye el mensaje original de Kafka
-                        var consumerRecord = buildConsumerRecord(failureRecord);
-
-                        // 4. Llama a la misma logica de negocio para re-procesar el mensaje
-                        libraryEventService.proccessLibraryEvent(consumerRecord);
-
-                        // 5. Si tiene exito, actualiza el estado para evitar futuros reintentos.
-                        failureRecord.setStatus(LibraryEventsConsumerConfig.SUCCESS);
-                        failureRecordRepository.save(failureRecord);
-                        log.info("Retry successful for record: {}", failureRecord);
-                    } catch (Exception e) {
-                        log.error("Exception during retry for record {}: {}", failureRecord.getBookId(), e.getMessage());
-                    }
+    // Los registros con la misma key se reintentan en orden dentro de una misma tarea
+    private List<Callable<Void>> tasksByKey(List<FailureRecord> page, Instant now) {
+
+        Map<Long, List<FailureRecord>> byKey = new LinkedHashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (FailureRecord failureRecord : page) {
+            if (failureRecord.getKey_value() == null) {
+                tasks.add(() -> {
+                    retry(failureRecord, now);
+                    return null;
                 });
+            } else {
+                byKey.computeIfAbsent(failureRecord.getKey_value(), key -> new ArrayList<>()).add(failureRecord);
+            }
+        }
+        byKey.values().forEach(records -> tasks.add(() -> {
+            records.forEach(failureRecord -> retry(failureRecord, now));
+            return null;
+        }));
+        return tasks;
+    }
+
+    void retry(FailureRecord failureRecord, Instant now) {
+
+        log.info("Retrying record: {}", failureRecord.getBookId());
+        try {
+            // 4. Reconstruye el mensaje original y llama a la misma logica de negocio para re-procesarlo
+            libraryEventService.processLibraryEvent(buildConsumerRecord(failureRecord));
+
+            // 5. Si tiene exito, actualiza el estado para evitar futuros reintentos.
+            failureRecord.setStatus(LibraryEventsConsumerConfig.SUCCESS);
+            log.info("Retry successful for record: {}", failureRecord.getBookId());
+        } catch (DatabaseUnavailableException e) {
+            // Circuit breaker abierto: no es un fallo del registro, se deja para la siguiente pasada sin contar el intento
+            log.warn("Database unavailable, record {} left for the next pass", failureRecord.getBookId());
+            failureRecord.setNextAttemptAt(now.plus(backoff(1)));
+        } catch (Exception e) {
+            // 6. Si falla, programa el siguiente intento con backoff exponencial o lo descarta como DEAD
+            int attempts = (failureRecord.getAttempts() == null ? 0 : failureRecord.getAttempts()) + 1;
+            failureRecord.setAttempts(attempts);
+            failureRecord.setException(e.getMessage());
+            if (attempts >= maxAttempts) {
+                failureRecord.setStatus(LibraryEventsConsumerConfig.DEAD);
+                log.error("Record {} moved to DEAD after {} attempts: {}", failureRecord.getBookId(), attempts, e.getMessage());
+            } else {
+                failureRecord.setNextAttemptAt(now.plus(backoff(attempts)));
+                log.error("Exception during retry for record {} (attempt {}): {}", failureRecord.getBookId(), attempts, e.getMessage());
+            }
+        }
+
+        // 7. Libera el lease. Si vencio y otra instancia reclamo el registro, el @Version lo detecta
+        failureRecord.setOwner(null);
+        failureRecord.setLeaseExpiresAt(null);
+        try {
+            failureRecordRepository.save(failureRecord);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Lease lost for record {}, it was claimed by another instance", failureRecord.getBookId());
+        } catch (RuntimeException e) {
+            log.error("Retry result of record {} not saved, it will be retried when its lease expires : {}",
+                    failureRecord.getBookId(), e.getMessage());
+        }
+    }
+
+    // initialBackoffMs * 2^(attempts - 1), con tope en maxBackoffMs
+    Duration backoff(int attempts) {
+        long delay = initialBackoffMs << Math.min(attempts - 1, 30);
+        return Duration.ofMillis(Math.min(delay, maxBackoffMs));
     }
 
-    private ConsumerRecord<Integer, String> buildConsumerRecord(FailureRecord failureRecord) {
+    private ConsumerRecord<Long, String> buildConsumerRecord(FailureRecord failureRecord) {
 
         return new ConsumerRecord<>(failureRecord.getTopic(),
                 failureRecord.getPartition(), failureRecord.getOffset_value(), failureRecord.getKey_value(),
                 failureRecord.getErrorRecord());
 
     }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retryExecutor.shutdown();
+        if (!retryExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            retryExecutor.shutdownNow();
+        }
+    }
 }
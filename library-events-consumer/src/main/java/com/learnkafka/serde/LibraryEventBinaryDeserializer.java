@@ -0,0 +1,119 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.model.Book;
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Lee el formato binario de library-events directamente a la entidad LibraryEvent, sin String intermedio.
+// El schema se resuelve con el id de la cabecera; un id desconocido es un error de deserializacion.
+// V1 (id int) y V2 (id long) se leen igual: en la codificacion ambos son varints zigzag.
+public class LibraryEventBinaryDeserializer implements Deserializer<LibraryEvent> {
+
+    private static final LibraryEventType[] TYPES = LibraryEventType.values();
+
+    private InMemorySchemaRegistry schemaRegistry;
+
+    public LibraryEventBinaryDeserializer() {
+        this(InMemorySchemaRegistry.getDefault());
+    }
+
+    // Los ids de V1 y V2 son fijos (LibraryEventSchemas) y el registry ya los trae registrados
+    public LibraryEventBinaryDeserializer(InMemorySchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (configs.get(LibraryEventSchemas.REGISTRY_CONFIG) instanceof InMemorySchemaRegistry registry) {
+            this.schemaRegistry = registry;
+        }
+    }
+
+    @Override
+    public LibraryEvent deserialize(String topic, byte[] data) {
+        throw new SerializationException("The " + LibraryEventSchemas.SCHEMA_ID_HEADER + " header is required");
+    }
+
+    @Override
+    public LibraryEvent deserialize(String topic, Headers headers, byte[] data) {
+
+        if (data == null) {
+            return null;
+        }
+
+        // 1. Resuelve el schema a partir del id de la cabecera
+        Header header = headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER);
+        if (header == null || header.value().length != Integer.BYTES) {
+            throw new SerializationException("Missing or invalid " + LibraryEventSchemas.SCHEMA_ID_HEADER + " header");
+        }
+        int schemaId = ByteBuffer.wrap(header.value()).getInt();
+        String schema = schemaRegistry.getSchema(schemaId);
+        if (!LibraryEventSchemas.V1.equals(schema) && !LibraryEventSchemas.V2.equals(schema)) {
+            throw new SerializationException("Unknown schema id " + schemaId + " for topic " + topic);
+        }
+
+        // 2. Lee los campos en el orden del schema
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            Long libraryEventId = readInt(buffer) == 1 ? readLong(buffer) : null;
+            LibraryEventType libraryEventType = TYPES[readInt(buffer)];
+            Book book = Book.builder()
+                    .bookId(readInt(buffer))
+                    .bookName(readString(buffer))
+                    .bookAuthor(readString(buffer))
+                    .build();
+            return LibraryEvent.builder()
+                    .libraryEventId(libraryEventId)
+                    .libraryEventType(libraryEventType)
+                    .book(book)
+                    .build();
+        } catch (RuntimeException e) {
+            throw new SerializationException("Malformed library event payload for schema id " + schemaId, e);
+        }
+    }
+
+    private static int readInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new SerializationException("Varint is too long");
+            }
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new SerializationException("Varlong is too long");
+            }
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readInt(buffer);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,23 @@
+package com.learnkafka.serde;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+// value-serializer de los envios del consumidor (RETRY/DLT y reintentos de FailureRecord): escribe en JSON tanto
+// los String como las entidades que entrego LibraryEventWireDeserializer, asi que los topics de reintento son JSON.
+// Quita la cabecera de schema que el recoverer copia del registro binario original.
+public class LibraryEventJsonSerializer implements Serializer<Object> {
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        headers.remove(LibraryEventSchemas.SCHEMA_ID_HEADER);
+        return serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return data == null ? null : LibraryEventValues.toJson(data).getBytes(StandardCharsets.UTF_8);
+    }
+}
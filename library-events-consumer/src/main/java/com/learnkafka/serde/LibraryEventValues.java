@@ -0,0 +1,57 @@
+package com.learnkafka.serde;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.learnkafka.model.Book;
+import com.learnkafka.model.LibraryEvent;
+
+// Valores de library-events tal y como los entrega LibraryEventWireDeserializer: el JSON como String o la entidad
+// ya decodificada del formato binario. Solo los registros JSON pasan por Jackson.
+public final class LibraryEventValues {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private LibraryEventValues() {
+    }
+
+    // Siempre una entidad nueva: un reintento en proceso no debe ver los cambios del intento anterior (ID generado,
+    // relacion con Book), igual que cuando se vuelve a leer el JSON
+    public static LibraryEvent read(Object value, ObjectMapper objectMapper) throws JsonProcessingException {
+
+        if (value instanceof LibraryEvent decoded) {
+            Book book = decoded.getBook();
+            return LibraryEvent.builder()
+                    .libraryEventId(decoded.getLibraryEventId())
+                    .libraryEventType(decoded.getLibraryEventType())
+                    .book(book == null ? null : Book.builder()
+                            .bookId(book.getBookId())
+                            .bookName(book.getBookName())
+                            .bookAuthor(book.getBookAuthor())
+                            .build())
+                    .build();
+        }
+        return objectMapper.readValue((String) value, LibraryEvent.class);
+    }
+
+    // JSON para lo que se guarda o reenvia como texto (FailureRecord, RETRY/DLT). Mismos campos que el del productor
+    public static String toJson(Object value) {
+
+        if (!(value instanceof LibraryEvent libraryEvent)) {
+            return (String) value;
+        }
+        ObjectNode json = OBJECT_MAPPER.createObjectNode();
+        json.put("libraryEventId", libraryEvent.getLibraryEventId());
+        json.put("libraryEventType", libraryEvent.getLibraryEventType() == null ? null : libraryEvent.getLibraryEventType().name());
+        Book book = libraryEvent.getBook();
+        if (book == null) {
+            json.putNull("book");
+        } else {
+            json.putObject("book")
+                    .put("bookId", book.getBookId())
+                    .put("bookName", book.getBookName())
+                    .put("bookAuthor", book.getBookAuthor());
+        }
+        return json.toString();
+    }
+}
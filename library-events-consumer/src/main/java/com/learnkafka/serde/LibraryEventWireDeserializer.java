@@ -0,0 +1,42 @@
+package com.learnkafka.serde;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// value-deserializer del consumidor: acepta los dos formatos del productor (libraryEvents.wireFormat). Un registro
+// JSON llega como String y uno binario (con cabecera de schema) como la entidad LibraryEvent ya decodificada, sin
+// pasar por JSON. LibraryEventValues lee ambos; LibraryEventJsonSerializer los reenvia a RETRY/DLT como JSON.
+public class LibraryEventWireDeserializer implements Deserializer<Object> {
+
+    private final LibraryEventBinaryDeserializer binaryDeserializer;
+
+    public LibraryEventWireDeserializer() {
+        this(new LibraryEventBinaryDeserializer());
+    }
+
+    public LibraryEventWireDeserializer(LibraryEventBinaryDeserializer binaryDeserializer) {
+        this.binaryDeserializer = binaryDeserializer;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        binaryDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+
+        if (data == null || headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER) == null) {
+            return deserialize(topic, data);
+        }
+        return binaryDeserializer.deserialize(topic, headers, data);
+    }
+}
@@ -0,0 +1,249 @@
+package com.learnkafka.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Circuit breaker de la base de datos alrededor de la persistencia de LibraryEventService.
+// CLOSED: failureThreshold fallos de conexion/transitorios seguidos lo abren.
+// OPEN: pausa todos los contenedores del KafkaListenerEndpointRegistry y rechaza las llamadas con
+//   DatabaseUnavailableException; el error handler rebobina esos registros sin enviarlos a RETRY ni confirmar su offset.
+// HALF_OPEN: pasados openDurationMs reanuda los contenedores y deja pasar halfOpenTrials registros de prueba;
+//   si todos llegan a la base de datos se cierra, y al primer fallo vuelve a OPEN.
+@Component
+@Slf4j
+public class DatabaseCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // Se publica como evento de aplicacion en cada transicion
+    public record StateChangedEvent(State from, State to, String reason) {
+    }
+
+    private static final long NO_TRIAL = -1;
+
+    private final KafkaListenerEndpointRegistry endpointRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final int halfOpenTrials;
+    private final long rejectedBackOffMs;
+    private final Counter rejected;
+    private final ScheduledExecutorService halfOpenScheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("db-circuit-breaker-"));
+
+    // Todo el estado se protege con el monitor de this: las transiciones son raras y la llamada real queda fuera
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int trialsInFlight;
+    private int trialSuccesses;
+    // Cambia en cada transicion: una prueba de un HALF_OPEN anterior no cuenta en el actual
+    private long phase;
+    // Solo se reanudan los contenedores que pauso el breaker
+    private final List<MessageListenerContainer> pausedContainers = new ArrayList<>();
+    // Las llamadas anidadas (ej. una consulta dentro de una transaccion ya protegida) cuentan una sola vez
+    private final ThreadLocal<Boolean> inCall = new ThreadLocal<>();
+
+    public DatabaseCircuitBreaker(KafkaListenerEndpointRegistry endpointRegistry, ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${libraryEvents.circuitBreaker.enabled:true}") boolean enabled,
+                                  @Value("${libraryEvents.circuitBreaker.failureThreshold:5}") int failureThreshold,
+                                  @Value("${libraryEvents.circuitBreaker.openDurationMs:30000}") long openDurationMs,
+                                  @Value("${libraryEvents.circuitBreaker.halfOpenTrials:3}") int halfOpenTrials,
+                                  @Value("${libraryEvents.circuitBreaker.rejectedBackOffMs:500}") long rejectedBackOffMs) {
+        this.endpointRegistry = endpointRegistry;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenTrials = halfOpenTrials;
+        this.rejectedBackOffMs = rejectedBackOffMs;
+        this.rejected = Counter.builder("library.events.db.circuit.rejected")
+                .description("Calls rejected while the database circuit breaker is not closed").register(meterRegistry);
+        Gauge.builder("library.events.db.circuit.state", this, breaker -> breaker.state.ordinal())
+                .description("0 closed, 1 open, 2 half-open").register(meterRegistry);
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public long rejectedBackOffMs() {
+        return rejectedBackOffMs;
+    }
+
+    public void run(Runnable call) {
+        execute(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    // Ejecuta una llamada a la base de datos. Lanza DatabaseUnavailableException si el breaker no la deja
+    // pasar o si su fallo lo acaba de abrir.
+    public <T> T execute(Supplier<T> call) {
+
+        if (!enabled || inCall.get() != null) {
+            return call.get();
+        }
+        long trial = acquirePermission();
+        T result;
+        inCall.set(Boolean.TRUE);
+        try {
+            result = call.get();
+            onReachable(trial);
+        } catch (RuntimeException e) {
+            if (!isDatabaseFailure(e)) {
+                // La base de datos respondio (ej. violacion de constraint): cuenta como disponible
+                onReachable(trial);
+                throw e;
+            }
+            if (onFailure(trial, e)) {
+                throw new DatabaseUnavailableException("Database unavailable: " + e.getMessage(), e);
+            }
+            throw e;
+        } finally {
+            // Tambien con un Error: la prueba no puede quedarse ocupando un hueco de HALF_OPEN
+            inCall.remove();
+            releaseTrial(trial);
+        }
+        return result;
+    }
+
+    // true si la excepcion (o su causa) es un rechazo del breaker
+    public static boolean isRejection(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DatabaseUnavailableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Errores de conexion o transitorios; los errores de datos no abren el circuito
+    static boolean isDatabaseFailure(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException || cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    // La fase de HALF_OPEN si la llamada es una de sus pruebas; NO_TRIAL si no
+    private synchronized long acquirePermission() {
+
+        if (state == State.CLOSED) {
+            return NO_TRIAL;
+        }
+        if (state == State.HALF_OPEN && trialsInFlight + trialSuccesses < halfOpenTrials) {
+            trialsInFlight++;
+            return phase;
+        }
+        rejected.increment();
+        throw new DatabaseUnavailableException("Database circuit breaker is " + state);
+    }
+
+    private synchronized void onReachable(long trial) {
+
+        if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        } else if (trial == phase && state == State.HALF_OPEN) {
+            if (++trialSuccesses >= halfOpenTrials) {
+                transitionTo(State.CLOSED, trialSuccesses + " trial records reached the database");
+            }
+        }
+    }
+
+    // Devuelve true si el breaker queda abierto
+    private synchronized boolean onFailure(long trial, RuntimeException exception) {
+
+        if (trial == phase && state == State.HALF_OPEN) {
+            transitionTo(State.OPEN, "trial record failed: " + exception.getMessage());
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            transitionTo(State.OPEN, consecutiveFailures + " consecutive failures: " + exception.getMessage());
+        }
+        return state != State.CLOSED;
+    }
+
+    private synchronized void releaseTrial(long trial) {
+        if (trial == phase && trialsInFlight > 0) {
+            trialsInFlight--;
+        }
+    }
+
+    private synchronized void halfOpen() {
+        if (state == State.OPEN) {
+            transitionTo(State.HALF_OPEN, "open for " + openDurationMs + " ms");
+        }
+    }
+
+    private void transitionTo(State to, String reason) {
+
+        State from = state;
+        state = to;
+        consecutiveFailures = 0;
+        trialsInFlight = 0;
+        trialSuccesses = 0;
+        phase++;
+        if (to == State.OPEN) {
+            pauseContainers();
+            halfOpenScheduler.schedule(this::halfOpen, openDurationMs, TimeUnit.MILLISECONDS);
+        } else if (from == State.OPEN) {
+            // HALF_OPEN: los registros de prueba llegan por los propios contenedores
+            resumeContainers();
+        }
+        meterRegistry.counter("library.events.db.circuit.transitions", "from", from.name(), "to", to.name()).increment();
+        log.warn("Database circuit breaker {} -> {} ({})", from, to, reason);
+        eventPublisher.publishEvent(new StateChangedEvent(from, to, reason));
+    }
+
+    // pause() solo marca el contenedor; el consumidor se pausa en su siguiente vuelta de poll sin perder la asignacion
+    private void pauseContainers() {
+        for (MessageListenerContainer container : endpointRegistry.getListenerContainers()) {
+            if (!container.isPauseRequested()) {
+                container.pause();
+                pausedContainers.add(container);
+            }
+        }
+    }
+
+    private void resumeContainers() {
+        pausedContainers.forEach(MessageListenerContainer::resume);
+        pausedContainers.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        halfOpenScheduler.shutdownNow();
+    }
+}
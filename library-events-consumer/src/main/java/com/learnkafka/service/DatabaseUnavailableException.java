@@ -0,0 +1,16 @@
+package com.learnkafka.service;
+
+import org.springframework.dao.RecoverableDataAccessException;
+
+// La lanza DatabaseCircuitBreaker al rechazar una llamada, o envolviendo el fallo que lo abre.
+// El error handler la reintenta sin limite y sin confirmar el offset; nunca llega a RETRY/DLT por si sola.
+public class DatabaseUnavailableException extends RecoverableDataAccessException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+
+    public DatabaseUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
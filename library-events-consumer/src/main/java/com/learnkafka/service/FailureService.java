@@ -2,34 +2,181 @@ package com.learnkafka.service;
 
 import com.learnkafka.model.FailureRecord;
 import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.serde.LibraryEventValues;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// En modo write-behind los registros fallidos se encolan y un hilo escritor los inserta en lotes,
+// para que los hilos de los listeners no paguen un INSERT por cada fallo.
+// Al cerrar se pone running a false y se toma el lock de escritura de handoff: los encolados en curso terminan antes
+// y los posteriores se guardan de forma sincrona, asi que el escritor ve todo lo que entro en la cola.
 @Service
 @Slf4j
 public class FailureService {
 
-    private FailureRecordRepository failureRecordRepository;
+    private final FailureRecordRepository failureRecordRepository;
+    private final boolean writeBehind;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<FailureRecord> queue;
+    private final Timer flushTimer;
+    private final ExecutorService writer;
+    private final ReadWriteLock handoff = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
 
-    public FailureService(FailureRecordRepository failureRecordRepository) {
+    public FailureService(FailureRecordRepository failureRecordRepository, MeterRegistry meterRegistry,
+                          @Value("${failureService.writeBehind.enabled:false}") boolean writeBehind,
+                          @Value("${failureService.writeBehind.queueCapacity:10000}") int queueCapacity,
+                          @Value("${failureService.writeBehind.flushSize:50}") int flushSize,
+                          @Value("${failureService.writeBehind.flushIntervalMs:200}") long flushIntervalMs) {
         this.failureRecordRepository = failureRecordRepository;
+        this.writeBehind = writeBehind;
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(writeBehind ? queueCapacity : 1);
+        this.flushTimer = Timer.builder("library.events.failure.flush").register(meterRegistry);
+        Gauge.builder("library.events.failure.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        if (writeBehind) {
+            this.writer = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("failure-writer-"));
+            this.writer.submit(this::drain);
+        } else {
+            this.writer = null;
+        }
     }
 
-    public void saveFailedRecord(ConsumerRecord<Integer, String> record, Exception exception, String status) {
+    public void saveFailedRecord(ConsumerRecord<Long, ?> record, Exception exception, String status) {
 
         var failureRecord = FailureRecord.builder()
                 .topic(record.topic())
                 .key_value(record.key())
-                .errorRecord(record.value())
+                .errorRecord(LibraryEventValues.toJson(record.value()))
                 .partition(record.partition())
                 .offset_value(record.offset())
                 .exception(exception.getMessage())
                 .status(status)
+                .attempts(0)
+                .nextAttemptAt(Instant.now())
                 .build();
 
+        if (writeBehind && enqueue(failureRecord)) {
+            log.debug("Failure record queued: {}", failureRecord);
+            return;
+        }
         failureRecordRepository.save(failureRecord);
-
         log.info("Failure record saved: {}", failureRecord);
     }
+
+    // Backpressure: con la cola llena el listener espera a que el escritor libere hueco, mientras siga en marcha
+    private boolean enqueue(FailureRecord failureRecord) {
+
+        handoff.readLock().lock();
+        try {
+            while (running) {
+                if (queue.offer(failureRecord, flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            handoff.readLock().unlock();
+        }
+    }
+
+    // Espera a los encolados en curso; despues ya no entra nada en la cola
+    private void stop() {
+        running = false;
+        handoff.writeLock().lock();
+        handoff.writeLock().unlock();
+    }
+
+    // Bucle del escritor: espera el primer registro hasta flushIntervalMs y se lleva hasta flushSize de golpe
+    private void drain() {
+
+        List<FailureRecord> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                FailureRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, flushSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Unexpected error in failure writer: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+        // Lo que quede, incluido lo encolado mientras se cerraba, se escribe en este mismo hilo
+        stop();
+        for (List<FailureRecord> rest = new ArrayList<>(); queue.drainTo(rest, flushSize) > 0; rest.clear()) {
+            flush(rest);
+        }
+    }
+
+    void flush(List<FailureRecord> batch) {
+
+        flushTimer.record(() -> {
+            try {
+                // saveAll en una sola transaccion, Hibernate agrupa los INSERT segun jdbc.batch_size
+                failureRecordRepository.saveAll(batch);
+                log.info("Failure records saved : {}", batch.size());
+            } catch (Exception e) {
+                // Un registro malo no debe tirar el lote entero: se reintentan uno a uno
+                log.error("Batch save of {} failure records failed, saving one by one: {}", batch.size(), e.getMessage());
+                batch.forEach(this::saveOne);
+            }
+        });
+    }
+
+    private void saveOne(FailureRecord failureRecord) {
+        try {
+            // El saveAll fallido pudo asignar id y version; se limpian para que vuelva a ser un INSERT
+            failureRecord.setBookId(null);
+            failureRecord.setVersion(null);
+            failureRecordRepository.save(failureRecord);
+        } catch (Exception e) {
+            log.error("Failure record lost: {}", failureRecord, e);
+        }
+    }
+
+    // Vacia la cola antes de que se cierre el DataSource
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+
+        if (writer == null) {
+            return;
+        }
+        stop();
+        writer.shutdown();
+        if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Failure writer did not finish, {} records still queued", queue.size());
+            writer.shutdownNow();
+        }
+    }
 }
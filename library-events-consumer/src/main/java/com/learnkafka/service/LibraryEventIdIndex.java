@@ -0,0 +1,188 @@
+package com.learnkafka.service;
+
+import com.learnkafka.repository.LibraryEventsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Indice en memoria de los libraryEventId que existen en la base de datos. Los IDs Snowflake del productor
+// son dispersos en los 64 bits, asi que se guardan en tablas hash de direccionamiento abierto (sondeo lineal)
+// sobre un AtomicLongArray: las altas se hacen con CAS sobre un hueco vacio, sin bloqueos ni objetos Long.
+// Desalojo por generaciones (aproximacion de LRU): las altas van a la generacion joven, con capacity IDs; cuando
+// se llena pasa a ser la vieja y la vieja anterior se vacia. Un acierto en la vieja vuelve a la joven, asi que
+// siempre se conservan al menos los capacity IDs usados (altas o aciertos) mas recientemente, y como mucho 2 * capacity.
+// Un acierto es definitivo: solo se marcan IDs ya confirmados (tras el commit o tras un findById).
+// Un fallo no lo es (otra replica pudo insertar el ID o se desalojo), por lo que se confirma contra la base de datos.
+@Component
+@Slf4j
+public class LibraryEventIdIndex {
+
+    private static final int LOAD_PAGE_SIZE = 10_000;
+    // Marca de hueco vacio; ese ID nunca se indexa
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final LibraryEventsRepository libraryEventsRepository;
+    private final boolean enabled;
+    private final int generationCapacity;
+    private final int mask;
+    private volatile Generation young;
+    private volatile Generation old;
+    private final Counter hits;
+    private final Counter misses;
+
+    public LibraryEventIdIndex(LibraryEventsRepository libraryEventsRepository, MeterRegistry meterRegistry,
+                               @Value("${libraryEvents.idIndex.enabled:true}") boolean enabled,
+                               @Value("${libraryEvents.idIndex.capacity:1048576}") int capacity) {
+        this.libraryEventsRepository = libraryEventsRepository;
+        this.enabled = enabled;
+        this.generationCapacity = Math.max(capacity, 1);
+        // Al menos el doble de huecos que IDs por generacion (potencia de 2) para que los sondeos sean cortos
+        int length = enabled ? Integer.highestOneBit(Math.max(2 * generationCapacity - 1, 1)) << 1 : 0;
+        this.mask = length - 1;
+        this.young = new Generation(length);
+        this.old = new Generation(length);
+        this.hits = Counter.builder("library.events.id.index.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("library.events.id.index.lookups").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("library.events.id.index.size", this, LibraryEventIdIndex::size).register(meterRegistry);
+    }
+
+    // Carga los IDs existentes antes de que arranquen los listeners. Se recorren en orden de ID (Snowflake: de
+    // mas antiguo a mas reciente), asi que si no caben todos el desalojo deja los mas recientes
+    @PostConstruct
+    public void load() {
+
+        if (!enabled) {
+            return;
+        }
+        Long afterId = Long.MIN_VALUE;
+        List<Long> ids;
+        do {
+            ids = libraryEventsRepository.findIdsAfter(afterId, PageRequest.ofSize(LOAD_PAGE_SIZE));
+            ids.forEach(this::add);
+            if (!ids.isEmpty()) {
+                afterId = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == LOAD_PAGE_SIZE);
+        log.info("Library event id index loaded with {} ids", size());
+    }
+
+    // true solo si el ID esta confirmado; cuenta el acierto o fallo para las metricas
+    public boolean contains(Long libraryEventId) {
+
+        if (!enabled || libraryEventId == null) {
+            return false;
+        }
+        long id = libraryEventId;
+        boolean found = young.contains(id);
+        if (!found && old.contains(id)) {
+            // Se usa de nuevo: pasa a la generacion joven para que no se desaloje con la vieja
+            found = true;
+            add(libraryEventId);
+        }
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    // Marca un ID como existente. Llamar solo cuando la fila ya esta confirmada en la base de datos
+    public void add(Long libraryEventId) {
+
+        if (!enabled || libraryEventId == null || libraryEventId == EMPTY) {
+            return;
+        }
+        long id = libraryEventId;
+        Generation generation = young;
+        while (!generation.add(id)) {
+            generation = rotate(generation);
+        }
+    }
+
+    // IDs en las dos generaciones; uno que volvio a la joven cuenta dos veces hasta que se desaloja la vieja
+    int size() {
+        return young.size.get() + old.size.get();
+    }
+
+    // Solo rota el primer hilo que encuentra llena la generacion joven; el resto reintenta en la nueva
+    private synchronized Generation rotate(Generation full) {
+
+        if (young != full) {
+            return young;
+        }
+        // Se reutiliza la tabla desalojada. Una lectura concurrente sobre ella solo puede fallar, nunca dar un
+        // falso acierto: todo lo que contiene son IDs confirmados
+        Generation evicted = old;
+        evicted.clear();
+        old = full;
+        young = evicted;
+        return evicted;
+    }
+
+    // Mezcla los bits altos (milisegundo Snowflake) con los bajos (nodo y secuencia) antes de enmascarar
+    private int slotOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private final class Generation {
+
+        private final AtomicLongArray slots;
+        private final AtomicInteger size = new AtomicInteger();
+
+        private Generation(int length) {
+            this.slots = new AtomicLongArray(length);
+            clear();
+        }
+
+        private boolean contains(long id) {
+
+            for (int slot = slotOf(id); ; slot = (slot + 1) & mask) {
+                long current = slots.get(slot);
+                if (current == EMPTY) {
+                    return false;
+                }
+                if (current == id) {
+                    return true;
+                }
+            }
+        }
+
+        // false si la generacion esta llena y el ID no estaba
+        private boolean add(long id) {
+
+            for (int slot = slotOf(id); ; slot = (slot + 1) & mask) {
+                long current = slots.get(slot);
+                while (current == EMPTY) {
+                    // Altas concurrentes pueden pasar de generationCapacity como mucho en una por hilo,
+                    // y la tabla tiene el doble de huecos
+                    if (size.get() >= generationCapacity) {
+                        return false;
+                    }
+                    if (slots.compareAndSet(slot, EMPTY, id)) {
+                        size.incrementAndGet();
+                        return true;
+                    }
+                    // Otro hilo ocupo el hueco: puede ser el mismo ID
+                    current = slots.get(slot);
+                }
+                if (current == id) {
+                    return true;
+                }
+            }
+        }
+
+        private void clear() {
+            for (int slot = 0; slot < slots.length(); slot++) {
+                slots.set(slot, EMPTY);
+            }
+            size.set(0);
+        }
+    }
+}
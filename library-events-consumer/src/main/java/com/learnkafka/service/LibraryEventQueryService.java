@@ -0,0 +1,67 @@
+package com.learnkafka.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learnkafka.model.LibraryEventView;
+import com.learnkafka.repository.LibraryEventsRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+
+// Consultas de la API de lectura. GET por ID pasa por una cache read-through acotada por tamaño;
+// LibraryEventService invalida las entradas tras cada commit del listener. Las escrituras de otras
+// replicas no invalidan esta cache, por eso las entradas caducan a los expireAfterWriteMs.
+// Los IDs inexistentes no se cachean: un NEW posterior de cualquier replica se ve en la siguiente lectura.
+@Service
+public class LibraryEventQueryService {
+
+    private final LibraryEventsRepository libraryEventsRepository;
+    private final Cache<Long, LibraryEventView> cache;
+
+    public LibraryEventQueryService(LibraryEventsRepository libraryEventsRepository, MeterRegistry meterRegistry,
+                                    @Value("${libraryEvents.query.cache.maximumSize:10000}") long maximumSize,
+                                    @Value("${libraryEvents.query.cache.expireAfterWriteMs:60000}") long expireAfterWriteMs) {
+        this.libraryEventsRepository = libraryEventsRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size con tag cache=libraryEvents
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "libraryEvents");
+        Gauge.builder("library.events.query.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Hit ratio of the library event read-through cache since startup")
+                .register(meterRegistry);
+    }
+
+    public Optional<LibraryEventView> findById(Long libraryEventId) {
+        // Si el loader devuelve null Caffeine no guarda nada
+        return Optional.ofNullable(cache.get(libraryEventId, id -> libraryEventsRepository.findById(id)
+                .map(LibraryEventView::from)
+                .orElse(null)));
+    }
+
+    // Sin cache: cada pagina depende de los filtros y la invalidaria cualquier NEW
+    public Page<LibraryEventView> search(String bookAuthor, String bookName, Pageable pageable) {
+        return libraryEventsRepository.search(bookAuthor, bookName, pageable).map(LibraryEventView::from);
+    }
+
+    // Se llama despues del commit: una carga en curso con el valor anterior termina antes de invalidar
+    public void evict(Long libraryEventId) {
+        if (libraryEventId != null) {
+            cache.invalidate(libraryEventId);
+        }
+    }
+
+    public void evictAll(Collection<Long> libraryEventIds) {
+        cache.invalidateAll(libraryEventIds);
+    }
+}
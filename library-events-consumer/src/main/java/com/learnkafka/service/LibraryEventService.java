@@ -2,87 +2,494 @@ package com.learnkafka.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.logging.HotPathLog;
+import com.learnkafka.model.ConsumedOffset;
 import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import com.learnkafka.repository.ConsumedOffsetRepository;
+import com.learnkafka.repository.LibraryEventJdbcRepository;
 import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.serde.LibraryEventValues;
+import com.learnkafka.state.LibraryStateStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Service;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class LibraryEventService {
 
+    // Mismo header que escribe LibraryEventProducer: epoch millis del envio
+    public static final String SENT_AT_HEADER = "library-event-sent-at";
+
     private final ObjectMapper objectMapper;
-    private final KafkaTemplate<Integer, String> kafkaTemplate;
+    private final KafkaTemplate<Long, String> kafkaTemplate;
     private final LibraryEventsRepository libraryEventsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LibraryEventIdIndex libraryEventIdIndex;
+    private final LibraryEventQueryService libraryEventQueryService;
+    private final DatabaseCircuitBreaker circuitBreaker;
+    private final ConsumedOffsetRepository consumedOffsetRepository;
+    // Solo con libraryEvents.persistence.mode=jdbc; null en el modo jpa por defecto
+    private final LibraryEventJdbcRepository libraryEventJdbcRepository;
+    // Solo con libraryEvents.stateStore.enabled=true
+    private final LibraryStateStore libraryStateStore;
+    // Solo con libraryEvents.idempotency.enabled=true
+    private final ProcessedRecordIndex processedRecordIndex;
+    private final Timer deserializeTimer;
+    private final Timer validateTimer;
+    private final Timer persistTimer;
+    private final Timer endToEndTimer;
+    private final Counter duplicatesSkipped;
+    private final HotPathLog.Event persisted;
+    private final HotPathLog.Event republished;
 
-    public LibraryEventService(ObjectMapper objectMapper, KafkaTemplate<Integer, String> kafkaTemplate,
-                               LibraryEventsRepository libraryEventsRepository) {
+    public LibraryEventService(ObjectMapper objectMapper, KafkaTemplate<Long, String> kafkaTemplate,
+                               LibraryEventsRepository libraryEventsRepository, TransactionTemplate transactionTemplate,
+                               LibraryEventIdIndex libraryEventIdIndex, LibraryEventQueryService libraryEventQueryService,
+                               DatabaseCircuitBreaker circuitBreaker, ConsumedOffsetRepository consumedOffsetRepository,
+                               MeterRegistry meterRegistry, HotPathLog hotPathLog,
+                               ObjectProvider<LibraryEventJdbcRepository> libraryEventJdbcRepository,
+                               ObjectProvider<LibraryStateStore> libraryStateStore,
+                               ObjectProvider<ProcessedRecordIndex> processedRecordIndex) {
 
         this.objectMapper = objectMapper;
         this.kafkaTemplate = kafkaTemplate;
         this.libraryEventsRepository = libraryEventsRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.libraryEventIdIndex = libraryEventIdIndex;
+        this.libraryEventQueryService = libraryEventQueryService;
+        this.circuitBreaker = circuitBreaker;
+        this.consumedOffsetRepository = consumedOffsetRepository;
+        this.libraryEventJdbcRepository = libraryEventJdbcRepository.getIfAvailable();
+        this.libraryStateStore = libraryStateStore.getIfAvailable();
+        this.processedRecordIndex = processedRecordIndex.getIfAvailable();
+        this.deserializeTimer = stageTimer(meterRegistry, "deserialize");
+        this.validateTimer = stageTimer(meterRegistry, "validate");
+        this.persistTimer = stageTimer(meterRegistry, "persist");
+        this.endToEndTimer = Timer.builder("library.events.consumer.end.to.end")
+                .description("Time from the producer send to the commit of the library event").register(meterRegistry);
+        this.duplicatesSkipped = Counter.builder("library.events.consumer.duplicates.skipped")
+                .description("Redelivered records already applied in the transactional mode").register(meterRegistry);
+        this.persisted = hotPathLog.event("persisted");
+        this.republished = hotPathLog.debugEvent("republished");
+
+    }
 
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("library.events.consumer.stage").tag("stage", stage).register(meterRegistry);
     }
 
     //Crea un método público que será el punto de entrada desde el consumidor de Kafka.
     // Este método orquesta la deserialización, validación y persistencia.
-    public void processLibraryEvent(ConsumerRecord<Integer, String> consumerRecord) throws JsonProcessingException {
+    public void processLibraryEvent(ConsumerRecord<Long, ?> consumerRecord) throws JsonProcessingException {
 
-        // 1. Deserializa el playload JSON a un objeto JAVA.
-        LibraryEvent libraryEvent = objectMapper.readValue(consumerRecord.value(), LibraryEvent.class);
-        
-        // 2. (Opcional) Simula un error recuperable para probar la resiliencia.
-        if (libraryEvent.getLibraryEventId() != null && (libraryEvent.getLibraryEventId() == 999)) {
-            throw new RecoverableDataAccessException("Temporary Network Issue");
-        }
-        
-        // 3. Delega el procesamiento segun el tipo de evento.
+        // 1. Parsea el payload JSON, o copia la entidad que ya decodifico el deserializer binario.
+        LibraryEvent libraryEvent = readLibraryEvent(consumerRecord);
+
+        // 2. Delega el procesamiento segun el tipo de evento.
         switch (libraryEvent.getLibraryEventType()) {
             case NEW:
-                save(libraryEvent);
+                save(libraryEvent, consumerRecord);
                 break;
             case UPDATE:
+                if (libraryEventJdbcRepository != null) {
+                    // En modo jdbc el UPDATE condicional valida y persiste en la misma sentencia
+                    update(libraryEvent, consumerRecord);
+                    break;
+                }
                 validate(libraryEvent);
-                save(libraryEvent);
+                save(libraryEvent, consumerRecord);
                 break;
             default:
                 log.warn("Invalid Library Event Type {}", libraryEvent);
+                return;
+        }
+        recordEndToEnd(consumerRecord);
+    }
+
+    // Punto de entrada del modo batch: procesa todo el poll y lo persiste en una sola transaccion.
+    // Si un registro falla, se persisten los anteriores y se lanza BatchListenerFailedException con ese
+    // registro, para que el DefaultErrorHandler lo reintente y lo envie a RETRY/DLT de forma individual.
+    public void processLibraryEvents(List<? extends ConsumerRecord<Long, ?>> consumerRecords) {
+
+        try {
+            persistBatch(consumerRecords);
+        } catch (DatabaseUnavailableException e) {
+            // Con el circuit breaker abierto no se persistio nada del poll: se rebobina desde el primer registro
+            throw new BatchListenerFailedException(e.getMessage(), e, consumerRecords.get(0));
+        }
+    }
+
+    private void persistBatch(List<? extends ConsumerRecord<Long, ?>> consumerRecords) {
+
+        // 1. Deserializa los registros del poll hasta el primero que no se pueda leer.
+        List<LibraryEvent> libraryEvents = new ArrayList<>(consumerRecords.size());
+        Exception readException = null;
+        for (ConsumerRecord<Long, ?> consumerRecord : consumerRecords) {
+            try {
+                libraryEvents.add(readLibraryEvent(consumerRecord));
+            } catch (Exception e) {
+                readException = e;
+                break;
+            }
+        }
+
+        // 2. Valida los UPDATE con una sola consulta en lugar de un findById por registro.
+        long start = System.nanoTime();
+        Set<Long> existingIds = findExistingIds(libraryEvents);
+        for (int index = 0; index < libraryEvents.size(); index++) {
+            LibraryEvent libraryEvent = libraryEvents.get(index);
+            try {
+                validate(libraryEvent, existingIds);
+            } catch (Exception e) {
+                throw failedAt(libraryEvents.subList(0, index), consumerRecords.subList(0, index), consumerRecords.get(index), e);
+            }
+            // Un UPDATE posterior del mismo poll ya encuentra el evento
+            if (libraryEvent.getLibraryEventId() != null) {
+                existingIds.add(libraryEvent.getLibraryEventId());
+            }
+        }
+        validateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (readException != null) {
+            throw failedAt(libraryEvents, consumerRecords.subList(0, libraryEvents.size()),
+                    consumerRecords.get(libraryEvents.size()), readException);
+        }
+
+        // 3. Persiste el lote completo (JDBC batching via hibernate.jdbc.batch_size, o MERGE en modo jdbc).
+        saveAll(libraryEvents, consumerRecords);
+        consumerRecords.forEach(this::recordEndToEnd);
+    }
+
+    // Punto de entrada del modo transactional (exactly-once). El contenedor ya abrio la transaccion de Kafka del poll:
+    // los offsets y los envios del recoverer a RETRY/DLT van en ella. Aqui todo el poll se escribe en una sola
+    // transaccion JPA junto con el siguiente offset de cada particion. Si el proceso cae despues de ese commit y
+    // antes del de Kafka, el poll se vuelve a entregar y los registros por debajo de ese offset no se reescriben.
+    public void processLibraryEventsTransactionally(List<? extends ConsumerRecord<Long, ?>> consumerRecords, String groupId,
+                                                    BiConsumer<ConsumerRecord<Long, ?>, Exception> recoverer) {
+
+        List<ConsumerRecord<Long, ?>> applied = new ArrayList<>(consumerRecords.size());
+        List<LibraryEvent> libraryEvents = persistTimer.record(() -> circuitBreaker.execute(() -> transactionTemplate.execute(
+                status -> persistTransactionally(consumerRecords, groupId, recoverer, applied))));
+        afterCommit(libraryEvents);
+        applied.forEach(this::recordEndToEnd);
+    }
+
+    private List<LibraryEvent> persistTransactionally(List<? extends ConsumerRecord<Long, ?>> consumerRecords, String groupId,
+                                                      BiConsumer<ConsumerRecord<Long, ?>, Exception> recoverer,
+                                                      List<ConsumerRecord<Long, ?>> applied) {
+
+        // 1. Siguiente offset ya aplicado de cada particion del poll
+        Map<String, ConsumerRecord<Long, ?>> lastByPartition = new LinkedHashMap<>();
+        consumerRecords.forEach(consumerRecord -> lastByPartition.put(
+                ConsumedOffset.id(groupId, consumerRecord.topic(), consumerRecord.partition()), consumerRecord));
+        Map<String, Long> nextOffsets = new HashMap<>();
+        consumedOffsetRepository.findAllById(lastByPartition.keySet())
+                .forEach(consumedOffset -> nextOffsets.put(consumedOffset.getId(), consumedOffset.getNextOffset()));
+
+        // 2. Lee todo el poll y valida los UPDATE con una sola consulta
+        List<LibraryEvent> read = new ArrayList<>(consumerRecords.size());
+        List<Exception> readExceptions = new ArrayList<>(consumerRecords.size());
+        for (ConsumerRecord<Long, ?> consumerRecord : consumerRecords) {
+            try {
+                read.add(readLibraryEvent(consumerRecord));
+                readExceptions.add(null);
+            } catch (Exception e) {
+                read.add(null);
+                readExceptions.add(e);
+            }
+        }
+        Set<Long> existingIds = findExistingIds(read.stream().filter(Objects::nonNull).toList());
+
+        // 3. Los registros invalidos se recuperan dentro de la transaccion de Kafka. Los ya aplicados se validan
+        // igualmente: si fallan hay que repetir su envio a RETRY/DLT, que se perdio con la transaccion abortada
+        List<LibraryEvent> libraryEvents = new ArrayList<>(consumerRecords.size());
+        for (int index = 0; index < consumerRecords.size(); index++) {
+            ConsumerRecord<Long, ?> consumerRecord = consumerRecords.get(index);
+            Long nextOffset = nextOffsets.get(ConsumedOffset.id(groupId, consumerRecord.topic(), consumerRecord.partition()));
+            LibraryEvent libraryEvent = read.get(index);
+            Exception exception = readExceptions.get(index);
+            if (exception == null) {
+                try {
+                    validate(libraryEvent, existingIds);
+                } catch (IllegalArgumentException e) {
+                    exception = e;
+                }
+            }
+            if (exception != null) {
+                log.error("Transactional batch record at offset {} recovered : {}", consumerRecord.offset(), exception.getMessage());
+                recoverer.accept(consumerRecord, exception);
+            } else if (nextOffset != null && consumerRecord.offset() < nextOffset) {
+                duplicatesSkipped.increment();
+                // Cuenta en library.events.consumer.duplicates.skipped; tras una caida pueden ser polls enteros
+                log.debug("Skipping already applied record at partition {} offset {}", consumerRecord.partition(), consumerRecord.offset());
+            } else {
+                libraryEvents.add(libraryEvent);
+                applied.add(consumerRecord);
+                // Un UPDATE posterior del mismo poll ya encuentra el evento
+                if (libraryEvent.getLibraryEventId() != null) {
+                    existingIds.add(libraryEvent.getLibraryEventId());
+                }
+            }
+        }
+
+        // 4. Eventos y offsets en la misma transaccion
+        write(libraryEvents);
+        lastByPartition.forEach((id, consumerRecord) -> consumedOffsetRepository.save(ConsumedOffset.builder()
+                .id(id)
+                .groupId(groupId)
+                .topic(consumerRecord.topic())
+                .partition(consumerRecord.partition())
+                .nextOffset(consumerRecord.offset() + 1)
+                .build()));
+        return libraryEvents;
+    }
+
+    // Usa el header del productor; si no viene (p.ej. sendDefault) cae al timestamp del propio registro
+    private void recordEndToEnd(ConsumerRecord<Long, ?> consumerRecord) {
+        long sentAt = consumerRecord.timestamp();
+        Header header = consumerRecord.headers().lastHeader(SENT_AT_HEADER);
+        if (header != null) {
+            try {
+                sentAt = Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring malformed {} header", SENT_AT_HEADER);
+            }
+        }
+        if (sentAt > 0) {
+            endToEndTimer.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private LibraryEvent readLibraryEvent(ConsumerRecord<Long, ?> consumerRecord) throws JsonProcessingException {
+
+        long start = System.nanoTime();
+        LibraryEvent libraryEvent = LibraryEventValues.read(consumerRecord.value(), objectMapper);
+        deserializeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        // (Opcional) Simula un error recuperable para probar la resiliencia.
+        if (libraryEvent.getLibraryEventId() != null && (libraryEvent.getLibraryEventId() == 999)) {
+            throw new RecoverableDataAccessException("Temporary Network Issue");
+        }
+        return libraryEvent;
+    }
+
+    private BatchListenerFailedException failedAt(List<LibraryEvent> processed, List<? extends ConsumerRecord<Long, ?>> processedRecords,
+                                                  ConsumerRecord<Long, ?> consumerRecord, Exception exception) {
+
+        // Los registros anteriores al fallido se confirman; el error handler hara commit hasta ese offset.
+        saveAll(processed, processedRecords);
+        processedRecords.forEach(this::recordEndToEnd);
+        log.error("Batch processing failed at offset {} : {}", consumerRecord.offset(), exception.getMessage());
+        return new BatchListenerFailedException(exception.getMessage(), exception, consumerRecord);
+    }
+
+    private Set<Long> findExistingIds(List<LibraryEvent> libraryEvents) {
+
+        Set<Long> updateIds = new HashSet<>();
+        libraryEvents.stream()
+                .filter(libraryEvent -> libraryEvent.getLibraryEventType() == LibraryEventType.UPDATE)
+                .map(LibraryEvent::getLibraryEventId)
+                .filter(Objects::nonNull)
+                .forEach(updateIds::add);
+
+        // Los IDs ya confirmados en el indice no se consultan
+        Set<Long> existingIds = new HashSet<>();
+        Set<Long> unknownIds = new HashSet<>();
+        for (Long id : updateIds) {
+            if (libraryEventIdIndex.contains(id)) {
+                existingIds.add(id);
+            } else {
+                unknownIds.add(id);
+            }
+        }
+        if (!unknownIds.isEmpty()) {
+            circuitBreaker.execute(() -> libraryEventsRepository.findAllById(unknownIds))
+                    .forEach(libraryEvent -> {
+                        existingIds.add(libraryEvent.getLibraryEventId());
+                        libraryEventIdIndex.add(libraryEvent.getLibraryEventId());
+                    });
+        }
+        return existingIds;
+    }
+
+    private void validate(LibraryEvent libraryEvent, Set<Long> existingIds) {
+
+        if (libraryEvent.getLibraryEventType() == null) {
+            throw new IllegalArgumentException("Invalid Library Event Type");
+        }
+        if (libraryEvent.getLibraryEventType() != LibraryEventType.UPDATE) {
+            return;
+        }
+        if (libraryEvent.getLibraryEventId() == null) {
+            throw new IllegalArgumentException("Library Event Id is missing for an UPDATE event");
+        }
+        if (!existingIds.contains(libraryEvent.getLibraryEventId())) {
+            throw new IllegalArgumentException("Not a valid library Event: ID does not exist");
+        }
+    }
+
+    private void saveAll(List<LibraryEvent> libraryEvents, List<? extends ConsumerRecord<Long, ?>> consumerRecords) {
+
+        if (libraryEvents.isEmpty()) {
+            return;
+        }
+        persistTimer.record(() -> circuitBreaker.run(() -> transactionTemplate.executeWithoutResult(status -> {
+            write(libraryEvents);
+            markProcessed(consumerRecords);
+        })));
+        afterCommit(libraryEvents);
+    }
+
+    // Debe ejecutarse dentro de una transaccion
+    private void write(List<LibraryEvent> libraryEvents) {
+
+        if (libraryEvents.isEmpty()) {
+            return;
+        }
+        if (libraryEventJdbcRepository != null) {
+            // Primero los NEW, para que un UPDATE del mismo lote encuentre su fila
+            Map<Boolean, List<LibraryEvent>> byType = libraryEvents.stream()
+                    .collect(Collectors.partitioningBy(libraryEvent -> libraryEvent.getLibraryEventType() == LibraryEventType.UPDATE));
+            libraryEventJdbcRepository.insertAll(byType.get(false));
+            libraryEventJdbcRepository.updateAll(byType.get(true));
+            return;
         }
+        libraryEvents.forEach(libraryEvent -> libraryEvent.getBook().setLibraryEvent(libraryEvent));
+        libraryEventsRepository.saveAll(libraryEvents);
+    }
+
+    // Despues del commit: los NEW ya tienen su ID generado
+    private void afterCommit(List<LibraryEvent> libraryEvents) {
+
+        if (libraryEvents.isEmpty()) {
+            return;
+        }
+        libraryEvents.forEach(libraryEvent -> libraryEventIdIndex.add(libraryEvent.getLibraryEventId()));
+        libraryEventQueryService.evictAll(libraryEvents.stream().map(LibraryEvent::getLibraryEventId).toList());
+        libraryEvents.forEach(this::applyToStateStore);
+        log.info("Successfully persisted {} library events in one transaction", libraryEvents.size());
     }
 
     private void validate(LibraryEvent libraryEvent) {
+        validateTimer.record(() -> validateUpdate(libraryEvent));
+    }
+
+    private void validateUpdate(LibraryEvent libraryEvent) {
 
         // Valida que el ID no sea nulo para una actualizacion
         if (libraryEvent.getLibraryEventId() == null) {
             throw new IllegalArgumentException("Library Event Id is missing for an UPDATE event");
         }
 
+        // Si el indice ya confirma el ID, se evita la consulta a la base de datos
+        if (libraryEventIdIndex.contains(libraryEvent.getLibraryEventId())) {
+            log.debug("Validation is successful for the library event id : {}", libraryEvent.getLibraryEventId());
+            return;
+        }
+
         // Valida que el evento a actualizar realmente exista en la base de datos
-        Optional<LibraryEvent> libraryEventOptional = libraryEventsRepository.findById(libraryEvent.getLibraryEventId());
+        Optional<LibraryEvent> libraryEventOptional =
+                circuitBreaker.execute(() -> libraryEventsRepository.findById(libraryEvent.getLibraryEventId()));
         if (!libraryEventOptional.isPresent()) {
             throw new IllegalArgumentException("Not a valid library Event: ID does not exist");
         }
-        log.info("Validation is successful for the library event : {}", libraryEventOptional.get());
+        libraryEventIdIndex.add(libraryEvent.getLibraryEventId());
+        log.debug("Validation is successful for the library event id : {}", libraryEvent.getLibraryEventId());
     }
 
 
-    private void save(LibraryEvent libraryEvent) {
+    private void save(LibraryEvent libraryEvent, ConsumerRecord<Long, ?> consumerRecord) {
 
         // Asegura la consistencia de la realcion bidireccional antes de guardar
         libraryEvent.getBook().setLibraryEvent(libraryEvent);
-        libraryEventsRepository.save(libraryEvent);
-        log.info("Successfully persisted the library event {}", libraryEvent);
+        if (libraryEventJdbcRepository != null) {
+            persistTimer.record(() -> circuitBreaker.run(() -> transactionTemplate.executeWithoutResult(status -> {
+                libraryEventJdbcRepository.insertAll(List.of(libraryEvent));
+                markProcessed(List.of(consumerRecord));
+            })));
+        } else if (processedRecordIndex != null) {
+            // El offset se marca en la misma transaccion que el evento
+            persistTimer.record(() -> circuitBreaker.run(() -> transactionTemplate.executeWithoutResult(status -> {
+                libraryEventsRepository.save(libraryEvent);
+                markProcessed(List.of(consumerRecord));
+            })));
+        } else {
+            persistTimer.record(() -> circuitBreaker.execute(() -> libraryEventsRepository.save(libraryEvent)));
+        }
+        libraryEventIdIndex.add(libraryEvent.getLibraryEventId());
+        libraryEventQueryService.evict(libraryEvent.getLibraryEventId());
+        applyToStateStore(libraryEvent);
+        persisted.record(libraryEvent.getLibraryEventType(), libraryEvent.getLibraryEventId(),
+                consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+    }
+
+    // Modo jdbc: sin findById previo, el UPDATE afecta 0 filas si el ID no existe
+    private void update(LibraryEvent libraryEvent, ConsumerRecord<Long, ?> consumerRecord) {
+
+        if (libraryEvent.getLibraryEventId() == null) {
+            throw new IllegalArgumentException("Library Event Id is missing for an UPDATE event");
+        }
+        Boolean updated = persistTimer.record(() -> circuitBreaker.execute(() -> transactionTemplate.execute(status -> {
+            boolean found = libraryEventJdbcRepository.update(libraryEvent);
+            if (found) {
+                markProcessed(List.of(consumerRecord));
+            }
+            return found;
+        })));
+        if (!Boolean.TRUE.equals(updated)) {
+            throw new IllegalArgumentException("Not a valid library Event: ID does not exist");
+        }
+        libraryEventIdIndex.add(libraryEvent.getLibraryEventId());
+        libraryEventQueryService.evict(libraryEvent.getLibraryEventId());
+        applyToStateStore(libraryEvent);
+        persisted.record(libraryEvent.getLibraryEventType(), libraryEvent.getLibraryEventId(),
+                consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+    }
+
+    // Dentro de la transaccion de los eventos. El RetryScheduler reconstruye el registro original, asi que un reintento
+    // con exito cierra su hueco; los de los topics RETRY no son del topic indexado y se ignoran
+    private void markProcessed(List<? extends ConsumerRecord<Long, ?>> consumerRecords) {
+        if (processedRecordIndex != null) {
+            processedRecordIndex.markProcessed(consumerRecords);
+        }
+    }
+
+    // Despues del commit, y siempre antes de que el contenedor confirme el offset del registro
+    private void applyToStateStore(LibraryEvent libraryEvent) {
+        if (libraryStateStore != null) {
+            libraryStateStore.apply(libraryEvent);
+        }
     }
 
-    public void handleRecovery(ConsumerRecord<Integer, String> record) {
+    public void handleRecovery(ConsumerRecord<Long, String> record) {
 
-        Integer key = record.key();
+        Long key = record.key();
         String message = record.value();
 
         var completableFuture = kafkaTemplate.sendDefault(key, message);
@@ -90,16 +497,18 @@ public class LibraryEventService {
             if (ex != null) {
                 handleFailure(key, message, ex);
             } else {
-                handleSuccess(key, message, result);
+                handleSuccess(key, result);
             }
         });
     }
 
-    private void handleFailure(Integer key, String message, Throwable ex) {
-        log.info("Error Sendind the Message for key: {}, value: {} and the exception is {}", key, message, ex.getMessage());
+    private void handleFailure(Long key, String message, Throwable ex) {
+        log.error("Error Sendind the Message for key: {}, value: {}", key, message, ex);
     }
 
-    private void handleSuccess(Integer key, String value, SendResult<Integer, String> result) {
-        log.info("Message Sent SuccessFully for the key : {} and the value is {} , partition is {}", key, value, result.getRecordMetadata().partition());
+    // Una linea por registro reenviado: muestreada, a nivel DEBUG y sin payload
+    private void handleSuccess(Long key, SendResult<Long, String> result) {
+        RecordMetadata metadata = result.getRecordMetadata();
+        republished.record(null, key, metadata.topic(), metadata.partition(), metadata.offset());
     }
 }
@@ -0,0 +1,277 @@
+package com.learnkafka.service;
+
+import com.learnkafka.model.ProcessedOffsetWindow;
+import com.learnkafka.repository.ProcessedOffsetWindowRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Indice de registros ya persistidos del topic principal, por particion: un high-watermark (todo lo anterior
+// esta procesado) mas una ventana acotada de windowSize bits para los huecos, p.ej. registros enviados a RETRY o los
+// que el modo parallel termina fuera de orden. Los listeners lo consultan antes de deserializar, asi que un registro
+// reentregado tras un rebalanceo o un reinicio se descarta sin leer su JSON ni tocar la base de datos.
+// La ventana vive en memoria y se actualiza tras el commit de cada transaccion, sin bloqueos en la base de datos;
+// se persiste cada checkpointIntervalMs, al revocarse la particion y al parar. Al asignarse una particion la ventana
+// arranca en su offset confirmado, o en la guardada si va por delante.
+// Al salirse de la ventana los huecos mas antiguos se dan por confirmados: windowSize debe superar
+// libraryListener.parallel.maxInFlight, que acota cuanto puede adelantarse un carril al offset confirmado.
+@Component
+@ConditionalOnProperty(name = "libraryEvents.idempotency.enabled", havingValue = "true")
+@Slf4j
+public class ProcessedRecordIndex implements ConsumerAwareRebalanceListener {
+
+    static final int MAX_WINDOW_SIZE = 8 * 1024; // bytes de la columna offset_window * 8
+
+    private final ProcessedOffsetWindowRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final String topic;
+    private final int windowSize;
+    private final Map<TopicPartition, Window> windows = new ConcurrentHashMap<>();
+
+    public ProcessedRecordIndex(ProcessedOffsetWindowRepository repository, MeterRegistry meterRegistry,
+                                @Value("${libraryEvents.idempotency.topic:library-events}") String topic,
+                                @Value("${libraryEvents.idempotency.windowSize:4096}") int windowSize) {
+        if (windowSize <= 0 || windowSize > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("libraryEvents.idempotency.windowSize must be between 1 and " + MAX_WINDOW_SIZE);
+        }
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.topic = topic;
+        this.windowSize = windowSize;
+    }
+
+    // true si el registro ya se persistio; lo cuenta como duplicado descartado de su particion
+    public boolean isDuplicate(ConsumerRecord<?, ?> consumerRecord) {
+
+        if (!topic.equals(consumerRecord.topic())) {
+            return false;
+        }
+        // Sin rebalance listener (p.ej. en pruebas) el primer offset entregado es el confirmado
+        Window window = windows.computeIfAbsent(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                topicPartition -> load(topicPartition, consumerRecord.offset()));
+        if (!window.contains(consumerRecord.offset())) {
+            return false;
+        }
+        meterRegistry.counter("library.events.consumer.idempotency.skipped",
+                "topic", consumerRecord.topic(), "partition", String.valueOf(consumerRecord.partition())).increment();
+        log.debug("Skipping already persisted record {}-{}@{}", consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+        return true;
+    }
+
+    // Se llama dentro de la transaccion que persiste los eventos; la ventana solo cambia si esa transaccion se confirma
+    public void markProcessed(Collection<? extends ConsumerRecord<?, ?>> consumerRecords) {
+
+        Map<TopicPartition, List<Long>> offsets = new LinkedHashMap<>();
+        for (ConsumerRecord<?, ?> consumerRecord : consumerRecords) {
+            if (topic.equals(consumerRecord.topic())) {
+                offsets.computeIfAbsent(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                        topicPartition -> new ArrayList<>()).add(consumerRecord.offset());
+            }
+        }
+        if (offsets.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(offsets);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(offsets);
+            }
+        });
+    }
+
+    public void markProcessed(ConsumerRecord<?, ?> consumerRecord) {
+        markProcessed(List.of(consumerRecord));
+    }
+
+    private void add(Map<TopicPartition, List<Long>> offsets) {
+        offsets.forEach((topicPartition, partitionOffsets) -> {
+            Window window = windows.computeIfAbsent(topicPartition,
+                    partition -> load(partition, partitionOffsets.stream().mapToLong(Long::longValue).min().orElseThrow()));
+            partitionOffsets.forEach(window::add);
+        });
+    }
+
+    // Todo lo anterior al offset confirmado esta procesado; la ventana guardada solo aporta si va por delante
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+
+        for (TopicPartition topicPartition : partitions) {
+            if (topic.equals(topicPartition.topic())) {
+                windows.put(topicPartition, load(topicPartition, consumer.position(topicPartition)));
+            }
+        }
+    }
+
+    // El contenedor ya confirmo los offsets pendientes de estas particiones
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    private void release(Collection<TopicPartition> partitions) {
+
+        List<TopicPartition> released = partitions.stream().filter(windows::containsKey).toList();
+        checkpoint(released);
+        released.forEach(windows::remove);
+    }
+
+    @Scheduled(fixedDelayString = "${libraryEvents.idempotency.checkpointIntervalMs:5000}",
+            initialDelayString = "${libraryEvents.idempotency.checkpointIntervalMs:5000}")
+    public void checkpoint() {
+        checkpoint(List.copyOf(windows.keySet()));
+    }
+
+    @PreDestroy
+    public void close() {
+        checkpoint();
+    }
+
+    // Una fila por particion con cambios desde el ultimo checkpoint, todas en un saveAll
+    private void checkpoint(Collection<TopicPartition> partitions) {
+
+        List<ProcessedOffsetWindow> rows = new ArrayList<>();
+        for (TopicPartition topicPartition : partitions) {
+            Window window = windows.get(topicPartition);
+            if (window != null) {
+                window.snapshotIfDirty().ifPresent(snapshot -> rows.add(ProcessedOffsetWindow.builder()
+                        .id(id(topicPartition))
+                        .topic(topicPartition.topic())
+                        .partition(topicPartition.partition())
+                        .lowWatermark(snapshot.low)
+                        .window(snapshot.bits.toByteArray())
+                        .build()));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            repository.saveAll(rows);
+            log.debug("Processed offset windows saved for {} partitions", rows.size());
+        } catch (Exception e) {
+            // Se reintenta en el siguiente checkpoint; mientras tanto solo se pierde el descarte tras un reinicio
+            rows.forEach(row -> windows.computeIfPresent(partitionOf(row), (partition, window) -> window.markDirty()));
+            log.warn("Processed offset windows could not be saved : {}", e.getMessage());
+        }
+    }
+
+    private Window load(TopicPartition topicPartition, long committedOffset) {
+
+        Window window = repository.findById(id(topicPartition))
+                .map(row -> Window.of(row, windowSize))
+                .orElseGet(() -> new Window(committedOffset, new BitSet(), windowSize));
+        window.advanceTo(committedOffset);
+        return window;
+    }
+
+    private static String id(TopicPartition topicPartition) {
+        return topicPartition.topic() + "-" + topicPartition.partition();
+    }
+
+    private static TopicPartition partitionOf(ProcessedOffsetWindow row) {
+        return new TopicPartition(row.getTopic(), row.getPartition());
+    }
+
+    static final class Window {
+
+        private long low;
+        private BitSet bits;
+        private final int size;
+        private boolean dirty;
+
+        Window(long low, BitSet bits, int size) {
+            this.low = low;
+            this.bits = bits;
+            this.size = size;
+        }
+
+        static Window of(ProcessedOffsetWindow row, int size) {
+            BitSet bits = row.getWindow() == null ? new BitSet() : BitSet.valueOf(row.getWindow());
+            return new Window(row.getLowWatermark(), bits, size);
+        }
+
+        synchronized boolean contains(long offset) {
+            return offset < low || (offset - low < size && bits.get((int) (offset - low)));
+        }
+
+        synchronized void add(long offset) {
+
+            if (offset < low) {
+                return;
+            }
+            if (offset - low >= size) {
+                slideTo(offset - size + 1);
+            }
+            bits.set((int) (offset - low));
+            int firstGap = bits.nextClearBit(0);
+            if (firstGap > 0) {
+                slideTo(low + firstGap);
+            }
+            dirty = true;
+        }
+
+        // Los offsets por debajo del confirmado estan procesados aunque esta ventana no los viera
+        synchronized void advanceTo(long committedOffset) {
+
+            if (committedOffset > low) {
+                slideTo(committedOffset);
+                int firstGap = bits.nextClearBit(0);
+                if (firstGap > 0) {
+                    slideTo(low + firstGap);
+                }
+            }
+        }
+
+        synchronized long low() {
+            return low;
+        }
+
+        synchronized Optional<Window> snapshotIfDirty() {
+
+            if (!dirty) {
+                return Optional.empty();
+            }
+            dirty = false;
+            return Optional.of(new Window(low, (BitSet) bits.clone(), size));
+        }
+
+        synchronized Window markDirty() {
+            dirty = true;
+            return this;
+        }
+
+        private void slideTo(long newLow) {
+            int shift = (int) Math.min(newLow - low, size);
+            bits = bits.get(shift, Math.max(shift, size));
+            low = newLow;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.learnkafka.state;
+
+import com.learnkafka.model.LibraryEventType;
+
+// Ultimo estado conocido de un libro en LibraryStateStore
+public record BookState(long libraryEventId, LibraryEventType libraryEventType, int bookId, String bookName, String bookAuthor) {
+}
@@ -0,0 +1,125 @@
+package com.learnkafka.state;
+
+import com.learnkafka.model.LibraryEventType;
+
+import java.io.IOException;
+
+// Mapa libraryEventId -> estado del libro con claves long primitivas y direccionamiento abierto (sondeo lineal).
+// No crea un Long ni un nodo de HashMap por entrada: los valores van en arrays paralelos al de claves.
+// No es thread-safe; LibraryStateStore lo protege con un ReadWriteLock.
+final class BookStateMap {
+
+    private static final LibraryEventType[] TYPES = LibraryEventType.values();
+
+    private long[] keys;
+    private byte[] types; // ordinal + 1; 0 = hueco libre, asi cualquier long es una clave valida
+    private int[] bookIds;
+    private String[] bookNames;
+    private String[] bookAuthors;
+    private int size;
+
+    interface Visitor {
+        void visit(long libraryEventId, LibraryEventType libraryEventType, int bookId, String bookName, String bookAuthor)
+                throws IOException;
+    }
+
+    BookStateMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    void put(long libraryEventId, LibraryEventType libraryEventType, int bookId, String bookName, String bookAuthor) {
+
+        // Factor de carga maximo 0.75
+        if ((size + 1) * 4L > keys.length * 3L) {
+            resize(keys.length * 2);
+        }
+        int slot = slot(libraryEventId);
+        if (types[slot] == 0) {
+            keys[slot] = libraryEventId;
+            size++;
+        }
+        types[slot] = (byte) (libraryEventType.ordinal() + 1);
+        bookIds[slot] = bookId;
+        bookNames[slot] = bookName;
+        bookAuthors[slot] = bookAuthor;
+    }
+
+    BookState get(long libraryEventId) {
+        int slot = slot(libraryEventId);
+        if (types[slot] == 0) {
+            return null;
+        }
+        return new BookState(libraryEventId, TYPES[types[slot] - 1], bookIds[slot], bookNames[slot], bookAuthors[slot]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Copia de los arrays para escribir el snapshot fuera del lock
+    BookStateMap copy() {
+        var copy = new BookStateMap(0);
+        copy.keys = keys.clone();
+        copy.types = types.clone();
+        copy.bookIds = bookIds.clone();
+        copy.bookNames = bookNames.clone();
+        copy.bookAuthors = bookAuthors.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    void forEach(Visitor visitor) throws IOException {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (types[slot] != 0) {
+                visitor.visit(keys[slot], TYPES[types[slot] - 1], bookIds[slot], bookNames[slot], bookAuthors[slot]);
+            }
+        }
+    }
+
+    private int slot(long libraryEventId) {
+        int mask = keys.length - 1;
+        int slot = hash(libraryEventId) & mask;
+        while (types[slot] != 0 && keys[slot] != libraryEventId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Los IDs Snowflake comparten los bits altos (timestamp), por eso se mezclan antes de enmascarar
+    private static int hash(long libraryEventId) {
+        long hash = libraryEventId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        byte[] oldTypes = types;
+        int[] oldBookIds = bookIds;
+        String[] oldBookNames = bookNames;
+        String[] oldBookAuthors = bookAuthors;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldTypes[slot] != 0) {
+                int newSlot = slot(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                types[newSlot] = oldTypes[slot];
+                bookIds[newSlot] = oldBookIds[slot];
+                bookNames[newSlot] = oldBookNames[slot];
+                bookAuthors[newSlot] = oldBookAuthors[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        types = new byte[capacity];
+        bookIds = new int[capacity];
+        bookNames = new String[capacity];
+        bookAuthors = new String[capacity];
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = Math.max(16, (int) Math.ceil(expectedSize / 0.75));
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}
@@ -0,0 +1,129 @@
+package com.learnkafka.state;
+
+import com.learnkafka.model.LibraryEventType;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Formato del snapshot (big endian):
+//   magic "LSS1", version
+//   numero de offsets, y por cada uno: topic (UTF-8 con longitud), particion, siguiente offset a consumir
+//   numero de entradas, y por cada una: libraryEventId, ordinal del tipo, bookId, bookName, bookAuthor
+//   CRC32 de todo lo anterior
+// Se escribe en un fichero temporal y se renombra, asi un fallo a mitad nunca deja un snapshot truncado.
+final class LibraryStateSnapshot {
+
+    static final int MAGIC = 0x4C535331;
+    static final int VERSION = 1;
+
+    record Contents(Map<TopicPartition, Long> offsets, BookStateMap states) {
+    }
+
+    private LibraryStateSnapshot() {
+    }
+
+    static void write(Path file, Map<TopicPartition, Long> offsets, BookStateMap states) throws IOException {
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = parent.resolve(file.getFileName() + ".tmp");
+
+        var checked = new CheckedOutputStream(Files.newOutputStream(tmp), new CRC32());
+        try (var out = new DataOutputStream(new BufferedOutputStream(checked, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(offsets.size());
+            for (Map.Entry<TopicPartition, Long> offset : offsets.entrySet()) {
+                writeString(out, offset.getKey().topic());
+                out.writeInt(offset.getKey().partition());
+                out.writeLong(offset.getValue());
+            }
+            out.writeInt(states.size());
+            states.forEach((libraryEventId, libraryEventType, bookId, bookName, bookAuthor) -> {
+                out.writeLong(libraryEventId);
+                out.writeByte(libraryEventType.ordinal());
+                out.writeInt(bookId);
+                writeString(out, bookName);
+                writeString(out, bookAuthor);
+            });
+            out.flush();
+            // El CRC no se incluye a si mismo: se toma antes de escribirlo
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Mapea el fichero en memoria en lugar de leerlo a traves de un stream; limitado a 2 GB
+    static Contents read(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < 16) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            var crc = new CRC32();
+            crc.update(buffer.slice(0, buffer.limit() - Long.BYTES));
+            if (crc.getValue() != buffer.getLong(buffer.limit() - Long.BYTES)) {
+                throw new IOException("Snapshot " + file + " failed the CRC check");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Snapshot " + file + " has an unknown format");
+            }
+
+            int offsetCount = buffer.getInt();
+            Map<TopicPartition, Long> offsets = new HashMap<>(offsetCount * 2);
+            for (int index = 0; index < offsetCount; index++) {
+                var topicPartition = new TopicPartition(readString(buffer), buffer.getInt());
+                offsets.put(topicPartition, buffer.getLong());
+            }
+
+            int entryCount = buffer.getInt();
+            LibraryEventType[] types = LibraryEventType.values();
+            var states = new BookStateMap(entryCount);
+            for (int index = 0; index < entryCount; index++) {
+                long libraryEventId = buffer.getLong();
+                LibraryEventType libraryEventType = types[buffer.get()];
+                int bookId = buffer.getInt();
+                states.put(libraryEventId, libraryEventType, bookId, readString(buffer), readString(buffer));
+            }
+            return new Contents(offsets, states);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
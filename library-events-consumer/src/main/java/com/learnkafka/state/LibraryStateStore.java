@@ -0,0 +1,325 @@
+package com.learnkafka.state;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import com.learnkafka.serde.LibraryEventValues;
+import com.learnkafka.serde.LibraryEventWireDeserializer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Vista materializada en memoria del ultimo estado de cada libro (libraryEvents.stateStore.enabled=true).
+// LibraryEventService la alimenta despues de cada commit en la base de datos, y StateStoreCommitInterceptor
+// le pasa los offsets que el consumidor confirma en Kafka. Como un offset solo se confirma despues de aplicar
+// sus registros, un snapshot que copia primero los offsets y despues los estados nunca se queda por detras
+// de sus offsets. Al arrancar se carga el snapshot; para cada particion asignada, un consumidor de restauracion
+// aparte (sin grupo ni commits) lee la cola entre el snapshot y el offset confirmado y la aplica solo al store.
+// El consumidor del listener nunca retrocede: esos registros no vuelven a pasar por la base de datos ni por RETRY/DLT.
+@Component
+@ConditionalOnProperty(name = "libraryEvents.stateStore.enabled", havingValue = "true")
+@Slf4j
+public class LibraryStateStore implements ConsumerAwareRebalanceListener {
+
+    private static final Duration RESTORE_POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final ObjectMapper objectMapper;
+    private final Supplier<Consumer<Long, Object>> restoreConsumerFactory;
+    private final long restoreTimeoutMs;
+    private final String topic;
+    private final Path snapshotFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<TopicPartition, Long> offsets = new ConcurrentHashMap<>();
+    // Particiones asignadas que aun no han alcanzado el final del log que tenian al asignarse
+    private final Map<TopicPartition, Long> catchUpTargets = new ConcurrentHashMap<>();
+    private final Timer loadTimer;
+    private final Timer restoreTimer;
+    private final Timer checkpointTimer;
+    private BookStateMap states = new BookStateMap(1024);
+    private volatile boolean assigned;
+    private volatile long startupToReadyMs = -1;
+
+    @Autowired
+    public LibraryStateStore(MeterRegistry meterRegistry, ObjectMapper objectMapper, KafkaProperties kafkaProperties,
+                             @Value("${libraryEvents.stateStore.topic:library-events}") String topic,
+                             @Value("${libraryEvents.stateStore.snapshotFile:state/library-state.snapshot}") String snapshotFile,
+                             @Value("${libraryEvents.stateStore.restoreTimeoutMs:120000}") long restoreTimeoutMs) {
+        this(meterRegistry, objectMapper, () -> restoreConsumer(kafkaProperties), topic, snapshotFile, restoreTimeoutMs);
+    }
+
+    LibraryStateStore(MeterRegistry meterRegistry, ObjectMapper objectMapper,
+                      Supplier<Consumer<Long, Object>> restoreConsumerFactory, String topic, String snapshotFile,
+                      long restoreTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.restoreConsumerFactory = restoreConsumerFactory;
+        this.restoreTimeoutMs = restoreTimeoutMs;
+        this.topic = topic;
+        this.snapshotFile = Path.of(snapshotFile);
+        this.loadTimer = Timer.builder("library.events.state.store.load").register(meterRegistry);
+        this.restoreTimer = Timer.builder("library.events.state.store.restore").register(meterRegistry);
+        this.checkpointTimer = Timer.builder("library.events.state.store.checkpoint").register(meterRegistry);
+        Gauge.builder("library.events.state.store.size", this, LibraryStateStore::size).register(meterRegistry);
+        // NaN hasta que todas las particiones asignadas alcanzan el final del log
+        TimeGauge.builder("library.events.state.store.startup.to.ready", this, TimeUnit.MILLISECONDS,
+                        store -> store.startupToReadyMs < 0 ? Double.NaN : store.startupToReadyMs)
+                .description("Time from JVM start until the state store caught up with the assigned partitions")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+
+        if (!Files.exists(snapshotFile)) {
+            log.info("No state store snapshot at {}, assigned partitions will be restored from the beginning", snapshotFile);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            var contents = LibraryStateSnapshot.read(snapshotFile);
+            lock.writeLock().lock();
+            try {
+                states = contents.states();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            offsets.putAll(contents.offsets());
+            long elapsed = System.nanoTime() - start;
+            loadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("State store loaded {} books and offsets {} from {} in {} ms",
+                    contents.states().size(), contents.offsets(), snapshotFile, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        } catch (IOException | RuntimeException e) {
+            // Un snapshot ilegible equivale a no tenerlo: se restaura desde el principio del topic
+            log.warn("Ignoring unreadable state store snapshot {} : {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    public void apply(LibraryEvent libraryEvent) {
+
+        lock.writeLock().lock();
+        try {
+            states.put(libraryEvent.getLibraryEventId(), libraryEvent.getLibraryEventType(),
+                    libraryEvent.getBook().getBookId(), libraryEvent.getBook().getBookName(), libraryEvent.getBook().getBookAuthor());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<BookState> get(long libraryEventId) {
+
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(states.get(libraryEventId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+
+        lock.readLock().lock();
+        try {
+            return states.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Siguiente offset a consumir segun el ultimo commit visto, o null si la particion no se ha consumido
+    public Long offset(TopicPartition topicPartition) {
+        return offsets.get(topicPartition);
+    }
+
+    // Llamado desde el hilo del consumidor tras cada commit de offsets
+    public void committed(Map<TopicPartition, OffsetAndMetadata> committed) {
+
+        committed.forEach((topicPartition, offsetAndMetadata) -> {
+            if (topic.equals(topicPartition.topic())) {
+                offsets.merge(topicPartition, offsetAndMetadata.offset(), Math::max);
+                catchUpTargets.computeIfPresent(topicPartition,
+                        (partition, target) -> offsetAndMetadata.offset() >= target ? null : target);
+            }
+        });
+        markReadyIfCaughtUp();
+    }
+
+    @Scheduled(fixedDelayString = "${libraryEvents.stateStore.checkpointIntervalMs:30000}",
+            initialDelayString = "${libraryEvents.stateStore.checkpointIntervalMs:30000}")
+    public void checkpoint() throws IOException {
+
+        long start = System.nanoTime();
+        // 1. Primero los offsets: todo lo anterior a ellos ya esta aplicado en states
+        Map<TopicPartition, Long> checkpointOffsets = new HashMap<>(offsets);
+        // 2. Copia de los arrays bajo el lock; la escritura del fichero no bloquea al listener
+        BookStateMap checkpointStates;
+        lock.readLock().lock();
+        try {
+            checkpointStates = states.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+        LibraryStateSnapshot.write(snapshotFile, checkpointOffsets, checkpointStates);
+        checkpointTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("State store checkpoint with {} books and offsets {}", checkpointStates.size(), checkpointOffsets);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        checkpoint();
+    }
+
+    // Se ejecuta en el hilo del listener antes de su primer poll de estas particiones, asi que la restauracion
+    // termina antes de que el listener aplique registros posteriores. Si el snapshot va por delante del commit
+    // (caida entre aplicar y confirmar) no hay nada que restaurar: el listener reentrega esos registros igualmente.
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+
+        var topicPartitions = partitions.stream().filter(partition -> topic.equals(partition.topic())).toList();
+        if (topicPartitions.isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(topicPartitions);
+        Map<TopicPartition, Long> restoreFrom = new HashMap<>();
+        Map<TopicPartition, Long> restoreTo = new HashMap<>();
+        for (TopicPartition topicPartition : topicPartitions) {
+            long position = consumer.position(topicPartition);
+            Long checkpoint = offsets.get(topicPartition);
+            if (checkpoint == null || checkpoint < position) {
+                // null = desde el principio del topic
+                restoreFrom.put(topicPartition, checkpoint);
+                restoreTo.put(topicPartition, position);
+            }
+            long endOffset = endOffsets.getOrDefault(topicPartition, 0L);
+            if (startupToReadyMs < 0 && position < endOffset) {
+                catchUpTargets.put(topicPartition, endOffset);
+            }
+        }
+        if (!restoreTo.isEmpty()) {
+            restore(restoreFrom, restoreTo);
+        }
+        assigned = true;
+        markReadyIfCaughtUp();
+    }
+
+    // Lee [restoreFrom, restoreTo) de cada particion con un consumidor propio y solo actualiza el store
+    private void restore(Map<TopicPartition, Long> restoreFrom, Map<TopicPartition, Long> restoreTo) {
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(restoreTimeoutMs);
+        Map<TopicPartition, Long> remaining = new HashMap<>(restoreTo);
+        int applied = 0;
+        try (Consumer<Long, Object> restoreConsumer = restoreConsumerFactory.get()) {
+            restoreConsumer.assign(remaining.keySet());
+            restoreFrom.forEach((topicPartition, from) -> {
+                if (from == null) {
+                    restoreConsumer.seekToBeginning(List.of(topicPartition));
+                } else {
+                    restoreConsumer.seek(topicPartition, from);
+                }
+            });
+            remaining.entrySet().removeIf(entry -> restoreConsumer.position(entry.getKey()) >= entry.getValue());
+            while (!remaining.isEmpty() && System.nanoTime() < deadline) {
+                for (ConsumerRecord<Long, Object> consumerRecord : restoreConsumer.poll(RESTORE_POLL_TIMEOUT)) {
+                    Long to = remaining.get(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()));
+                    if (to != null && consumerRecord.offset() < to && applyRestored(consumerRecord)) {
+                        applied++;
+                    }
+                }
+                remaining.entrySet().removeIf(entry -> restoreConsumer.position(entry.getKey()) >= entry.getValue());
+                restoreConsumer.pause(restoreTo.keySet().stream().filter(partition -> !remaining.containsKey(partition)).toList());
+            }
+        }
+        // A partir de aqui el store refleja todo lo anterior al offset confirmado de cada particion restaurada
+        restoreTo.forEach((topicPartition, to) -> {
+            if (!remaining.containsKey(topicPartition)) {
+                offsets.merge(topicPartition, to, Math::max);
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        restoreTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (remaining.isEmpty()) {
+            log.info("State store restored {} records of {} in {} ms", applied, restoreTo.keySet(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+        } else {
+            log.warn("State store restore of {} stopped after {} ms; those books may be stale until they are updated again",
+                    remaining.keySet(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+    // Misma regla que la validacion del listener: un UPDATE solo se aplica sobre un libro conocido. Los NEW sin ID
+    // recibieron su ID en la base de datos y no se pueden reconstruir desde el topic
+    private boolean applyRestored(ConsumerRecord<Long, Object> consumerRecord) {
+
+        LibraryEvent libraryEvent;
+        try {
+            libraryEvent = LibraryEventValues.read(consumerRecord.value(), objectMapper);
+        } catch (Exception e) {
+            log.debug("Skipping unreadable record {}-{}@{} while restoring the state store",
+                    consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+            return false;
+        }
+        if (libraryEvent.getLibraryEventId() == null || libraryEvent.getBook() == null
+                || libraryEvent.getLibraryEventType() == null
+                || (libraryEvent.getLibraryEventType() == LibraryEventType.UPDATE && get(libraryEvent.getLibraryEventId()).isEmpty())) {
+            return false;
+        }
+        apply(libraryEvent);
+        return true;
+    }
+
+    // Sin group.id ni commits: solo lee, nunca mueve los offsets del grupo. Mismos brokers, seguridad y formatos que el listener
+    private static Consumer<Long, Object> restoreConsumer(KafkaProperties kafkaProperties) {
+
+        Map<String, Object> config = kafkaProperties.buildConsumerProperties();
+        config.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        config.remove(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        return new KafkaConsumer<>(config, new LongDeserializer(), new LibraryEventWireDeserializer());
+    }
+
+    private void markReadyIfCaughtUp() {
+
+        if (startupToReadyMs >= 0 || !assigned || !catchUpTargets.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (startupToReadyMs < 0) {
+                startupToReadyMs = ManagementFactory.getRuntimeMXBean().getUptime();
+                log.info("State store caught up with {} books, {} ms after startup", size(), startupToReadyMs);
+            }
+        }
+    }
+}
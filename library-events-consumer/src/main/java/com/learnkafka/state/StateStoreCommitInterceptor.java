@@ -0,0 +1,39 @@
+package com.learnkafka.state;
+
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Map;
+
+// Kafka instancia el interceptor por reflexion; el bean de LibraryStateStore le llega en la configuracion
+// del consumidor (ver LibraryStateStoreConfig). onCommit se invoca en cada commit, sincrono o asincrono,
+// de cualquier modo del listener, por lo que el store siempre ve offsets ya completos.
+public class StateStoreCommitInterceptor implements ConsumerInterceptor<Object, Object> {
+
+    public static final String STATE_STORE_CONFIG = "library.events.state.store";
+
+    private LibraryStateStore libraryStateStore;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        this.libraryStateStore = (LibraryStateStore) configs.get(STATE_STORE_CONFIG);
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> onConsume(ConsumerRecords<Object, Object> records) {
+        return records;
+    }
+
+    @Override
+    public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        if (libraryStateStore != null) {
+            libraryStateStore.committed(offsets);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
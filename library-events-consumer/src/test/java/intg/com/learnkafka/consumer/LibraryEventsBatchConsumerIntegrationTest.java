@@ -0,0 +1,153 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.repository.LibraryEventsRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@EmbeddedKafka(
+        topics = {"library-events", "library-events.RETRY-5000", "library-events.RETRY-30000",
+                "library-events.RETRY-300000", "library-events.DLT"},
+        partitions = 3
+)
+@TestPropertySource(properties = {
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "libraryListener.mode=batch", // Activa el listener batch en lugar del listener por registro
+        "retryListener.startup=false"})
+public class LibraryEventsBatchConsumerIntegrationTest {
+
+    @Value("${topics.retry}-5000") // Primer nivel de reintento diferido
+    private String retryTopic;
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    KafkaTemplate<Long, String> kafkaTemplate;
+
+    @Autowired
+    KafkaListenerEndpointRegistry endpointRegistry;
+
+    @Autowired
+    LibraryEventsRepository libraryEventsRepository;
+
+    @Autowired
+    FailureRecordRepository failureRecordRepository;
+
+    private Consumer<Long, String> consumer;
+
+    @BeforeEach
+    void setUp() {
+
+        var container = endpointRegistry.getListenerContainers()
+                .stream().filter(messageListenerContainer ->
+                        Objects.equals(messageListenerContainer.getGroupId(), "library-events-listener-group"))
+                .toList().get(0);
+        ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        if (consumer != null) {
+            consumer.close();
+        }
+        libraryEventsRepository.deleteAll();
+        failureRecordRepository.deleteAll();
+    }
+
+    @Test
+    void publishNewLibraryEvents_persistedInBatch() throws ExecutionException, InterruptedException {
+
+        // given
+        for (int bookId = 1; bookId <= 5; bookId++) {
+            kafkaTemplate.sendDefault(newLibraryEventJson(bookId)).get();
+        }
+
+        // when
+        CountDownLatch latch = new CountDownLatch(1);
+        latch.await(3, TimeUnit.SECONDS);
+
+        // then
+        List<LibraryEvent> libraryEventList = (List<LibraryEvent>) libraryEventsRepository.findAll();
+        assertEquals(5, libraryEventList.size());
+    }
+
+    @Test
+    void publishBatchWithRecoverableFailure_onlyFailedRecordSentToRetryTopic() throws ExecutionException, InterruptedException {
+
+        // given: el 999 simula un error recuperable en medio del lote
+        String failingJson = "{\"libraryEventId\":999,\"libraryEventType\":\"UPDATE\",\"book\"" +
+                ":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+        kafkaTemplate.sendDefault(0L, newLibraryEventJson(1)).get();
+        kafkaTemplate.sendDefault(0L, failingJson).get();
+        kafkaTemplate.sendDefault(0L, newLibraryEventJson(2)).get();
+
+        // when
+        CountDownLatch latch = new CountDownLatch(1);
+        latch.await(5, TimeUnit.SECONDS);
+
+        // then: los registros validos se persisten y solo el fallido va al topic de reintentos
+        assertEquals(2, libraryEventsRepository.count());
+
+        Map<String, Object> configs = new HashMap<>(KafkaTestUtils.consumerProps("group-batch", "true", embeddedKafkaBroker));
+        consumer = new DefaultKafkaConsumerFactory<>(configs, new LongDeserializer(), new StringDeserializer()).createConsumer();
+        embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, retryTopic);
+
+        ConsumerRecord<Long, String> consumerRecord = KafkaTestUtils.getSingleRecord(consumer, retryTopic);
+        assertEquals(failingJson, consumerRecord.value());
+    }
+
+    @Test
+    void publishNewAndUpdateOfSameEventInOneBatch_updateIsApplied() throws ExecutionException, InterruptedException {
+
+        // given: el UPDATE llega en el mismo poll que el NEW que crea el evento
+        kafkaTemplate.sendDefault(777L, "{\"libraryEventId\":777,\"libraryEventType\":\"NEW\",\"book\"" +
+                ":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+        kafkaTemplate.sendDefault(777L, "{\"libraryEventId\":777,\"libraryEventType\":\"UPDATE\",\"book\"" +
+                ":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot 2.x\",\"bookAuthor\":\"Dilip\"}}").get();
+
+        // when
+        CountDownLatch latch = new CountDownLatch(1);
+        latch.await(3, TimeUnit.SECONDS);
+
+        // then
+        LibraryEvent libraryEvent = libraryEventsRepository.findById(777L).orElseThrow();
+        assertEquals("Kafka Using Spring Boot 2.x", libraryEvent.getBook().getBookName());
+        assertEquals(0, failureRecordRepository.count());
+    }
+
+    private static String newLibraryEventJson(int bookId) {
+        return "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":" +
+                "{\"bookId\":" + bookId + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+    }
+}
@@ -2,6 +2,7 @@ package com.learnkafka.consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.config.RetryTiers;
 import com.learnkafka.model.Book;
 import com.learnkafka.model.LibraryEvent;
 import com.learnkafka.model.LibraryEventType;
@@ -11,7 +12,7 @@ import com.learnkafka.service.LibraryEventService;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.common.serialization.IntegerDeserializer;
+import org.apache.kafka.common.serialization.LongDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -37,21 +38,23 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest // 1. Arrancar el contexto completo de la aplicacion
 @EmbeddedKafka ( // 2. Inicia un broker de kafka en memoria
-        topics = {"library-events", "library-events.RETRY", "library-events.DLT"},
+        topics = {"library-events", "library-events.RETRY-5000", "library-events.RETRY-30000",
+                "library-events.RETRY-300000", "library-events.DLT"},
         partitions = 3 // Define el numero de particiones
 )
 @TestPropertySource(properties = { // 3. Sobrescribe las propiedades de la aplicacion para la prueba}
         "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
-        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
         "retryListener.startup=false"}) // Util para deshabilitar otros listeners que no se estan probando
 public class LibraryEventsConsumerIntegrationTest {
 
-    @Value("${topics.retry}")
+    @Value("${topics.retry}-5000") // Primer nivel de reintento diferido
     private String retryTopic;
 
     @Value("${topics.dlt}")
@@ -61,7 +64,7 @@ public class LibraryEventsConsumerIntegrationTest {
     EmbeddedKafkaBroker embeddedKafkaBroker;
 
     @Autowired
-    KafkaTemplate<Integer, String> kafkaTemplate;
+    KafkaTemplate<Long, String> kafkaTemplate;
 
     @Autowired
     KafkaListenerEndpointRegistry endpointRegistry;
@@ -81,7 +84,7 @@ public class LibraryEventsConsumerIntegrationTest {
     @Autowired
     ObjectMapper objectMapper;
 
-    private Consumer<Integer, String> consumer;
+    private Consumer<Long, String> consumer;
 
     @BeforeEach
     void setUp() {
@@ -120,7 +123,7 @@ public class LibraryEventsConsumerIntegrationTest {
         // then: verifica los resultados
         // 1. Verifica que los metodos del consumidor y del servicio fueron llamados una vez
         verify(libraryEventsConsumerSpy, times(1)).onMessage(isA(ConsumerRecord.class));
-        verify(libraryEventServiceSpy, times(1)).proccessLibraryEvent(isA(ConsumerRecord.class));
+        verify(libraryEventServiceSpy, times(1)).processLibraryEvent(isA(ConsumerRecord.class));
 
         // 2. Verifica que el evento fue guardado correctamente en la base de datos
         List<LibraryEvent> libraryEventList = (List<LibraryEvent>) libraryEventsRepository.findAll();
@@ -131,6 +134,24 @@ public class LibraryEventsConsumerIntegrationTest {
         });
     }
 
+    @Test
+    void publishNewLibraryEvent_keepsProducerAssignedId() throws ExecutionException, InterruptedException {
+
+        // given: NEW con el ID Snowflake que asigna el productor, usado tambien como key
+        Long libraryEventId = 1L << 40;
+        String json = "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"NEW\",\"book\":" +
+                "{\"bookId\":457,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+        kafkaTemplate.sendDefault(libraryEventId, json).get();
+
+        // when
+        CountDownLatch latch = new CountDownLatch(1);
+        latch.await(3, TimeUnit.SECONDS);
+
+        // then: se persiste con el mismo ID, no con uno generado por el consumidor
+        LibraryEvent persistedLibraryEvent = libraryEventsRepository.findById(libraryEventId).get();
+        assertEquals(457, persistedLibraryEvent.getBook().getBookId());
+    }
+
     @Test
     void publishUpdateLibraryEvent() throws JsonProcessingException, ExecutionException, InterruptedException {
 
@@ -167,7 +188,7 @@ public class LibraryEventsConsumerIntegrationTest {
             InterruptedException, ExecutionException {
 
         // given: Publica un mensaje que causara un IllegalArgumentException
-        Integer libraryEventId = 123;
+        Long libraryEventId = 123L;
         String json = "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\"" +
                 ":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
         System.out.println(json);
@@ -180,17 +201,17 @@ public class LibraryEventsConsumerIntegrationTest {
         // then: Verifica los resultados
         // 1. Verifica que los metodos del consumidor y del servicio fueron llamados una vez
         verify(libraryEventsConsumerSpy, times(1)).onMessage(isA(ConsumerRecord.class));
-        verify(libraryEventServiceSpy, times(1)).proccessLibraryEvent(isA(ConsumerRecord.class));
+        verify(libraryEventServiceSpy, times(1)).processLibraryEvent(isA(ConsumerRecord.class));
 
         // 2. Verifica que el mensaje fallido fue enviado al Dead Letter Topic
         // crea un consumidor de prueba para leer del DLT
         Map<String, Object> configs = new HashMap<>(KafkaTestUtils.consumerProps("group2", "true", embeddedKafkaBroker));
-        consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(), new StringDeserializer()).createConsumer();
+        consumer = new DefaultKafkaConsumerFactory<>(configs, new LongDeserializer(), new StringDeserializer()).createConsumer();
         // Conecta nuestro consumidor de prueba al topic de DLT para empezar a escuchar
         embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, deadLetterTopic);
 
         // Obtiene el registro del DLT y verifica que es el menasje original
-        ConsumerRecord<Integer, String> consumerRecord = KafkaTestUtils.getSingleRecord(consumer, deadLetterTopic);
+        ConsumerRecord<Long, String> consumerRecord = KafkaTestUtils.getSingleRecord(consumer, deadLetterTopic);
 
         System.out.println("Consumer record in deadletter topic : " + consumerRecord.value());
 
@@ -206,7 +227,7 @@ public class LibraryEventsConsumerIntegrationTest {
     void publishModifyLibraryEvent_Null_LibraryEventId() throws JsonProcessingException, InterruptedException, ExecutionException {
 
         // given
-        Integer libraryEventId = null;
+        Long libraryEventId = null;
         String json = "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\"" +
                 ":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
         kafkaTemplate.sendDefault(libraryEventId, json).get();
@@ -216,17 +237,17 @@ public class LibraryEventsConsumerIntegrationTest {
         latch.await(3, TimeUnit.SECONDS);
 
         verify(libraryEventsConsumerSpy, times(1)).onMessage(isA(ConsumerRecord.class));
-        verify(libraryEventServiceSpy, times(1)).proccessLibraryEvent(isA(ConsumerRecord.class));
+        verify(libraryEventServiceSpy, times(1)).processLibraryEvent(isA(ConsumerRecord.class));
 
         Map<String, Object> configs = new HashMap<>(KafkaTestUtils.consumerProps("group3", "true", embeddedKafkaBroker));
-        consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(), new StringDeserializer()).createConsumer();
+        consumer = new DefaultKafkaConsumerFactory<>(configs, new LongDeserializer(), new StringDeserializer()).createConsumer();
 
         // Conecta nuestro consumidor de prueba al topic de DLT para empezar a escuchar
         embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, deadLetterTopic);
 
-        ConsumerRecords<Integer, String> consumerRecords = KafkaTestUtils.getRecords(consumer);
+        ConsumerRecords<Long, String> consumerRecords = KafkaTestUtils.getRecords(consumer);
 
-        var deadletterList = new ArrayList<ConsumerRecord<Integer, String>>();
+        var deadletterList = new ArrayList<ConsumerRecord<Long, String>>();
         consumerRecords.forEach(record -> {
             if (record.topic().equals(deadLetterTopic)) {
                 deadletterList.add(record);
@@ -246,10 +267,11 @@ public class LibraryEventsConsumerIntegrationTest {
             ExecutionException {
 
         // given
-        Integer libraryEventId = 999;
+        Long libraryEventId = 999L;
         String json = "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"UPDATE\",\"book\"" +
                 ":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
-        kafkaTemplate.sendDefault(libraryEventId, json).get(); // .get hace la publiacion sincrona
+        long publishedAt = kafkaTemplate.sendDefault(libraryEventId, json).get() // .get hace la publiacion sincrona
+                .getRecordMetadata().timestamp();
 
         // when
         CountDownLatch latch = new CountDownLatch(1);
@@ -258,18 +280,22 @@ public class LibraryEventsConsumerIntegrationTest {
         // then
         // 1. Verifica que los reintentos ocurrieron
         verify(libraryEventsConsumerSpy, atLeast(3)).onMessage(isA(ConsumerRecord.class));
-        verify(libraryEventServiceSpy, atLeast(3)).proccessLibraryEvent(isA(ConsumerRecord.class));
+        verify(libraryEventServiceSpy, atLeast(3)).processLibraryEvent(isA(ConsumerRecord.class));
 
         // 2. Crea un consumidor de prueba para espiar el retryTopic
         Map<String, Object> configs = new HashMap<>(KafkaTestUtils.consumerProps("group1", "true", embeddedKafkaBroker));
-        consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(), new StringDeserializer()).createConsumer();
+        consumer = new DefaultKafkaConsumerFactory<>(configs, new LongDeserializer(), new StringDeserializer()).createConsumer();
         embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, retryTopic);
 
         // 3. Obtiene el registro del retrytopic
-        ConsumerRecord<Integer, String> consumerRecord = KafkaTestUtils.getSingleRecord(consumer, retryTopic);
+        ConsumerRecord<Long, String> consumerRecord = KafkaTestUtils.getSingleRecord(consumer, retryTopic);
 
         // 4. Afirma que el contenido del mensaje encontado en el retryTopic es identico al original que causo el fallo
         assertEquals(json, consumerRecord.value());
+        // 5. Primer reintento diferido: no se reprocesa antes de que venza el retardo del nivel
+        assertEquals(1, RetryTiers.attempt(consumerRecord));
+        // El vencimiento se calcula al fallar, antes de republicar: se compara con la publicacion original
+        assertTrue(RetryTiers.dueAt(consumerRecord) >= publishedAt + 5000);
         consumerRecord.headers()
                 .forEach(header -> {
                     System.out.println("Header key : " + header.key() + ", Header value : " + new String(header.value()));
@@ -282,7 +308,7 @@ public class LibraryEventsConsumerIntegrationTest {
             ExecutionException {
 
         // given: publica un mensaje diseñado para activar un error recuperable
-        Integer libraryEventId = 999;
+        Long libraryEventId = 999L;
         String json = "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"UPDATE\",\"book\"" +
                 ":{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
         kafkaTemplate.sendDefault(libraryEventId, json).get();
@@ -294,7 +320,7 @@ public class LibraryEventsConsumerIntegrationTest {
         // Then: Verifica los resultados.
         // 1. Verifica que los reintentos ocurrieron (1 intento original + 2 reintentos).
         verify(libraryEventsConsumerSpy, times(3)).onMessage(isA(ConsumerRecord.class));
-        verify(libraryEventServiceSpy, times(3)).proccessLibraryEvent(isA(ConsumerRecord.class));
+        verify(libraryEventServiceSpy, times(3)).processLibraryEvent(isA(ConsumerRecord.class));
 
         // 2. La aserción clave: verifica que se creó exactamente un registro en la tabla de fallos.
         var failureCount = failureRecordRepository.count();
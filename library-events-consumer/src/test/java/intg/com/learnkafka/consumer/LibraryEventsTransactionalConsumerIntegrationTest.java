@@ -0,0 +1,174 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.model.ConsumedOffset;
+import com.learnkafka.repository.ConsumedOffsetRepository;
+import com.learnkafka.repository.LibraryEventsRepository;
+import com.learnkafka.service.LibraryEventService;
+import com.learnkafka.state.LibraryStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest
+@EmbeddedKafka(
+        topics = {"library-events", "library-events.RETRY-5000", "library-events.RETRY-30000",
+                "library-events.RETRY-300000", "library-events.DLT"},
+        partitions = 3,
+        // Un solo broker: el log de transacciones no puede exigir 3 replicas
+        brokerProperties = {"transaction.state.log.replication.factor=1", "transaction.state.log.min.isr=1"}
+)
+@TestPropertySource(properties = {
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "libraryListener.mode=transactional", // Activa el listener exactly-once
+        "libraryEvents.stateStore.enabled=true",
+        "libraryEvents.stateStore.snapshotFile=build/state/${random.uuid}.snapshot",
+        "retryListener.startup=false"})
+public class LibraryEventsTransactionalConsumerIntegrationTest {
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    KafkaTemplate<Long, String> kafkaTemplate;
+
+    @Autowired
+    KafkaListenerEndpointRegistry endpointRegistry;
+
+    @Autowired
+    LibraryEventsRepository libraryEventsRepository;
+
+    @Autowired
+    ConsumedOffsetRepository consumedOffsetRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    LibraryStateStore libraryStateStore;
+
+    @MockitoSpyBean // Inyecta la caida del proceso entre el commit JPA y el de Kafka
+    LibraryEventService libraryEventServiceSpy;
+
+    private Consumer<Long, String> consumer;
+
+    @BeforeEach
+    void setUp() {
+
+        var container = endpointRegistry.getListenerContainers()
+                .stream().filter(messageListenerContainer ->
+                        Objects.equals(messageListenerContainer.getGroupId(), "library-events-listener-group"))
+                .toList().get(0);
+        ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        if (consumer != null) {
+            consumer.close();
+        }
+        libraryEventsRepository.deleteAll();
+        consumedOffsetRepository.deleteAll();
+    }
+
+    @Test
+    void crashAfterDatabaseCommit_redeliveredPollIsNotWrittenTwice() throws Exception {
+
+        //given: el primer poll se persiste y el proceso "cae" antes de que Kafka confirme la transaccion
+        var crashes = new AtomicInteger();
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            if (crashes.getAndIncrement() == 0) {
+                throw new IllegalStateException("Simulated crash after the database commit");
+            }
+            return null;
+        }).when(libraryEventServiceSpy).processLibraryEventsTransactionally(anyList(), anyString(), any());
+
+        // NEW sin ID: el consumidor genera el ID, asi que una reescritura crearia filas duplicadas
+        for (int bookId = 1; bookId <= 5; bookId++) {
+            kafkaTemplate.sendDefault(0L, newLibraryEventJson(bookId)).get();
+        }
+        String invalidUpdate = "{\"libraryEventId\":12345,\"libraryEventType\":\"UPDATE\",\"book\":" +
+                "{\"bookId\":6,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+        kafkaTemplate.sendDefault(0L, invalidUpdate).get();
+
+        //when
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(20);
+        while (consumedOffset() < 6 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+        Thread.sleep(1000);
+
+        //then: hubo caida y reentrega, pero cada evento esta una sola vez
+        assertTrue(crashes.get() >= 2, "the poll should have been redelivered after the crash");
+        assertEquals(6L, consumedOffset());
+        assertEquals(5, libraryEventsRepository.count());
+        assertTrue(meterRegistry.get("library.events.consumer.duplicates.skipped").counter().count() >= 1);
+
+        // el store recibe los offsets de la transaccion confirmada aunque no pasen por onCommit del interceptor
+        assertEquals(6L, stateStoreOffset());
+
+        // y el UPDATE invalido llega una sola vez al DLT, aunque se recupero tambien en la transaccion abortada
+        Map<String, Object> configs = new HashMap<>(KafkaTestUtils.consumerProps("group-transactional", "true", embeddedKafkaBroker));
+        configs.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        consumer = new DefaultKafkaConsumerFactory<>(configs, new LongDeserializer(), new StringDeserializer()).createConsumer();
+        embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, "library-events.DLT");
+        ConsumerRecord<Long, String> deadLetter = KafkaTestUtils.getSingleRecord(consumer, "library-events.DLT");
+        assertEquals(invalidUpdate, deadLetter.value());
+    }
+
+    // Siguiente offset guardado en la base de datos para la particion de la key 0
+    private long consumedOffset() {
+        long nextOffset = 0;
+        for (ConsumedOffset consumedOffset : consumedOffsetRepository.findAll()) {
+            nextOffset = Math.max(nextOffset, consumedOffset.getNextOffset());
+        }
+        return nextOffset;
+    }
+
+    private long stateStoreOffset() {
+        long nextOffset = 0;
+        for (int partition = 0; partition < embeddedKafkaBroker.getPartitionsPerTopic(); partition++) {
+            Long offset = libraryStateStore.offset(new TopicPartition("library-events", partition));
+            nextOffset = Math.max(nextOffset, offset == null ? 0 : offset);
+        }
+        return nextOffset;
+    }
+
+    private static String newLibraryEventJson(int bookId) {
+        return "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":" +
+                "{\"bookId\":" + bookId + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+    }
+}
@@ -0,0 +1,128 @@
+package com.learnkafka.scheduler;
+
+import com.learnkafka.LibraryEventsConsumerApplication;
+import com.learnkafka.config.LibraryEventsConsumerConfig;
+import com.learnkafka.model.FailureRecord;
+import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.repository.LibraryEventsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Dos replicas del consumidor (dos contextos) contra la misma base H2 compartida
+public class RetrySchedulerClaimIntegrationTest {
+
+    private static final int RECORDS = 200;
+
+    private ConfigurableApplicationContext instance1;
+    private ConfigurableApplicationContext instance2;
+    private FailureRecordRepository failureRecordRepository;
+
+    @BeforeEach
+    void setUp() {
+        instance1 = startInstance("instance-1", 1);
+        instance2 = startInstance("instance-2", 2);
+        failureRecordRepository = instance1.getBean(FailureRecordRepository.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // La base H2 sobrevive a los contextos (DB_CLOSE_DELAY=-1): cada test empieza sin filas
+        failureRecordRepository.deleteAll();
+        instance1.getBean(LibraryEventsRepository.class).deleteAll();
+        instance1.close();
+        instance2.close();
+    }
+
+    @Test
+    void concurrentInstancesRetryEachRecordExactlyOnce() {
+
+        //given
+        List<FailureRecord> failureRecords = new ArrayList<>();
+        for (int bookId = 1; bookId <= RECORDS; bookId++) {
+            failureRecords.add(failureRecord(bookId));
+        }
+        failureRecordRepository.saveAll(failureRecords);
+
+        //when: las dos replicas compiten por el mismo backlog
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> retry(instance1)),
+                CompletableFuture.runAsync(() -> retry(instance2))).join();
+
+        //then: cada NEW se proceso una sola vez (un segundo NEW con el mismo bookId fallaria)
+        var processed = (List<FailureRecord>) failureRecordRepository.findAll();
+        assertEquals(RECORDS, processed.size());
+        processed.forEach(failureRecord -> {
+            assertEquals(LibraryEventsConsumerConfig.SUCCESS, failureRecord.getStatus());
+            assertEquals(0, failureRecord.getAttempts());
+        });
+        assertEquals(RECORDS, instance2.getBean(LibraryEventsRepository.class).count());
+    }
+
+    @Test
+    void expiredLeaseOfCrashedInstanceIsClaimedByAnother() {
+
+        //given: un registro reclamado por una instancia que cayo y cuyo lease ya vencio
+        var failureRecord = failureRecord(1);
+        failureRecord.setOwner("crashed-instance");
+        failureRecord.setLeaseExpiresAt(Instant.now().minusSeconds(1));
+        failureRecordRepository.save(failureRecord);
+
+        //when
+        retry(instance2);
+
+        //then
+        var retried = failureRecordRepository.findAll().iterator().next();
+        assertEquals(LibraryEventsConsumerConfig.SUCCESS, retried.getStatus());
+        assertNull(retried.getOwner());
+    }
+
+    // Cada replica necesita su propio nodo Snowflake: con el mismo nodo dos NEW pueden recibir el mismo ID
+    // Como argumentos y no con properties(): esas son propiedades por defecto y application.yml las pisaria
+    private static ConfigurableApplicationContext startInstance(String instanceId, int nodeId) {
+        return new SpringApplicationBuilder(LibraryEventsConsumerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:retry-claim;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--libraryListener.startup=false",
+                        "--retryListener.startup=false",
+                        "--retryScheduler.initialDelayMs=3600000", // Las pasadas se lanzan a mano desde el test
+                        "--retryScheduler.pageSize=10",
+                        "--retryScheduler.instanceId=" + instanceId,
+                        "--spring.jpa.properties.library_events.id.node_id=" + nodeId);
+    }
+
+    private static void retry(ConfigurableApplicationContext instance) {
+        try {
+            instance.getBean(RetryScheduler.class).retryFailedRecords();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FailureRecord failureRecord(int bookId) {
+        return FailureRecord.builder()
+                .topic("library-events")
+                .key_value(null)
+                .partition(0)
+                .offset_value((long) bookId)
+                .errorRecord("{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":" +
+                        "{\"bookId\":" + bookId + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}")
+                .exception("Temporary Network Issue")
+                .status(LibraryEventsConsumerConfig.RETRY)
+                .attempts(0)
+                .nextAttemptAt(Instant.now().minusSeconds(1))
+                .build();
+    }
+}
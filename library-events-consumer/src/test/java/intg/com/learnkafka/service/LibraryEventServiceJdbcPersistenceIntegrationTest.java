@@ -0,0 +1,240 @@
+package com.learnkafka.service;
+
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.repository.LibraryEventsRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "libraryEvents.persistence.mode=jdbc",
+        "libraryListener.startup=false",
+        "retryListener.startup=false",
+        "retryScheduler.initialDelayMs=3600000",
+        "spring.datasource.url=jdbc:h2:mem:jdbc-persistence"})
+public class LibraryEventServiceJdbcPersistenceIntegrationTest {
+
+    @Autowired
+    LibraryEventService libraryEventService;
+
+    @Autowired
+    LibraryEventsRepository libraryEventsRepository;
+
+    @Autowired
+    StatementCounter statementCounter;
+
+    @Test
+    void newLibraryEvent_oneStatementPerTable() throws Exception {
+
+        //given
+        var consumerRecord = newRecord(1_000L, 1_000);
+
+        //when
+        int statements = statementCounter.count(() -> libraryEventService.processLibraryEvent(consumerRecord));
+
+        //then
+        assertEquals(2, statements);
+        var libraryEvent = libraryEventsRepository.findById(1_000L).orElseThrow();
+        assertEquals(1_000, libraryEvent.getBook().getBookId());
+    }
+
+    @Test
+    void updateLibraryEvent_conditionalUpdateReplacesFindById() throws Exception {
+
+        //given
+        libraryEventService.processLibraryEvent(newRecord(2_000L, 2_000));
+        var updateRecord = new ConsumerRecord<>("library-events", 0, 0L, 2_000L,
+                "{\"libraryEventId\":2000,\"libraryEventType\":\"UPDATE\",\"book\":" +
+                        "{\"bookId\":2000,\"bookName\":\"Kafka Using Spring Boot 2.X\",\"bookAuthor\":\"Dilip\"}}");
+
+        //when
+        int statements = statementCounter.count(() -> libraryEventService.processLibraryEvent(updateRecord));
+
+        //then
+        assertEquals(2, statements);
+        var libraryEvent = libraryEventsRepository.findById(2_000L).orElseThrow();
+        assertEquals("Kafka Using Spring Boot 2.X", libraryEvent.getBook().getBookName());
+    }
+
+    @Test
+    void updateLibraryEvent_unknownIdIsRejectedAfterOneStatement() {
+
+        //given
+        var updateRecord = new ConsumerRecord<>("library-events", 0, 0L, 3_000L,
+                "{\"libraryEventId\":3000,\"libraryEventType\":\"UPDATE\",\"book\":" +
+                        "{\"bookId\":3000,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+
+        //when
+        assertThrows(IllegalArgumentException.class,
+                () -> statementCounter.count(() -> libraryEventService.processLibraryEvent(updateRecord)));
+
+        //then: solo el UPDATE de library_event, que no afecto ninguna fila
+        assertEquals(1, statementCounter.lastCount());
+        assertFalse(libraryEventsRepository.existsById(3_000L));
+    }
+
+    @Test
+    void processLibraryEvents_oneBatchPerTablePerJdbcBatchSize() throws Exception {
+
+        //given: 120 NEW con hibernate.jdbc.batch_size=50 -> 3 batches por tabla
+        List<ConsumerRecord<Long, String>> consumerRecords = new ArrayList<>();
+        for (int index = 0; index < 120; index++) {
+            consumerRecords.add(newRecord(4_000L + index, 4_000 + index));
+        }
+
+        //when
+        int statements = statementCounter.count(() -> libraryEventService.processLibraryEvents(consumerRecords));
+
+        //then
+        assertEquals(6, statements);
+        assertEquals(120, StreamSupport.stream(libraryEventsRepository.findAllById(
+                consumerRecords.stream().map(ConsumerRecord::key).toList()).spliterator(), false).count());
+    }
+
+    @Test
+    void replayedNewLibraryEvent_doesNotOverwriteLaterUpdate() throws Exception {
+
+        //given: el NEW se reentrega despues de que un UPDATE cambiara el libro
+        libraryEventService.processLibraryEvent(newRecord(6_000L, 6_000));
+        libraryEventService.processLibraryEvent(updateRecord(6_000L, 6_000, "Kafka Using Spring Boot 2.X"));
+
+        //when
+        libraryEventService.processLibraryEvent(newRecord(6_000L, 6_000));
+
+        //then
+        var libraryEvent = libraryEventsRepository.findById(6_000L).orElseThrow();
+        assertEquals("UPDATE", libraryEvent.getLibraryEventType().name());
+        assertEquals("Kafka Using Spring Boot 2.X", libraryEvent.getBook().getBookName());
+    }
+
+    @Test
+    void processLibraryEvents_updateInBatchIsApplied() throws Exception {
+
+        //given: NEW y UPDATE del mismo evento en el mismo lote, y otra vez el NEW al final
+        List<ConsumerRecord<Long, String>> consumerRecords = List.of(newRecord(7_000L, 7_000),
+                updateRecord(7_000L, 7_000, "Kafka Using Spring Boot 2.X"), newRecord(7_000L, 7_000));
+
+        //when
+        libraryEventService.processLibraryEvents(consumerRecords);
+
+        //then
+        var libraryEvent = libraryEventsRepository.findById(7_000L).orElseThrow();
+        assertEquals("Kafka Using Spring Boot 2.X", libraryEvent.getBook().getBookName());
+    }
+
+    @Test
+    void newLibraryEvent_withoutIdGetsSnowflakeId() throws Exception {
+
+        //given
+        var consumerRecord = new ConsumerRecord<Long, String>("library-events", 0, 0L, null,
+                "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":" +
+                        "{\"bookId\":5000,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+
+        //when
+        libraryEventService.processLibraryEvent(consumerRecord);
+
+        //then
+        LibraryEvent libraryEvent = StreamSupport.stream(libraryEventsRepository.findAll().spliterator(), false)
+                .filter(event -> event.getBook().getBookId() == 5000)
+                .findFirst().orElseThrow();
+        assertNotNull(libraryEvent.getLibraryEventId());
+    }
+
+    private static ConsumerRecord<Long, String> newRecord(Long libraryEventId, int bookId) {
+        return new ConsumerRecord<>("library-events", 0, 0L, libraryEventId,
+                "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"NEW\",\"book\":" +
+                        "{\"bookId\":" + bookId + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}");
+    }
+
+    private static ConsumerRecord<Long, String> updateRecord(Long libraryEventId, int bookId, String bookName) {
+        return new ConsumerRecord<>("library-events", 0, 0L, libraryEventId,
+                "{\"libraryEventId\":" + libraryEventId + ",\"libraryEventType\":\"UPDATE\",\"book\":" +
+                        "{\"bookId\":" + bookId + ",\"bookName\":\"" + bookName + "\",\"bookAuthor\":\"Dilip\"}}");
+    }
+
+    // Cuenta las sentencias enviadas a la base de datos (execute, executeUpdate, executeBatch...) desde el hilo del test
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        static StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    static class StatementCounter implements BeanPostProcessor {
+
+        private final ThreadLocal<AtomicInteger> recording = new ThreadLocal<>();
+        private volatile int lastCount;
+
+        interface Action {
+            void run() throws Exception;
+        }
+
+        int count(Action action) throws Exception {
+            var counter = new AtomicInteger();
+            recording.set(counter);
+            try {
+                action.run();
+            } finally {
+                recording.remove();
+                lastCount = counter.get();
+            }
+            return counter.get();
+        }
+
+        int lastCount() {
+            return lastCount;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource) {
+                return proxy(DataSource.class, dataSource);
+            }
+            return bean;
+        }
+
+        private Object proxy(Class<?> type, Object target) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    AtomicInteger counter = recording.get();
+                    if (counter != null) {
+                        counter.incrementAndGet();
+                    }
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+                // DataSource -> Connection -> Statement/PreparedStatement/CallableStatement
+                if (result != null && method.getReturnType().isInterface()
+                        && (method.getReturnType() == Connection.class
+                        || java.sql.Statement.class.isAssignableFrom(method.getReturnType()))) {
+                    return proxy(method.getReturnType(), result);
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.learnkafka.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryTiersTest {
+
+    RetryTiers retryTiers = new RetryTiers("library-events.RETRY", new long[]{5000, 30000, 300000}, 4);
+
+    @Test
+    void oneTopicPerDelay() {
+        assertEquals(List.of("library-events.RETRY-5000", "library-events.RETRY-30000", "library-events.RETRY-300000"),
+                retryTiers.topics());
+        assertEquals(1, retryTiers.tierOf("library-events.RETRY-30000"));
+        assertEquals(-1, retryTiers.tierOf("library-events"));
+    }
+
+    @Test
+    void nextTier_climbsTheTiers_repeatsTheLast_andEndsInTheDlt() {
+
+        //given: un registro del topic principal
+        ConsumerRecord<Long, String> record = record();
+
+        //then
+        assertEquals(0, retryTiers.nextTier(record));
+        record = forwarded(record, 0);
+        assertEquals(1, retryTiers.nextTier(record));
+        record = forwarded(record, 1);
+        assertEquals(2, retryTiers.nextTier(record));
+        record = forwarded(record, 2);
+        assertEquals(2, retryTiers.nextTier(record));
+        record = forwarded(record, 2);
+        assertEquals(4, RetryTiers.attempt(record));
+        assertEquals(-1, retryTiers.nextTier(record));
+    }
+
+    @Test
+    void retryHeaders_carryTheDueTimeOfTheTier() {
+
+        //given
+        long before = System.currentTimeMillis();
+
+        //when
+        var record = forwarded(record(), 1);
+
+        //then
+        assertEquals(1, RetryTiers.attempt(record));
+        assertTrue(RetryTiers.dueAt(record) >= before + 30000);
+        assertTrue(RetryTiers.dueAt(record) <= System.currentTimeMillis() + 30000);
+    }
+
+    private static ConsumerRecord<Long, String> record() {
+        return new ConsumerRecord<>("library-events", 0, 0L, 1L, "{}");
+    }
+
+    // Como el DeadLetterPublishingRecoverer: conserva las cabeceras y añade las del reenvio al final
+    private ConsumerRecord<Long, String> forwarded(ConsumerRecord<Long, String> record, int tier) {
+        var forwarded = new ConsumerRecord<>(retryTiers.topic(tier), 0, 0L, 1L, "{}");
+        record.headers().forEach(forwarded.headers()::add);
+        retryTiers.retryHeaders(record, tier).forEach(forwarded.headers()::add);
+        return forwarded;
+    }
+}
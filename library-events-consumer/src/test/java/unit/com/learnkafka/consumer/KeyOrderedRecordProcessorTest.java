@@ -0,0 +1,172 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.scheduler.ConsumerLagMonitor;
+import com.learnkafka.service.FailureService;
+import com.learnkafka.service.LibraryEventService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class KeyOrderedRecordProcessorTest {
+
+    LibraryEventService libraryEventService = mock(LibraryEventService.class);
+    DeadLetterPublishingRecoverer publishingRecoverer = mock(DeadLetterPublishingRecoverer.class);
+    FailureService failureService = mock(FailureService.class);
+
+    KeyOrderedRecordProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new KeyOrderedRecordProcessor(libraryEventService, publishingRecoverer, failureService,
+                mock(ConsumerLagMonitor.class), 4, 100);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.shutdown();
+    }
+
+    @Test
+    void recordsWithSameKeyAreProcessedInOffsetOrder() throws Exception {
+
+        //given
+        int keys = 8;
+        int recordsPerKey = 25;
+        Map<Long, List<Long>> processedOffsets = new ConcurrentHashMap<>();
+        CountDownLatch acks = new CountDownLatch(keys * recordsPerKey);
+        doAnswer(invocation -> {
+            ConsumerRecord<Long, String> consumerRecord = invocation.getArgument(0);
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            processedOffsets.computeIfAbsent(consumerRecord.key(), key -> new CopyOnWriteArrayList<>()).add(consumerRecord.offset());
+            return null;
+        }).when(libraryEventService).processLibraryEvent(any());
+
+        //when
+        long offset = 0;
+        for (int i = 0; i < recordsPerKey; i++) {
+            for (long key = 0; key < keys; key++) {
+                processor.submit(new ConsumerRecord<>("library-events", 0, offset++, key, "{}"), acks::countDown);
+            }
+        }
+
+        //then
+        assertTrue(acks.await(10, TimeUnit.SECONDS));
+        assertEquals(keys, processedOffsets.size());
+        processedOffsets.values().forEach(offsets -> {
+            assertEquals(recordsPerKey, offsets.size());
+            for (int i = 1; i < offsets.size(); i++) {
+                assertTrue(offsets.get(i - 1) < offsets.get(i));
+            }
+        });
+    }
+
+    @Test
+    void invalidRecordIsRecoveredWithoutRetriesAndAcknowledged() throws Exception {
+
+        //given
+        var consumerRecord = new ConsumerRecord<>("library-events", 0, 0L, 123L, "{}");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        doThrow(new IllegalArgumentException("Not a valid library Event: ID does not exist"))
+                .when(libraryEventService).processLibraryEvent(any());
+
+        //when
+        processor.submit(consumerRecord, acknowledgment);
+
+        //then
+        verify(acknowledgment, timeout(2000)).acknowledge();
+        verify(publishingRecoverer).accept(eq(consumerRecord), any(Exception.class));
+        verify(libraryEventService).processLibraryEvent(consumerRecord);
+    }
+
+    @Test
+    void failedRecoveryIsSavedAsFailureRecordAndAcknowledged() throws Exception {
+
+        //given
+        var consumerRecord = new ConsumerRecord<>("library-events", 0, 0L, 123L, "{}");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        doThrow(new IllegalArgumentException("invalid")).when(libraryEventService).processLibraryEvent(any());
+        doThrow(new RuntimeException("broker down")).when(publishingRecoverer).accept(any(), any(Exception.class));
+
+        //when
+        processor.submit(consumerRecord, acknowledgment);
+
+        //then
+        verify(acknowledgment, timeout(2000)).acknowledge();
+        verify(failureService).saveFailedRecord(eq(consumerRecord), any(IllegalArgumentException.class), eq("RETRY"));
+    }
+
+    @Test
+    void recordIsNotAcknowledgedUntilItIsRecovered() throws Exception {
+
+        //given: ni RETRY/DLT ni FailureRecord en el primer intento de recuperacion
+        var consumerRecord = new ConsumerRecord<>("library-events", 0, 0L, 123L, "{}");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        doThrow(new IllegalArgumentException("invalid")).when(libraryEventService).processLibraryEvent(any());
+        doThrow(new RuntimeException("broker down")).when(publishingRecoverer).accept(any(), any(Exception.class));
+        doThrow(new RuntimeException("database down")).doNothing()
+                .when(failureService).saveFailedRecord(any(), any(), any());
+
+        //when
+        processor.submit(consumerRecord, acknowledgment);
+
+        //then
+        verify(failureService, timeout(500)).saveFailedRecord(eq(consumerRecord), any(IllegalArgumentException.class), eq("RETRY"));
+        verify(acknowledgment, after(500).never()).acknowledge();
+        verify(acknowledgment, timeout(2000)).acknowledge();
+        verify(failureService, times(2)).saveFailedRecord(eq(consumerRecord), any(IllegalArgumentException.class), eq("RETRY"));
+    }
+
+    @Test
+    void recordWithSameKeyWaitsWhileRecoveryIsBlocked() throws Exception {
+
+        //given
+        var failing = new ConsumerRecord<>("library-events", 0, 0L, 123L, "{}");
+        var next = new ConsumerRecord<>("library-events", 0, 1L, 123L, "{}");
+        Acknowledgment failingAck = mock(Acknowledgment.class);
+        Acknowledgment nextAck = mock(Acknowledgment.class);
+        doThrow(new IllegalArgumentException("invalid")).when(libraryEventService).processLibraryEvent(failing);
+        doThrow(new RuntimeException("broker down")).when(publishingRecoverer).accept(any(), any(Exception.class));
+        doThrow(new RuntimeException("database down")).when(failureService).saveFailedRecord(any(), any(), any());
+
+        //when
+        processor.submit(failing, failingAck);
+        processor.submit(next, nextAck);
+
+        //then
+        verify(nextAck, after(1500).never()).acknowledge();
+        verify(failingAck, never()).acknowledge();
+        verify(libraryEventService, never()).processLibraryEvent(next);
+
+        //when: la base de datos vuelve
+        doNothing().when(failureService).saveFailedRecord(any(), any(), any());
+
+        //then
+        verify(failingAck, timeout(2000)).acknowledge();
+        verify(nextAck, timeout(2000)).acknowledge();
+    }
+}
@@ -0,0 +1,97 @@
+package com.learnkafka.consumer;
+
+import com.learnkafka.config.RetryTiers;
+import com.learnkafka.logging.HotPathLog;
+import com.learnkafka.scheduler.ConsumerLagMonitor;
+import com.learnkafka.service.LibraryEventService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryEventsRetryConsumerTest {
+
+    static final TopicPartition TIER_0 = new TopicPartition("library-events.RETRY-5000", 0);
+
+    LibraryEventService libraryEventService = mock(LibraryEventService.class);
+    KafkaListenerEndpointRegistry endpointRegistry = mock(KafkaListenerEndpointRegistry.class);
+    MessageListenerContainer container = mock(MessageListenerContainer.class);
+    Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    MockConsumer<Long, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    LibraryEventsRetryConsumer retryConsumer;
+
+    @BeforeEach
+    void setUp() {
+        when(endpointRegistry.getListenerContainer(LibraryEventsRetryConsumer.LISTENER_ID)).thenReturn(container);
+        consumer.assign(List.of(TIER_0));
+        retryConsumer = new LibraryEventsRetryConsumer(libraryEventService,
+                new RetryTiers("library-events.RETRY", new long[]{5000, 30000}, 3), endpointRegistry, meterRegistry,
+                mock(ConsumerLagMonitor.class), new HotPathLog(meterRegistry, 100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        retryConsumer.shutdown();
+    }
+
+    @Test
+    void notDue_rewindsAndPausesThePartition_untilTheDueTime() throws Exception {
+
+        //given: el registro 10 vence en 200 ms y el 11 llega en el mismo poll
+        long dueAt = System.currentTimeMillis() + 200;
+
+        //when
+        retryConsumer.onMessage(record(10, dueAt), acknowledgment, consumer);
+        retryConsumer.onMessage(record(11, dueAt), acknowledgment, consumer);
+
+        //then: nada se procesa ni se confirma, y la particion se reanuda al vencer
+        assertEquals(10, consumer.position(TIER_0));
+        verify(container).pausePartition(TIER_0);
+        verify(libraryEventService, never()).processLibraryEvent(any());
+        verify(acknowledgment, never()).acknowledge();
+        verify(container, timeout(2000)).resumePartition(TIER_0);
+        assertEquals(1.0, meterRegistry.get("library.events.consumer.retry.pauses").tag("tier", "5000").counter().count());
+    }
+
+    @Test
+    void due_afterResumeTheRewoundRecordIsProcessed() throws Exception {
+
+        //given: se pauso en el offset 10
+        retryConsumer.onMessage(record(10, System.currentTimeMillis() + 60_000), acknowledgment, consumer);
+
+        //when: al reanudar vuelve el registro 10, ya vencido
+        retryConsumer.onMessage(record(10, System.currentTimeMillis() - 1), acknowledgment, consumer);
+
+        //then
+        verify(libraryEventService).processLibraryEvent(any());
+        verify(acknowledgment).acknowledge();
+        assertEquals(1.0, meterRegistry.get("library.events.consumer.retry.processed")
+                .tags("tier", "5000", "outcome", "success").counter().count());
+    }
+
+    private static ConsumerRecord<Long, String> record(long offset, long dueAt) {
+        var record = new ConsumerRecord<>(TIER_0.topic(), TIER_0.partition(), offset, 1L, "{}");
+        record.headers().add(RetryTiers.ATTEMPT_HEADER, "1".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(RetryTiers.DUE_AT_HEADER, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
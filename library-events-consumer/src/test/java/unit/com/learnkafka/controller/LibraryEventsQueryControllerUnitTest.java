@@ -0,0 +1,88 @@
+package com.learnkafka.controller;
+
+import com.learnkafka.model.LibraryEventType;
+import com.learnkafka.model.LibraryEventView;
+import com.learnkafka.service.LibraryEventQueryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(LibraryEventsQueryController.class)
+public class LibraryEventsQueryControllerUnitTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockitoBean
+    LibraryEventQueryService libraryEventQueryService;
+
+    @Test
+    void getLibraryEvent() throws Exception {
+
+        //given
+        when(libraryEventQueryService.findById(123L)).thenReturn(Optional.of(libraryEventView(123L)));
+
+        //expect
+        mockMvc.perform(get("/v1/libraryevents/123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.libraryEventId").value("123"))
+                .andExpect(jsonPath("$.book.bookAuthor").value("Dilip"));
+    }
+
+    @Test
+    void getLibraryEvent_notFound() throws Exception {
+
+        //given
+        when(libraryEventQueryService.findById(124L)).thenReturn(Optional.empty());
+
+        //expect
+        mockMvc.perform(get("/v1/libraryevents/124"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void searchLibraryEvents_byAuthor() throws Exception {
+
+        //given
+        when(libraryEventQueryService.search(eq("Dilip"), isNull(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(libraryEventView(123L)), PageRequest.of(0, 20), 21));
+
+        //expect
+        mockMvc.perform(get("/v1/libraryevents").param("bookAuthor", "Dilip"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].libraryEventId").value("123"))
+                .andExpect(jsonPath("$.page.totalElements").value(21))
+                .andExpect(jsonPath("$.page.totalPages").value(2));
+    }
+
+    @Test
+    void searchLibraryEvents_pageSizeAboveLimit() throws Exception {
+
+        //expect
+        mockMvc.perform(get("/v1/libraryevents").param("size", "1000"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(libraryEventQueryService);
+    }
+
+    private static LibraryEventView libraryEventView(Long libraryEventId) {
+        return new LibraryEventView(libraryEventId, LibraryEventType.NEW,
+                new LibraryEventView.BookView(456, "Kafka Using Spring Boot", "Dilip"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.learnkafka.scheduler;
+
+import com.learnkafka.repository.FailureRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ConsumerLagMonitorTest {
+
+    static final String LISTENER_GROUP = "library-events-listener-group";
+    static final String RETRY_GROUP = "retry-listener-group";
+    static final TopicPartition PARTITION_0 = new TopicPartition("library-events", 0);
+    static final TopicPartition PARTITION_1 = new TopicPartition("library-events", 1);
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    ConsumerLagMonitor monitor = new ConsumerLagMonitor(new KafkaProperties(), mock(FailureRecordRepository.class),
+            meterRegistry, List.of(LISTENER_GROUP, RETRY_GROUP), 15_000L);
+
+    @Test
+    void reportsLagPerPartitionAndPerGroup() {
+
+        //given
+        monitor.update(LISTENER_GROUP, Map.of(PARTITION_0, 90L, PARTITION_1, 200L),
+                Map.of(PARTITION_0, 100L, PARTITION_1, 200L));
+
+        //when
+        var report = monitor.report(1_000_000L);
+
+        //then
+        var group = report.groups().get(LISTENER_GROUP);
+        assertEquals(10L, group.totalLag());
+        assertEquals(new ConsumerLagMonitor.PartitionLag("library-events", 0, 90L, 100L, 10L, null),
+                group.partitions().get(0));
+        assertEquals(0L, group.partitions().get(1).lag());
+        // Un grupo sin offsets confirmados aparece vacio en lugar de desaparecer del informe
+        assertEquals(0L, report.groups().get(RETRY_GROUP).totalLag());
+        assertTrue(report.groups().get(RETRY_GROUP).partitions().isEmpty());
+        assertEquals(10.0, meterRegistry.get("library.events.consumer.partition.lag")
+                .tags("group", LISTENER_GROUP, "partition", "0").gauge().value());
+    }
+
+    @Test
+    void lastRecordAgeFollowsTheNewestProcessedTimestamp() {
+
+        //given: registros fuera de orden, uno sin timestamp y una particion con offsets pero sin registros procesados
+        monitor.update(LISTENER_GROUP, Map.of(PARTITION_1, 0L), Map.of(PARTITION_1, 0L));
+        monitor.recordProcessed(LISTENER_GROUP, record(PARTITION_0, 5_000L));
+        monitor.recordProcessed(LISTENER_GROUP, record(PARTITION_0, 3_000L));
+        monitor.recordProcessed(LISTENER_GROUP, record(PARTITION_1, -1L));
+
+        //when
+        var partitions = monitor.report(8_000L).groups().get(LISTENER_GROUP).partitions();
+
+        //then
+        assertEquals(3_000L, partitions.get(0).lastRecordAgeMs());
+        assertEquals(PARTITION_1.partition(), partitions.get(1).partition());
+        assertNull(partitions.get(1).lastRecordAgeMs());
+        assertTrue(Double.isNaN(meterRegistry.get("library.events.consumer.record.age")
+                .tags("group", LISTENER_GROUP, "partition", "1").gauge().value()));
+    }
+
+    @Test
+    void lagByPartitionOnlyReturnsPartitionsReadFromTheBroker() {
+
+        //given: la particion 0 solo la conoce recordProcessed()
+        monitor.recordProcessed(LISTENER_GROUP, record(PARTITION_0, 5_000L));
+        monitor.update(LISTENER_GROUP, Map.of(PARTITION_1, 40L), Map.of(PARTITION_1, 100L));
+        monitor.update(RETRY_GROUP, Map.of(PARTITION_0, 0L), Map.of(PARTITION_0, 100L));
+
+        //then
+        assertEquals(Map.of(PARTITION_1, 60L), monitor.lagByPartition(LISTENER_GROUP, "library-events"));
+        assertEquals(Map.of(), monitor.lagByPartition(LISTENER_GROUP, "library-events.RETRY-5000"));
+    }
+
+    @Test
+    void failureRecordsBacklogResetsStatusesThatDisappear() {
+
+        //given
+        monitor.updateFailureRecords(Map.of("RETRY", 4L, "DEAD", 1L));
+
+        //when: los RETRY ya se reprocesaron
+        monitor.updateFailureRecords(Map.of("DEAD", 2L));
+
+        //then
+        assertEquals(Map.of("DEAD", 2L, "RETRY", 0L), monitor.report(0L).failureRecords());
+        assertEquals(0.0, meterRegistry.get("library.events.failure.records").tag("status", "RETRY").gauge().value());
+        assertEquals(2.0, meterRegistry.get("library.events.failure.records").tag("status", "DEAD").gauge().value());
+    }
+
+    private static ConsumerRecord<Long, String> record(TopicPartition topicPartition, long timestamp) {
+        return new ConsumerRecord<>(topicPartition.topic(), topicPartition.partition(), 0L, timestamp,
+                timestamp < 0 ? TimestampType.NO_TIMESTAMP_TYPE : TimestampType.CREATE_TIME, 0, 0, 1L, "{}",
+                new RecordHeaders(), Optional.empty());
+    }
+}
@@ -0,0 +1,120 @@
+package com.learnkafka.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ListenerConcurrencyAutoscalerTest {
+
+    // min 1, max 6, 1000 de lag por consumidor, 2 evaluaciones para subir, 3 para bajar, 60s de cooldown
+    KafkaListenerEndpointRegistry endpointRegistry = mock(KafkaListenerEndpointRegistry.class);
+    ConsumerLagMonitor lagMonitor = mock(ConsumerLagMonitor.class);
+    ListenerConcurrencyAutoscaler autoscaler = new ListenerConcurrencyAutoscaler(endpointRegistry,
+            lagMonitor, new SimpleMeterRegistry(), "library-events", "library-events-listener-group",
+            1, 6, 1000L, 2, 3, 60_000L);
+
+    @Test
+    void scalesUpAfterConsecutiveEvaluations_boundedByPartitionCount() {
+
+        //given: 4500 de lag pediria 5 consumidores, pero el topic solo tiene 4 particiones
+        var lag = lag(4, 1125L);
+
+        //when
+        var first = autoscaler.evaluate(3, 4, lag, 1_000_000L);
+        var second = autoscaler.evaluate(3, 4, lag, 1_030_000L);
+
+        //then
+        assertEquals(3, first.concurrency());
+        assertTrue(first.reason().contains("1/2 evaluations"), first.reason());
+        assertEquals(4, second.concurrency());
+    }
+
+    @Test
+    void scalesDownSlowerThanUp_andNeverBelowTheMinimum() {
+
+        //given: topic ocioso
+        var idle = lag(3, 0L);
+
+        //then
+        assertEquals(3, autoscaler.evaluate(3, 3, idle, 1_000_000L).concurrency());
+        assertEquals(3, autoscaler.evaluate(3, 3, idle, 1_030_000L).concurrency());
+        assertEquals(1, autoscaler.evaluate(3, 3, idle, 1_060_000L).concurrency());
+    }
+
+    @Test
+    void aChangeOfDirectionResetsTheVotes_andCooldownHoldsTheNextChange() {
+
+        //given: un pico de lag aislado no basta para subir
+        assertEquals(1, autoscaler.evaluate(1, 6, lag(6, 1000L), 1_000_000L).concurrency());
+        assertEquals(1, autoscaler.evaluate(1, 6, lag(6, 0L), 1_030_000L).concurrency());
+        assertEquals(1, autoscaler.evaluate(1, 6, lag(6, 1000L), 1_060_000L).concurrency());
+
+        //when: sostenido, sube
+        assertEquals(6, autoscaler.evaluate(1, 6, lag(6, 1000L), 1_090_000L).concurrency());
+
+        //then: el lag vuelve a cero pero dentro del cooldown no baja
+        autoscaler.evaluate(6, 6, lag(6, 0L), 1_100_000L);
+        autoscaler.evaluate(6, 6, lag(6, 0L), 1_110_000L);
+        var held = autoscaler.evaluate(6, 6, lag(6, 0L), 1_120_000L);
+        assertEquals(6, held.concurrency());
+        assertTrue(held.reason().contains("cooldown"), held.reason());
+        assertEquals(1, autoscaler.evaluate(6, 6, lag(6, 0L), 1_160_000L).concurrency());
+    }
+
+    @Test
+    void autoscale_usesTheLagReadByTheMonitor() {
+
+        //given: el monitor aun no ha leido el lag
+        var container = container(3);
+        when(lagMonitor.lagByPartition("library-events-listener-group", "library-events")).thenReturn(Map.of());
+
+        //when
+        autoscaler.autoscale();
+
+        //then
+        verify(container, never()).stop();
+
+        //when: 6 particiones con 1000 de lag cada una
+        when(lagMonitor.lagByPartition("library-events-listener-group", "library-events")).thenReturn(lag(6, 1000L));
+        autoscaler.autoscale();
+        autoscaler.autoscale();
+
+        //then
+        verify(container).stop();
+        verify(container).setConcurrency(6);
+        verify(container).start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMessageListenerContainer<Long, String> container(int concurrency) {
+        ConcurrentMessageListenerContainer<Long, String> container = mock(ConcurrentMessageListenerContainer.class);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties("library-events"));
+        when(container.getGroupId()).thenReturn("library-events-listener-group");
+        when(container.isRunning()).thenReturn(true);
+        when(container.getConcurrency()).thenReturn(concurrency);
+        when(endpointRegistry.getListenerContainers()).thenReturn(List.of(container));
+        return container;
+    }
+
+    private static Map<TopicPartition, Long> lag(int partitions, long lagPerPartition) {
+        Map<TopicPartition, Long> lag = new HashMap<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            lag.put(new TopicPartition("library-events", partition), lagPerPartition);
+        }
+        return lag;
+    }
+}
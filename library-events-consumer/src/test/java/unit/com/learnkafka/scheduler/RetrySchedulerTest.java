@@ -0,0 +1,179 @@
+package com.learnkafka.scheduler;
+
+import com.learnkafka.config.LibraryEventsConsumerConfig;
+import com.learnkafka.model.FailureRecord;
+import com.learnkafka.repository.FailureRecordRepository;
+import com.learnkafka.service.LibraryEventService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RetrySchedulerTest {
+
+    LibraryEventService libraryEventService = mock(LibraryEventService.class);
+    FailureRecordRepository failureRecordRepository = mock(FailureRecordRepository.class);
+
+    RetryScheduler retryScheduler = new RetryScheduler(libraryEventService, failureRecordRepository,
+            2, 2, 3, 1000L, 5000L, "instance-1", 60000L);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        retryScheduler.shutdown();
+    }
+
+    @Test
+    void retryFailedRecords_processesOnlyClaimedRecordsUntilNothingIsLeft() throws Exception {
+
+        //given: dos vueltas de reclamo; en la primera otra instancia gana el registro 2
+        when(failureRecordRepository.findClaimableIds(eq(LibraryEventsConsumerConfig.RETRY), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(1, 2), List.of(3), List.of());
+        when(failureRecordRepository.claim(anyList(), eq(LibraryEventsConsumerConfig.RETRY), eq("instance-1"), any(Instant.class), any(Instant.class)))
+                .thenReturn(1);
+        when(failureRecordRepository.findByOwnerAndStatusAndLeaseExpiresAtGreaterThanOrderByBookId(eq("instance-1"), eq(LibraryEventsConsumerConfig.RETRY), any(Instant.class)))
+                .thenReturn(List.of(failureRecord(1, 10L)), List.of(failureRecord(3, 30L)));
+
+        //when
+        retryScheduler.retryFailedRecords();
+
+        //then
+        verify(failureRecordRepository, times(2)).claim(anyList(), any(), any(), any(), any());
+        verify(libraryEventService, times(2)).processLibraryEvent(any());
+        verify(failureRecordRepository, times(2)).save(argThat((FailureRecord failureRecord) ->
+                LibraryEventsConsumerConfig.SUCCESS.equals(failureRecord.getStatus())
+                        && failureRecord.getOwner() == null && failureRecord.getLeaseExpiresAt() == null));
+    }
+
+    @Test
+    void retryFailedRecords_keepsClaimingWhenAnotherInstanceWinsAWholeBatch() throws Exception {
+
+        //given: otra instancia gana los registros 1 y 2; el 3 sigue disponible
+        when(failureRecordRepository.findClaimableIds(eq(LibraryEventsConsumerConfig.RETRY), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(1, 2), List.of(3), List.of());
+        when(failureRecordRepository.claim(anyList(), eq(LibraryEventsConsumerConfig.RETRY), eq("instance-1"), any(Instant.class), any(Instant.class)))
+                .thenReturn(0, 1);
+        when(failureRecordRepository.findByOwnerAndStatusAndLeaseExpiresAtGreaterThanOrderByBookId(eq("instance-1"), eq(LibraryEventsConsumerConfig.RETRY), any(Instant.class)))
+                .thenReturn(List.of(), List.of(failureRecord(3, 30L)));
+
+        //when
+        retryScheduler.retryFailedRecords();
+
+        //then
+        verify(failureRecordRepository, times(3)).findClaimableIds(any(), any(), any());
+        verify(libraryEventService, times(1)).processLibraryEvent(any());
+    }
+
+    @Test
+    void retryFailedRecords_recordWhoseResultIsNotSavedIsNotRetriedAgainInTheSamePass() throws Exception {
+
+        //given: el resultado del registro 1 no se guarda, asi que conserva owner y lease y vuelve en la siguiente consulta
+        var unsaved = failureRecord(1, 10L);
+        when(failureRecordRepository.findClaimableIds(eq(LibraryEventsConsumerConfig.RETRY), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(1), List.of(2), List.of());
+        when(failureRecordRepository.claim(anyList(), eq(LibraryEventsConsumerConfig.RETRY), eq("instance-1"), any(Instant.class), any(Instant.class)))
+                .thenReturn(1);
+        when(failureRecordRepository.findByOwnerAndStatusAndLeaseExpiresAtGreaterThanOrderByBookId(eq("instance-1"), eq(LibraryEventsConsumerConfig.RETRY), any(Instant.class)))
+                .thenReturn(List.of(unsaved), List.of(unsaved, failureRecord(2, 20L)));
+        when(failureRecordRepository.save(unsaved)).thenThrow(new RecoverableDataAccessException("database down"));
+
+        //when
+        retryScheduler.retryFailedRecords();
+
+        //then
+        verify(libraryEventService, times(2)).processLibraryEvent(any());
+        verify(failureRecordRepository, times(1)).save(unsaved);
+    }
+
+    @Test
+    void retry_lostLeaseIsNotPropagated() throws Exception {
+
+        //given
+        var failureRecord = failureRecord(1, 10L);
+        when(failureRecordRepository.save(failureRecord))
+                .thenThrow(new ObjectOptimisticLockingFailureException(FailureRecord.class, 1));
+
+        //when
+        retryScheduler.retry(failureRecord, Instant.now());
+
+        //then
+        verify(failureRecordRepository).save(failureRecord);
+    }
+
+    @Test
+    void retry_failureSchedulesNextAttemptWithExponentialBackoff() throws Exception {
+
+        //given
+        var failureRecord = failureRecord(1, 999L);
+        failureRecord.setAttempts(1);
+        doThrow(new RecoverableDataAccessException("Temporary Network Issue")).when(libraryEventService).processLibraryEvent(any());
+        var now = Instant.now();
+
+        //when
+        retryScheduler.retry(failureRecord, now);
+
+        //then: segundo intento fallido -> 1000ms * 2
+        assertEquals(LibraryEventsConsumerConfig.RETRY, failureRecord.getStatus());
+        assertEquals(2, failureRecord.getAttempts());
+        assertEquals(now.plusMillis(2000), failureRecord.getNextAttemptAt());
+        verify(failureRecordRepository).save(failureRecord);
+    }
+
+    @Test
+    void retry_movesToDeadAfterMaxAttempts() throws Exception {
+
+        //given
+        var failureRecord = failureRecord(1, 999L);
+        failureRecord.setAttempts(2);
+        doThrow(new RecoverableDataAccessException("Temporary Network Issue")).when(libraryEventService).processLibraryEvent(any());
+
+        //when
+        retryScheduler.retry(failureRecord, Instant.now());
+
+        //then
+        assertEquals(LibraryEventsConsumerConfig.DEAD, failureRecord.getStatus());
+        assertEquals(3, failureRecord.getAttempts());
+        assertNotNull(failureRecord.getException());
+    }
+
+    @Test
+    void backoff_isCappedAtMaxBackoff() {
+
+        assertEquals(Duration.ofMillis(1000), retryScheduler.backoff(1));
+        assertEquals(Duration.ofMillis(4000), retryScheduler.backoff(3));
+        assertEquals(Duration.ofMillis(5000), retryScheduler.backoff(4));
+        assertTrue(retryScheduler.backoff(100).toMillis() <= 5000);
+    }
+
+    private static FailureRecord failureRecord(int id, Long key) {
+        return FailureRecord.builder()
+                .bookId(id)
+                .topic("library-events")
+                .key_value(key)
+                .partition(0)
+                .offset_value((long) id)
+                .errorRecord("{}")
+                .status(LibraryEventsConsumerConfig.RETRY)
+                .attempts(0)
+                .owner("instance-1")
+                .leaseExpiresAt(Instant.now().plusSeconds(60))
+                .build();
+    }
+}
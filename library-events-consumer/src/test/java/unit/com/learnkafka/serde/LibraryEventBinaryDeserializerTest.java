@@ -0,0 +1,93 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LibraryEventBinaryDeserializerTest {
+
+    // Generado por LibraryEventBinarySerializer del productor para (123, UPDATE, Book(456, "Kafka Using Spring Boot", "Dilip"))
+    static final String UPDATE_EVENT_V1_HEX = "02f6010290072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970";
+    static final String NEW_EVENT_V1_HEX = "000090072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970";
+    static final String SNOWFLAKE_UPDATE_EVENT_V2_HEX = "028080808080400290072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970";
+
+    InMemorySchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+    LibraryEventBinaryDeserializer deserializer = new LibraryEventBinaryDeserializer(schemaRegistry);
+
+    @Test
+    void deserialize_updateEvent() {
+
+        //given
+        var headers = schemaIdHeaders(schemaRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V1));
+
+        //when
+        LibraryEvent libraryEvent = deserializer.deserialize("library-events", headers, HexFormat.of().parseHex(UPDATE_EVENT_V1_HEX));
+
+        //then
+        assertEquals(123L, libraryEvent.getLibraryEventId());
+        assertEquals(LibraryEventType.UPDATE, libraryEvent.getLibraryEventType());
+        assertEquals(456, libraryEvent.getBook().getBookId());
+        assertEquals("Kafka Using Spring Boot", libraryEvent.getBook().getBookName());
+        assertEquals("Dilip", libraryEvent.getBook().getBookAuthor());
+    }
+
+    @Test
+    void deserialize_snowflakeIdWithSchemaV2() {
+
+        //given
+        var headers = schemaIdHeaders(schemaRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V2));
+
+        //when
+        LibraryEvent libraryEvent = deserializer.deserialize("library-events", headers, HexFormat.of().parseHex(SNOWFLAKE_UPDATE_EVENT_V2_HEX));
+
+        //then
+        assertEquals(1L << 40, libraryEvent.getLibraryEventId());
+        assertEquals(456, libraryEvent.getBook().getBookId());
+    }
+
+    @Test
+    void deserialize_newEventWithNullId() {
+
+        //given
+        var headers = schemaIdHeaders(schemaRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V1));
+
+        //when
+        LibraryEvent libraryEvent = deserializer.deserialize("library-events", headers, HexFormat.of().parseHex(NEW_EVENT_V1_HEX));
+
+        //then
+        assertNull(libraryEvent.getLibraryEventId());
+        assertEquals(LibraryEventType.NEW, libraryEvent.getLibraryEventType());
+    }
+
+    @Test
+    void deserialize_unknownSchemaId() {
+
+        var headers = schemaIdHeaders(42);
+        byte[] data = HexFormat.of().parseHex(UPDATE_EVENT_V1_HEX);
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("library-events", headers, data));
+    }
+
+    @Test
+    void deserialize_missingSchemaIdHeader() {
+
+        byte[] data = HexFormat.of().parseHex(UPDATE_EVENT_V1_HEX);
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("library-events", new RecordHeaders(), data));
+    }
+
+    private static RecordHeaders schemaIdHeaders(int schemaId) {
+        var headers = new RecordHeaders();
+        headers.add(LibraryEventSchemas.SCHEMA_ID_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(schemaId).array());
+        return headers;
+    }
+}
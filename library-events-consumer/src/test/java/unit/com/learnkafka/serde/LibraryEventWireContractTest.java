@@ -0,0 +1,37 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+import static com.learnkafka.serde.LibraryEventWireContract.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+// Lado consumidor del contrato: LibraryEventWireContractTest del productor escribe estos mismos bytes
+class LibraryEventWireContractTest {
+
+    @Test
+    void consumerReadsTheContractBytesWithItsOwnRegistry() {
+
+        //given: registry recien creado, como el de la JVM del consumidor
+        var deserializer = new LibraryEventWireDeserializer(new LibraryEventBinaryDeserializer(new InMemorySchemaRegistry()));
+        var headers = new RecordHeaders();
+        headers.add(LibraryEventSchemas.SCHEMA_ID_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(SCHEMA_ID).array());
+
+        //when
+        Object value = deserializer.deserialize("library-events", headers, HexFormat.of().parseHex(VALUE_HEX));
+
+        //then
+        LibraryEvent libraryEvent = assertInstanceOf(LibraryEvent.class, value);
+        assertEquals(LIBRARY_EVENT_ID, libraryEvent.getLibraryEventId());
+        assertEquals(LibraryEventType.valueOf(LIBRARY_EVENT_TYPE), libraryEvent.getLibraryEventType());
+        assertEquals(BOOK_ID, libraryEvent.getBook().getBookId());
+        assertEquals(BOOK_NAME, libraryEvent.getBook().getBookName());
+        assertEquals(BOOK_AUTHOR, libraryEvent.getBook().getBookAuthor());
+    }
+}
@@ -0,0 +1,72 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LibraryEventWireDeserializerTest {
+
+    static final String UPDATE_EVENT_JSON = "{\"libraryEventId\":123,\"libraryEventType\":\"UPDATE\",\"book\":"
+            + "{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}";
+
+    LibraryEventWireDeserializer deserializer = new LibraryEventWireDeserializer(new LibraryEventBinaryDeserializer(new InMemorySchemaRegistry()));
+
+    @Test
+    void deserialize_jsonIsReturnedAsIs() {
+
+        //when
+        Object value = deserializer.deserialize("library-events", new RecordHeaders(), UPDATE_EVENT_JSON.getBytes(StandardCharsets.UTF_8));
+
+        //then
+        assertEquals(UPDATE_EVENT_JSON, value);
+    }
+
+    @Test
+    void deserialize_binaryIsReturnedAsEntity() {
+
+        //given
+        var headers = schemaIdHeaders(LibraryEventSchemas.V1_ID);
+
+        //when
+        Object value = deserializer.deserialize("library-events", headers,
+                HexFormat.of().parseHex(LibraryEventBinaryDeserializerTest.UPDATE_EVENT_V1_HEX));
+
+        //then
+        LibraryEvent libraryEvent = assertInstanceOf(LibraryEvent.class, value);
+        assertEquals(123L, libraryEvent.getLibraryEventId());
+        assertEquals(LibraryEventType.UPDATE, libraryEvent.getLibraryEventType());
+        assertEquals("Kafka Using Spring Boot", libraryEvent.getBook().getBookName());
+    }
+
+    @Test
+    void deserialize_binaryEntityIsRepublishedAsTheSameJson() {
+
+        //given
+        Object value = deserializer.deserialize("library-events", schemaIdHeaders(LibraryEventSchemas.V1_ID),
+                HexFormat.of().parseHex(LibraryEventBinaryDeserializerTest.UPDATE_EVENT_V1_HEX));
+        var headers = schemaIdHeaders(LibraryEventSchemas.V1_ID);
+
+        //when: el recoverer copia las cabeceras del registro binario al enviarlo a RETRY/DLT
+        byte[] republished = new LibraryEventJsonSerializer().serialize("library-events.RETRY-5000", headers, value);
+
+        //then
+        assertEquals(UPDATE_EVENT_JSON, new String(republished, StandardCharsets.UTF_8));
+        assertNull(headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER));
+        assertEquals(UPDATE_EVENT_JSON, deserializer.deserialize("library-events.RETRY-5000", headers, republished));
+    }
+
+    private static RecordHeaders schemaIdHeaders(int schemaId) {
+        var headers = new RecordHeaders();
+        headers.add(LibraryEventSchemas.SCHEMA_ID_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(schemaId).array());
+        return headers;
+    }
+}
@@ -0,0 +1,154 @@
+package com.learnkafka.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DatabaseCircuitBreakerTest {
+
+    KafkaListenerEndpointRegistry endpointRegistry = mock(KafkaListenerEndpointRegistry.class);
+    MessageListenerContainer container = mock(MessageListenerContainer.class);
+    ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    DatabaseCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        when(endpointRegistry.getListenerContainers()).thenReturn(List.of(container));
+        // 3 fallos para abrir, 100 ms abierto, 2 registros de prueba
+        circuitBreaker = new DatabaseCircuitBreaker(endpointRegistry, eventPublisher, meterRegistry,
+                true, 3, 100L, 2, 500L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        circuitBreaker.shutdown();
+    }
+
+    @Test
+    void opensAfterConsecutiveDatabaseFailures_pausesTheContainers_andRejectsWithoutCallingTheDatabase() {
+
+        //given
+        failTimes(2);
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, circuitBreaker.state());
+
+        //when: el tercer fallo lo abre y sale envuelto para que no vaya a RETRY
+        assertThrows(DatabaseUnavailableException.class, () -> circuitBreaker.run(this::connectionFailure));
+
+        //then
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, circuitBreaker.state());
+        verify(container).pause();
+        verify(eventPublisher).publishEvent(new DatabaseCircuitBreaker.StateChangedEvent(
+                DatabaseCircuitBreaker.State.CLOSED, DatabaseCircuitBreaker.State.OPEN,
+                "3 consecutive failures: Failed to obtain JDBC Connection"));
+        var calls = new AtomicInteger();
+        assertThrows(DatabaseUnavailableException.class, () -> circuitBreaker.run(calls::incrementAndGet));
+        assertEquals(0, calls.get());
+        assertEquals(1.0, meterRegistry.get("library.events.db.circuit.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("library.events.db.circuit.state").gauge().value());
+    }
+
+    @Test
+    void dataErrorsAndSuccessesDoNotTripTheBreaker() {
+
+        //given
+        failTimes(2);
+
+        //when: la base de datos respondio, aunque sea con un error de datos
+        assertThrows(DataIntegrityViolationException.class, () -> circuitBreaker.run(() -> {
+            throw new DataIntegrityViolationException("duplicate key");
+        }));
+        failTimes(2);
+
+        //then
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, circuitBreaker.state());
+        verify(container, never()).pause();
+    }
+
+    @Test
+    void halfOpen_resumesTheContainers_andClosesAfterTheTrialRecords() {
+
+        //given
+        openBreaker();
+
+        //when
+        verify(container, timeout(2000)).resume();
+
+        //then: solo pasan los registros de prueba hasta que se cierra
+        assertEquals(DatabaseCircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+        assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(1.0, meterRegistry.get("library.events.db.circuit.transitions")
+                .tags("from", "HALF_OPEN", "to", "CLOSED").counter().count());
+    }
+
+    @Test
+    void halfOpen_failedTrialReopensAndPausesAgain() {
+
+        //given
+        openBreaker();
+        verify(container, timeout(2000)).resume();
+
+        //when
+        assertThrows(DatabaseUnavailableException.class, () -> circuitBreaker.run(this::connectionFailure));
+
+        //then
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, circuitBreaker.state());
+        verify(container, times(2)).pause();
+    }
+
+    @Test
+    void halfOpen_trialEndingWithAnErrorFreesItsSlot() {
+
+        //given
+        openBreaker();
+        verify(container, timeout(2000)).resume();
+
+        //when: las dos pruebas terminan con un Error, que no es un fallo de la base de datos
+        for (int index = 0; index < 2; index++) {
+            assertThrows(AssertionError.class, () -> circuitBreaker.run(() -> {
+                throw new AssertionError("boom");
+            }));
+        }
+
+        //then: los huecos de prueba siguen disponibles
+        assertEquals(DatabaseCircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+        assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, circuitBreaker.state());
+    }
+
+    private void openBreaker() {
+        failTimes(2);
+        assertThrows(DatabaseUnavailableException.class, () -> circuitBreaker.run(this::connectionFailure));
+    }
+
+    private void failTimes(int times) {
+        for (int index = 0; index < times; index++) {
+            assertThrows(CannotGetJdbcConnectionException.class, () -> circuitBreaker.run(this::connectionFailure));
+        }
+    }
+
+    private void connectionFailure() {
+        throw new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection");
+    }
+}
@@ -0,0 +1,120 @@
+package com.learnkafka.service;
+
+import com.learnkafka.config.LibraryEventsConsumerConfig;
+import com.learnkafka.model.FailureRecord;
+import com.learnkafka.repository.FailureRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class FailureServiceTest {
+
+    FailureRecordRepository failureRecordRepository = mock(FailureRecordRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void synchronousModeSavesImmediately() throws InterruptedException {
+
+        //given
+        var failureService = new FailureService(failureRecordRepository, meterRegistry, false, 10, 5, 50);
+
+        //when
+        failureService.saveFailedRecord(consumerRecord(1), new RuntimeException("boom"), LibraryEventsConsumerConfig.RETRY);
+
+        //then
+        verify(failureRecordRepository).save(any(FailureRecord.class));
+        verify(failureRecordRepository, never()).saveAll(anyList());
+        failureService.shutdown();
+    }
+
+    @Test
+    void writeBehindModeInsertsInBatchesAndFlushesOnShutdown() throws InterruptedException {
+
+        //given: el escritor se bloquea en el primer lote para que los demas se acumulen en la cola
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        CountDownLatch firstFlush = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            List<FailureRecord> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            firstFlush.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return batch;
+        }).when(failureRecordRepository).saveAll(anyList());
+        var failureService = new FailureService(failureRecordRepository, meterRegistry, true, 100, 5, 50);
+
+        //when
+        failureService.saveFailedRecord(consumerRecord(0), new RuntimeException("boom"), LibraryEventsConsumerConfig.RETRY);
+        assertTrue(firstFlush.await(5, TimeUnit.SECONDS));
+        for (int offset = 1; offset <= 12; offset++) {
+            failureService.saveFailedRecord(consumerRecord(offset), new RuntimeException("boom"), LibraryEventsConsumerConfig.RETRY);
+        }
+        assertEquals(12.0, meterRegistry.get("library.events.failure.queue.depth").gauge().value());
+        release.countDown();
+        failureService.shutdown();
+
+        //then: 1 + lotes de como mucho flushSize, sin perder registros
+        assertEquals(List.of(1, 5, 5, 2), batchSizes);
+        verify(failureRecordRepository, never()).save(any(FailureRecord.class));
+        assertEquals(4, meterRegistry.get("library.events.failure.flush").timer().count());
+    }
+
+    @Test
+    void recordsSavedWhileShuttingDownAreNotLost() throws Exception {
+
+        //given: varios listeners siguen guardando fallos mientras se cierra el servicio
+        List<Long> saved = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<FailureRecord> batch = invocation.getArgument(0);
+            batch.forEach(failureRecord -> saved.add(failureRecord.getOffset_value()));
+            return batch;
+        }).when(failureRecordRepository).saveAll(anyList());
+        doAnswer(invocation -> {
+            saved.add(invocation.<FailureRecord>getArgument(0).getOffset_value());
+            return invocation.getArgument(0);
+        }).when(failureRecordRepository).save(any(FailureRecord.class));
+        var failureService = new FailureService(failureRecordRepository, meterRegistry, true, 4, 5, 10);
+        var executor = Executors.newFixedThreadPool(4);
+        CountDownLatch started = new CountDownLatch(4);
+
+        //when
+        var futures = IntStream.range(0, 4).mapToObj(thread -> executor.submit(() -> {
+            started.countDown();
+            for (int offset = 0; offset < 500; offset++) {
+                failureService.saveFailedRecord(consumerRecord(thread * 1000L + offset), new RuntimeException("boom"),
+                        LibraryEventsConsumerConfig.RETRY);
+            }
+        })).toList();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        failureService.shutdown();
+        for (var future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //then: cada registro se guarda una vez, por el escritor o de forma sincrona tras el cierre
+        assertEquals(2000, saved.size());
+        assertEquals(2000, Set.copyOf(saved).size());
+    }
+
+    private static ConsumerRecord<Long, String> consumerRecord(long offset) {
+        return new ConsumerRecord<>("library-events", 0, offset, 123L, "{}");
+    }
+}
@@ -0,0 +1,173 @@
+package com.learnkafka.service;
+
+import com.learnkafka.id.SnowflakeIdGenerator;
+import com.learnkafka.repository.LibraryEventsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LibraryEventIdIndexTest {
+
+    LibraryEventsRepository libraryEventsRepository = mock(LibraryEventsRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void containsOnlyAddedIds_andCountsHitsAndMisses() {
+
+        //given
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 1024);
+        index.add(1L);
+        index.add(64L);
+
+        //then
+        assertTrue(index.contains(1L));
+        assertTrue(index.contains(64L));
+        assertFalse(index.contains(2L));
+        assertFalse(index.contains(null));
+        assertEquals(2.0, meterRegistry.get("library.events.id.index.lookups").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("library.events.id.index.lookups").tag("result", "miss").counter().count());
+        assertEquals(2.0, meterRegistry.get("library.events.id.index.size").gauge().value());
+    }
+
+    @Test
+    void snowflakeIdsAreIndexed() {
+
+        //given: IDs Snowflake reales, dispersos por encima de 2^53, y dos IDs del mismo milisegundo
+        var generator = new SnowflakeIdGenerator(7);
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 1024);
+        List<Long> ids = LongStream.range(0, 1000).map(i -> generator.nextId()).boxed().toList();
+
+        //when
+        ids.forEach(index::add);
+        ids.forEach(index::add);
+
+        //then
+        ids.forEach(id -> assertTrue(index.contains(id)));
+        assertFalse(index.contains(ids.get(999) + 1));
+        assertEquals(1000.0, meterRegistry.get("library.events.id.index.size").gauge().value());
+    }
+
+    @Test
+    void idsBeyondCapacityEvictTheOldestGeneration() {
+
+        //given: dos generaciones de 2 IDs
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 2);
+        long first = 1L << 60;
+
+        //when
+        LongStream.range(first, first + 6).forEach(index::add);
+
+        //then: los dos primeros se desalojaron y se resolveran contra la base de datos
+        assertEquals(4.0, meterRegistry.get("library.events.id.index.size").gauge().value());
+        assertTrue(index.contains(first + 5));
+        assertTrue(index.contains(first + 4));
+        assertFalse(index.contains(first));
+        assertFalse(index.contains(first + 1));
+        assertFalse(index.contains(Long.MIN_VALUE));
+    }
+
+    @Test
+    void recentlyReadIdsSurviveEviction() {
+
+        //given
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 2);
+        index.add(1L);
+        index.add(2L);
+        index.add(3L);
+
+        //when: 1 se consulta antes de que su generacion se desaloje
+        assertTrue(index.contains(1L));
+        index.add(4L);
+        index.add(5L);
+
+        //then
+        assertTrue(index.contains(1L));
+        assertFalse(index.contains(2L));
+        assertTrue(index.contains(5L));
+    }
+
+    @Test
+    void loadBeyondCapacityKeepsTheNewestIds() {
+
+        //given
+        List<Long> firstPage = LongStream.range(0, 10_000).boxed().toList();
+        when(libraryEventsRepository.findIdsAfter(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(firstPage);
+        when(libraryEventsRepository.findIdsAfter(eq(9_999L), any(Pageable.class))).thenReturn(List.of(20_000L));
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 1_000);
+
+        //when
+        index.load();
+
+        //then
+        assertTrue(index.contains(20_000L));
+        assertTrue(index.contains(9_999L));
+        assertFalse(index.contains(0L));
+        assertTrue(meterRegistry.get("library.events.id.index.size").gauge().value() <= 2_000);
+    }
+
+    @Test
+    void disabledIndexAlwaysMisses() {
+
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, false, 1024);
+        index.add(1L);
+
+        assertFalse(index.contains(1L));
+    }
+
+    @Test
+    void loadReadsAllPagesOfIds() {
+
+        //given
+        List<Long> firstPage = LongStream.range(0, 10_000).boxed().toList();
+        when(libraryEventsRepository.findIdsAfter(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(firstPage);
+        when(libraryEventsRepository.findIdsAfter(eq(9_999L), any(Pageable.class))).thenReturn(List.of(20_000L));
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 1 << 16);
+
+        //when
+        index.load();
+
+        //then
+        assertTrue(index.contains(0L));
+        assertTrue(index.contains(9_999L));
+        assertTrue(index.contains(20_000L));
+        assertEquals(10_001.0, meterRegistry.get("library.events.id.index.size").gauge().value());
+    }
+
+    @Test
+    void concurrentAddsAreNotLostNorDuplicated() throws InterruptedException {
+
+        //given
+        var index = new LibraryEventIdIndex(libraryEventsRepository, meterRegistry, true, 1 << 16);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        //when: 3 hilos como los 3 listeners, cada uno con rangos que se solapan con los de los otros dos
+        for (int thread = 0; thread < 3; thread++) {
+            int offset = thread * 10_000;
+            executor.execute(() -> {
+                for (long id = offset; id < offset + 20_000; id++) {
+                    index.add(id);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        //then
+        assertEquals(40_000.0, meterRegistry.get("library.events.id.index.size").gauge().value());
+        LongStream.range(0, 40_000).forEach(id -> assertTrue(index.contains(id)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.learnkafka.service;
+
+import com.learnkafka.model.Book;
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import com.learnkafka.repository.LibraryEventsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryEventQueryServiceTest {
+
+    LibraryEventsRepository libraryEventsRepository = mock(LibraryEventsRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    LibraryEventQueryService libraryEventQueryService =
+            new LibraryEventQueryService(libraryEventsRepository, meterRegistry, 100, 60_000);
+
+    @Test
+    void findById_readsThroughOnce_andReportsHitRatio() {
+
+        //given
+        when(libraryEventsRepository.findById(1L)).thenReturn(Optional.of(libraryEvent(1L, "Kafka Using Spring Boot")));
+
+        //when
+        var first = libraryEventQueryService.findById(1L);
+        var second = libraryEventQueryService.findById(1L);
+
+        //then
+        assertEquals("Kafka Using Spring Boot", first.orElseThrow().book().bookName());
+        assertEquals(first, second);
+        verify(libraryEventsRepository, times(1)).findById(1L);
+        assertEquals(0.5, meterRegistry.get("library.events.query.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void findById_missingIdsAreNotCached() {
+
+        //given: el evento aparece despues de la primera lectura
+        when(libraryEventsRepository.findById(2L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(libraryEvent(2L, "Kafka Using Spring Boot")));
+
+        //then
+        assertTrue(libraryEventQueryService.findById(2L).isEmpty());
+        assertTrue(libraryEventQueryService.findById(2L).isPresent());
+    }
+
+    @Test
+    void evict_nextReadSeesTheUpdatedEvent() {
+
+        //given
+        when(libraryEventsRepository.findById(3L))
+                .thenReturn(Optional.of(libraryEvent(3L, "Kafka Using Spring Boot")))
+                .thenReturn(Optional.of(libraryEvent(3L, "Kafka Using Spring Boot 2.X")));
+        libraryEventQueryService.findById(3L);
+
+        //when
+        libraryEventQueryService.evictAll(List.of(3L));
+
+        //then
+        assertEquals("Kafka Using Spring Boot 2.X", libraryEventQueryService.findById(3L).orElseThrow().book().bookName());
+        verify(libraryEventsRepository, times(2)).findById(3L);
+    }
+
+    private static LibraryEvent libraryEvent(Long libraryEventId, String bookName) {
+        var libraryEvent = LibraryEvent.builder()
+                .libraryEventId(libraryEventId)
+                .libraryEventType(LibraryEventType.NEW)
+                .build();
+        libraryEvent.setBook(Book.builder().bookId(456).bookName(bookName).bookAuthor("Dilip").libraryEvent(libraryEvent).build());
+        return libraryEvent;
+    }
+}
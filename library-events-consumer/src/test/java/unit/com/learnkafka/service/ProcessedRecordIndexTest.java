@@ -0,0 +1,212 @@
+package com.learnkafka.service;
+
+import com.learnkafka.model.ProcessedOffsetWindow;
+import com.learnkafka.repository.ProcessedOffsetWindowRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProcessedRecordIndexTest {
+
+    ProcessedOffsetWindowRepository repository = mock(ProcessedOffsetWindowRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void window_contiguousOffsetsAdvanceTheWatermark() {
+
+        //given
+        var window = new ProcessedRecordIndex.Window(0L, new BitSet(), 8);
+
+        //when
+        window.add(0L);
+        window.add(1L);
+        window.add(2L);
+
+        //then
+        assertEquals(3L, window.low());
+        assertTrue(window.contains(2L));
+        assertFalse(window.contains(3L));
+    }
+
+    @Test
+    void window_gapHoldsTheWatermarkUntilItIsFilled() {
+
+        //given: el offset 1 se envio a RETRY
+        var window = new ProcessedRecordIndex.Window(0L, new BitSet(), 8);
+        window.add(0L);
+        window.add(2L);
+        window.add(3L);
+
+        //then
+        assertEquals(1L, window.low());
+        assertFalse(window.contains(1L));
+        assertTrue(window.contains(3L));
+
+        //when
+        window.add(1L);
+
+        //then
+        assertEquals(4L, window.low());
+    }
+
+    @Test
+    void window_offsetBeyondTheWindowSlidesPastOldGaps() {
+
+        //given
+        var window = new ProcessedRecordIndex.Window(0L, new BitSet(), 4);
+        window.add(1L);
+
+        //when: el hueco en 0 queda fuera de la ventana y se da por confirmado
+        window.add(5L);
+
+        //then
+        assertEquals(2L, window.low());
+        assertTrue(window.contains(0L));
+        assertFalse(window.contains(2L));
+        assertTrue(window.contains(5L));
+    }
+
+    @Test
+    void isDuplicate_loadsStoredWindowAndCountsSkips() {
+
+        //given
+        var stored = new BitSet();
+        stored.set(1);
+        when(repository.findById("library-events-0")).thenReturn(Optional.of(ProcessedOffsetWindow.builder()
+                .id("library-events-0").topic("library-events").partition(0)
+                .lowWatermark(10L).window(stored.toByteArray()).build()));
+        var index = new ProcessedRecordIndex(repository, meterRegistry, "library-events", 64);
+
+        //then
+        assertTrue(index.isDuplicate(record("library-events", 9L)));
+        assertFalse(index.isDuplicate(record("library-events", 10L)));
+        assertTrue(index.isDuplicate(record("library-events", 11L)));
+        assertFalse(index.isDuplicate(record("library-events.RETRY-5000", 9L)));
+        assertEquals(2.0, meterRegistry.get("library.events.consumer.idempotency.skipped")
+                .tag("partition", "0").counter().count());
+    }
+
+    @Test
+    void onPartitionsAssigned_windowStartsAtTheCommittedOffset() {
+
+        //given: sin ventana guardada y con el offset 100 confirmado
+        var partition = new TopicPartition("library-events", 0);
+        Consumer<?, ?> consumer = mock(Consumer.class);
+        when(consumer.position(partition)).thenReturn(100L);
+        when(repository.findById("library-events-0")).thenReturn(Optional.empty());
+        var index = new ProcessedRecordIndex(repository, meterRegistry, "library-events", 64);
+
+        //when
+        index.onPartitionsAssigned(consumer, List.of(partition));
+        index.markProcessed(record("library-events", 102L));
+
+        //then: los offsets sin confirmar entre 100 y 102 no se dan por procesados
+        assertTrue(index.isDuplicate(record("library-events", 99L)));
+        assertFalse(index.isDuplicate(record("library-events", 100L)));
+        assertFalse(index.isDuplicate(record("library-events", 101L)));
+        assertTrue(index.isDuplicate(record("library-events", 102L)));
+    }
+
+    @Test
+    void onPartitionsAssigned_storedWindowBehindTheCommittedOffsetIsAdvanced() {
+
+        //given
+        var partition = new TopicPartition("library-events", 0);
+        Consumer<?, ?> consumer = mock(Consumer.class);
+        when(consumer.position(partition)).thenReturn(20L);
+        var stored = new BitSet();
+        stored.set(15);
+        when(repository.findById("library-events-0")).thenReturn(Optional.of(ProcessedOffsetWindow.builder()
+                .id("library-events-0").topic("library-events").partition(0)
+                .lowWatermark(0L).window(stored.toByteArray()).build()));
+        var index = new ProcessedRecordIndex(repository, meterRegistry, "library-events", 64);
+
+        //when
+        index.onPartitionsAssigned(consumer, List.of(partition));
+
+        //then
+        assertTrue(index.isDuplicate(record("library-events", 19L)));
+        assertFalse(index.isDuplicate(record("library-events", 20L)));
+    }
+
+    @Test
+    void markProcessed_onlyTheCheckpointWritesToTheDatabase() {
+
+        //given
+        when(repository.findById("library-events-0")).thenReturn(Optional.empty());
+        var index = new ProcessedRecordIndex(repository, meterRegistry, "library-events", 64);
+        index.isDuplicate(record("library-events", 5L));
+
+        //when
+        index.markProcessed(List.of(record("library-events", 5L), record("library-events", 7L)));
+
+        //then
+        verify(repository, never()).saveAll(anyIterable());
+        assertTrue(index.isDuplicate(record("library-events", 7L)));
+
+        //when
+        index.checkpoint();
+        index.checkpoint();
+
+        //then: una sola escritura, la segunda pasada no tiene cambios
+        verify(repository).saveAll(List.of(ProcessedOffsetWindow.builder()
+                .id("library-events-0").topic("library-events").partition(0)
+                .lowWatermark(6L).window(bits(1)).build()));
+    }
+
+    @Test
+    void onPartitionsRevokedAfterCommit_savesAndDropsTheWindow() {
+
+        //given
+        var partition = new TopicPartition("library-events", 0);
+        when(repository.findById("library-events-0")).thenReturn(Optional.empty());
+        var index = new ProcessedRecordIndex(repository, meterRegistry, "library-events", 64);
+        index.markProcessed(record("library-events", 3L));
+
+        //when
+        index.onPartitionsRevokedAfterCommit(mock(Consumer.class), List.of(partition));
+        index.checkpoint();
+
+        //then
+        verify(repository).saveAll(any());
+        verify(repository).saveAll(List.of(ProcessedOffsetWindow.builder()
+                .id("library-events-0").topic("library-events").partition(0)
+                .lowWatermark(4L).window(new byte[0]).build()));
+    }
+
+    @Test
+    void windowSizeIsBoundedByTheColumn() {
+
+        assertThrows(IllegalArgumentException.class, () -> new ProcessedRecordIndex(repository, meterRegistry,
+                "library-events", ProcessedRecordIndex.MAX_WINDOW_SIZE + 1));
+    }
+
+    private static byte[] bits(int... indexes) {
+        var bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits.toByteArray();
+    }
+
+    private static ConsumerRecord<Long, String> record(String topic, long offset) {
+        return new ConsumerRecord<>(topic, 0, offset, 1L, "{}");
+    }
+}
@@ -0,0 +1,63 @@
+package com.learnkafka.state;
+
+import com.learnkafka.id.SnowflakeIdGenerator;
+import com.learnkafka.model.LibraryEventType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookStateMapTest {
+
+    @Test
+    void putOverwritesTheStateOfTheSameId() {
+
+        //given
+        var map = new BookStateMap(0);
+
+        //when
+        map.put(1L, LibraryEventType.NEW, 456, "Kafka Using Spring Boot", "Dilip");
+        map.put(1L, LibraryEventType.UPDATE, 456, "Kafka Using Spring Boot 2.X", "Dilip");
+
+        //then
+        assertEquals(1, map.size());
+        assertEquals(new BookState(1L, LibraryEventType.UPDATE, 456, "Kafka Using Spring Boot 2.X", "Dilip"), map.get(1L));
+        assertNull(map.get(2L));
+    }
+
+    @Test
+    void growsBeyondTheExpectedSize_withSnowflakeIds() {
+
+        //given: IDs que solo se diferencian en los bits bajos
+        var snowflakeIdGenerator = new SnowflakeIdGenerator(1, () -> 1_800_000_000_000L);
+        var map = new BookStateMap(16);
+        long[] ids = new long[10_000];
+
+        //when
+        for (int index = 0; index < ids.length; index++) {
+            ids[index] = snowflakeIdGenerator.nextId();
+            map.put(ids[index], LibraryEventType.NEW, index, "Book " + index, "Dilip");
+        }
+
+        //then
+        assertEquals(ids.length, map.size());
+        for (int index = 0; index < ids.length; index++) {
+            assertEquals(index, map.get(ids[index]).bookId());
+        }
+    }
+
+    @Test
+    void copyIsIndependentOfTheOriginal() {
+
+        //given
+        var map = new BookStateMap(0);
+        map.put(1L, LibraryEventType.NEW, 456, "Kafka Using Spring Boot", "Dilip");
+
+        //when
+        var copy = map.copy();
+        map.put(1L, LibraryEventType.UPDATE, 456, "Kafka Using Spring Boot 2.X", "Dilip");
+
+        //then
+        assertEquals("Kafka Using Spring Boot", copy.get(1L).bookName());
+    }
+}
@@ -0,0 +1,203 @@
+package com.learnkafka.state;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.model.Book;
+import com.learnkafka.model.LibraryEvent;
+import com.learnkafka.model.LibraryEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryStateStoreTest {
+
+    static final TopicPartition PARTITION_0 = new TopicPartition("library-events", 0);
+
+    @TempDir
+    Path stateDir;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    AtomicInteger restoreConsumers = new AtomicInteger();
+    // Valor del registro en cada offset de PARTITION_0; por defecto un NEW cuyo ID es su offset
+    List<String> topicRecords = LongStream.range(0, 10)
+            .mapToObj(offset -> "{\"libraryEventId\":" + offset + ",\"libraryEventType\":\"NEW\",\"book\":"
+                    + "{\"bookId\":456,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Dilip\"}}")
+            .toList();
+
+    @Test
+    void checkpoint_isLoadedWithItsOffsetsOnRestart() throws IOException {
+
+        //given
+        var store = newStore();
+        store.apply(libraryEvent(1L, LibraryEventType.NEW, "Kafka Using Spring Boot"));
+        store.apply(libraryEvent(1L, LibraryEventType.UPDATE, "Kafka Using Spring Boot 2.X"));
+        store.apply(libraryEvent(2L, LibraryEventType.NEW, null));
+        store.committed(Map.of(PARTITION_0, new OffsetAndMetadata(3),
+                new TopicPartition("library-events.RETRY", 0), new OffsetAndMetadata(7)));
+
+        //when
+        store.checkpoint();
+        var restarted = newStore();
+        restarted.load();
+
+        //then
+        assertEquals(2, restarted.size());
+        assertEquals("Kafka Using Spring Boot 2.X", restarted.get(1L).orElseThrow().bookName());
+        assertNull(restarted.get(2L).orElseThrow().bookName());
+        assertEquals(3L, restarted.offset(PARTITION_0));
+        assertNull(restarted.offset(new TopicPartition("library-events.RETRY", 0)));
+    }
+
+    @Test
+    void onPartitionsAssigned_restoresTheGapWithoutRewindingTheListener_andReportsReadyOnceCaughtUp() {
+
+        //given: snapshot en el offset 5, el grupo ya habia confirmado hasta el 8 y el log acaba en el 10
+        var store = newStore();
+        store.committed(Map.of(PARTITION_0, new OffsetAndMetadata(5)));
+        var consumer = consumer(8, 10);
+
+        //when
+        store.onPartitionsAssigned(consumer, List.of(PARTITION_0));
+
+        //then: solo se aplican al store los offsets 5, 6 y 7; el listener sigue en el 8
+        assertEquals(8, consumer.position(PARTITION_0));
+        assertEquals(1, restoreConsumers.get());
+        assertEquals(3, store.size());
+        assertTrue(store.get(5L).isPresent());
+        assertTrue(store.get(7L).isPresent());
+        assertFalse(store.get(4L).isPresent());
+        assertFalse(store.get(8L).isPresent());
+        assertEquals(8L, store.offset(PARTITION_0));
+        assertTrue(Double.isNaN(startupToReady()));
+        store.committed(Map.of(PARTITION_0, new OffsetAndMetadata(10)));
+        assertFalse(Double.isNaN(startupToReady()));
+    }
+
+    @Test
+    void onPartitionsAssigned_withTheSnapshotAheadRestoresNothing() {
+
+        //given: el snapshot va por delante del ultimo commit
+        var store = newStore();
+        store.committed(Map.of(PARTITION_0, new OffsetAndMetadata(9)));
+        var consumer = consumer(8, 10);
+
+        //when
+        store.onPartitionsAssigned(consumer, List.of(PARTITION_0));
+
+        //then
+        assertEquals(8, consumer.position(PARTITION_0));
+        assertEquals(0, restoreConsumers.get());
+    }
+
+    @Test
+    void onPartitionsAssigned_withoutCheckpointRestoresFromTheBeginning() {
+
+        //given
+        var store = newStore();
+        var consumer = consumer(8, 10);
+
+        //when
+        store.onPartitionsAssigned(consumer, List.of(PARTITION_0));
+
+        //then
+        assertEquals(8, consumer.position(PARTITION_0));
+        assertEquals(8, store.size());
+        assertTrue(store.get(0L).isPresent());
+        assertFalse(store.get(8L).isPresent());
+    }
+
+    @Test
+    void restore_skipsUpdatesOfUnknownBooks() {
+
+        //given: offset 0 NEW del libro 1, offset 1 UPDATE del libro 1, offset 2 UPDATE de un libro que no existe
+        topicRecords = List.of(
+                "{\"libraryEventId\":1,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka\",\"bookAuthor\":\"Dilip\"}}",
+                "{\"libraryEventId\":1,\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":456,\"bookName\":\"Kafka 2.X\",\"bookAuthor\":\"Dilip\"}}",
+                "{\"libraryEventId\":2,\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":457,\"bookName\":\"Kafka\",\"bookAuthor\":\"Dilip\"}}");
+        var store = newStore();
+
+        //when
+        store.onPartitionsAssigned(consumer(3, 3), List.of(PARTITION_0));
+
+        //then
+        assertEquals(1, store.size());
+        assertEquals("Kafka 2.X", store.get(1L).orElseThrow().bookName());
+    }
+
+    @Test
+    void load_ignoresACorruptSnapshot() throws IOException {
+
+        //given
+        var store = newStore();
+        store.apply(libraryEvent(1L, LibraryEventType.NEW, "Kafka Using Spring Boot"));
+        store.checkpoint();
+        Path snapshot = stateDir.resolve("library-state.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        //when
+        var restarted = newStore();
+        restarted.load();
+
+        //then
+        assertEquals(0, restarted.size());
+    }
+
+    private LibraryStateStore newStore() {
+        return new LibraryStateStore(meterRegistry, new ObjectMapper(), this::restoreConsumer, "library-events",
+                stateDir.resolve("library-state.snapshot").toString(), 10_000L);
+    }
+
+    private MockConsumer<Long, Object> restoreConsumer() {
+        restoreConsumers.incrementAndGet();
+        var restoreConsumer = new MockConsumer<Long, Object>(OffsetResetStrategy.EARLIEST);
+        restoreConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L));
+        restoreConsumer.updateEndOffsets(Map.of(PARTITION_0, (long) topicRecords.size()));
+        restoreConsumer.schedulePollTask(() -> {
+            for (int offset = 0; offset < topicRecords.size(); offset++) {
+                restoreConsumer.addRecord(new ConsumerRecord<>(PARTITION_0.topic(), PARTITION_0.partition(), offset,
+                        (long) offset, topicRecords.get(offset)));
+            }
+        });
+        return restoreConsumer;
+    }
+
+    private double startupToReady() {
+        return meterRegistry.get("library.events.state.store.startup.to.ready").timeGauge().value();
+    }
+
+    private static MockConsumer<Long, Object> consumer(long committedOffset, long endOffset) {
+        var consumer = new MockConsumer<Long, Object>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(PARTITION_0));
+        consumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L));
+        consumer.updateEndOffsets(Map.of(PARTITION_0, endOffset));
+        consumer.commitSync(Map.of(PARTITION_0, new OffsetAndMetadata(committedOffset)));
+        return consumer;
+    }
+
+    private static LibraryEvent libraryEvent(Long libraryEventId, LibraryEventType libraryEventType, String bookName) {
+        return LibraryEvent.builder()
+                .libraryEventId(libraryEventId)
+                .libraryEventType(libraryEventType)
+                .book(Book.builder().bookId(456).bookName(bookName).bookAuthor("Dilip").build())
+                .build();
+    }
+}
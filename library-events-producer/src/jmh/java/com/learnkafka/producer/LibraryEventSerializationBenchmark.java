@@ -0,0 +1,49 @@
+package com.learnkafka.producer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Mide la serializacion que hace LibraryEventProducer antes de cada envio
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LibraryEventSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private LibraryEvent newLibraryEvent;
+    private LibraryEvent updateLibraryEvent;
+
+    @Setup
+    public void setUp() {
+
+        // Mismo ObjectMapper que configura Spring Boot para la aplicacion
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        newLibraryEvent = new LibraryEvent(null, LibraryEventType.NEW,
+                new Book(456, "Kafka Using Spring Boot", "Dilip"));
+        updateLibraryEvent = new LibraryEvent(123L, LibraryEventType.UPDATE,
+                new Book(456, "Kafka Using Spring Boot 2.X", "Dilip"));
+    }
+
+    @Benchmark
+    public String writeNewLibraryEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(newLibraryEvent);
+    }
+
+    @Benchmark
+    public String writeUpdateLibraryEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(updateLibraryEvent);
+    }
+}
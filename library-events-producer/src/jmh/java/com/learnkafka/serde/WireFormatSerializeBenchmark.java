@@ -0,0 +1,55 @@
+package com.learnkafka.serde;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Compara el camino actual (JSON -> String -> StringSerializer) con el serializer binario.
+// Los tamaños por mensaje los fija LibraryEventBinarySerializerTest; el setup solo comprueba que el binario es menor.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WireFormatSerializeBenchmark {
+
+    private ObjectMapper objectMapper;
+    private StringSerializer stringSerializer;
+    private LibraryEventBinarySerializer binarySerializer;
+    private LibraryEvent libraryEvent;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        stringSerializer = new StringSerializer();
+        binarySerializer = new LibraryEventBinarySerializer(new InMemorySchemaRegistry());
+        libraryEvent = new LibraryEvent(123L, LibraryEventType.UPDATE, new Book(456, "Kafka Using Spring Boot", "Dilip"));
+
+        if (binary().length >= json().length) {
+            throw new IllegalStateException("Binary payload is not smaller than JSON: " + binary().length + " bytes");
+        }
+    }
+
+    @Benchmark
+    public byte[] json() throws JsonProcessingException {
+        return stringSerializer.serialize("library-events", objectMapper.writeValueAsString(libraryEvent));
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        return binarySerializer.serialize("library-events", new RecordHeaders(), libraryEvent);
+    }
+}
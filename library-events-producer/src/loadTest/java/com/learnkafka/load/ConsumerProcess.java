@@ -0,0 +1,145 @@
+package com.learnkafka.load;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Arranca library-events-consumer (su bootJar) en un proceso aparte contra el broker embebido.
+// La base H2 va a fichero con AUTO_SERVER para que la prueba pueda leer los IDs generados.
+@Slf4j
+public class ConsumerProcess implements AutoCloseable {
+
+    private static final String END_TO_END_BUCKET = "library_events_consumer_end_to_end_seconds_bucket{";
+
+    private final Process process;
+    private final int port;
+    private final String jdbcUrl;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private ConsumerProcess(Process process, int port, String jdbcUrl) {
+        this.process = process;
+        this.port = port;
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    public static ConsumerProcess start(Path jarDir, Path workDir, String brokers, String retryDelaysMs) throws IOException {
+
+        Path jar;
+        try (Stream<Path> jars = Files.list(jarDir)) {
+            // Solo el bootJar: se descartan los jar con clasificador (-plain, -jmh)
+            jar = jars.filter(path -> path.toString().endsWith(".jar"))
+                    .filter(path -> !path.toString().endsWith("-plain.jar") && !path.toString().endsWith("-jmh.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No consumer boot jar in " + jarDir));
+        }
+        Files.createDirectories(workDir);
+        int port = freePort();
+        String jdbcUrl = "jdbc:h2:file:" + workDir.resolve("consumer-db").toAbsolutePath() + ";AUTO_SERVER=TRUE";
+        String java = ProcessHandle.current().info().command().orElse("java");
+
+        List<String> command = new ArrayList<>(List.of(java, "-jar", jar.toString(),
+                "--server.port=" + port,
+                "--spring.kafka.consumer.bootstrap-servers=" + brokers,
+                "--spring.kafka.producer.bootstrap-servers=" + brokers,
+                "--spring.kafka.consumer.auto-offset-reset=earliest",
+                // Los mismos niveles para los que la prueba creo los topics
+                "--retryTopics.delaysMs=" + retryDelaysMs,
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--logging.level.com.learnkafka=WARN"));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("consumer.log").toFile())
+                .start();
+        log.info("Consumer started on port {} (log: {})", port, workDir.resolve("consumer.log"));
+        return new ConsumerProcess(process, port, jdbcUrl);
+    }
+
+    public void awaitHealthy(Duration timeout) throws InterruptedException {
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Consumer exited with code " + process.exitValue());
+            }
+            try {
+                if (get("/actuator/health").contains("\"UP\"")) {
+                    return;
+                }
+            } catch (IOException e) {
+                // todavia arrancando
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Consumer not healthy after " + timeout);
+    }
+
+    // Cubetas acumuladas del histograma end-to-end: limite superior en segundos -> numero de eventos
+    public TreeMap<Double, Double> endToEndBuckets() throws IOException, InterruptedException {
+
+        TreeMap<Double, Double> buckets = new TreeMap<>();
+        for (String line : get("/actuator/prometheus").split("\n")) {
+            if (!line.startsWith(END_TO_END_BUCKET)) {
+                continue;
+            }
+            int leStart = line.indexOf("le=\"") + 4;
+            String le = line.substring(leStart, line.indexOf('"', leStart));
+            double count = Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+            buckets.merge("+Inf".equals(le) ? Double.POSITIVE_INFINITY : Double.parseDouble(le), count, Double::sum);
+        }
+        return buckets;
+    }
+
+    // IDs ya persistidos con su bookId, para que los PUT actualicen el mismo libro
+    public Map<Long, Integer> libraryEventBooks() throws SQLException {
+
+        Map<Long, Integer> books = new TreeMap<>();
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "postgres", "password");
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select library_event_id, book_id from book")) {
+            while (resultSet.next()) {
+                books.put(resultSet.getLong(1), resultSet.getInt(2));
+            }
+        }
+        return books;
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(5)).build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
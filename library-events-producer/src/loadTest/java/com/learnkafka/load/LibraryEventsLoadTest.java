@@ -0,0 +1,273 @@
+package com.learnkafka.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.LibraryEventsProducerApplication;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.ConsumerGroupState;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Prueba de carga de extremo a extremo: productor (en este proceso) -> broker embebido -> consumidor (bootJar)
+// Mide throughput sostenido del consumidor, latencia end-to-end p50/p99 y lag, y falla si no cumple los presupuestos.
+@Slf4j
+class LibraryEventsLoadTest {
+
+    private static final String TOPIC = "library-events";
+    private static final String CONSUMER_GROUP = "library-events-listener-group";
+    private static final String RETRY_TOPIC_PREFIX = "library-events.RETRY";
+
+    private static final LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static EmbeddedKafkaKraftBroker broker;
+    private static ConsumerProcess consumer;
+    private static ConfigurableApplicationContext producer;
+    private static Admin admin;
+    private static List<TopicPartition> partitions;
+    private static String producerUrl;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final AtomicInteger nextBookId = new AtomicInteger(1);
+    private final AtomicLong requestsFailed = new AtomicLong();
+
+    @BeforeAll
+    static void startEnvironment() throws Exception {
+
+        // 1. Broker embebido con los topics ya creados (AutoCreateConfig pide 3 replicas): el principal, un topic
+        //    de reintentos por nivel del consumidor (library-events.RETRY-<delayMs>) y el DLT
+        List<String> topics = new ArrayList<>(List.of(TOPIC, "library-events.DLT"));
+        topics.addAll(settings.retryTopics(RETRY_TOPIC_PREFIX));
+        broker = new EmbeddedKafkaKraftBroker(1, 3, topics.toArray(String[]::new));
+        broker.afterPropertiesSet();
+        String brokers = broker.getBrokersAsString();
+        admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, brokers));
+        partitions = admin.describeTopics(List.of(TOPIC)).allTopicNames().get().get(TOPIC).partitions().stream()
+                .map(partition -> new TopicPartition(TOPIC, partition.partition()))
+                .toList();
+
+        // 2. Consumidor en su propio proceso
+        consumer = ConsumerProcess.start(settings.consumerJarDir(), settings.reportDir(), brokers, settings.retryDelaysMs());
+        consumer.awaitHealthy(Duration.ofSeconds(90));
+        awaitGroupStable(Duration.ofSeconds(60));
+
+        // 3. Productor en este proceso; como argumentos para que prevalezcan sobre el perfil (properties() son valores por defecto)
+        producer = new SpringApplicationBuilder(LibraryEventsProducerApplication.class)
+                .profiles(settings.producerProfiles().split(","))
+                .run("--server.port=0",
+                        "--spring.kafka.producer.bootstrap-servers=" + brokers,
+                        "--spring.kafka.admin.properties.bootstrap.servers=" + brokers,
+                        "--logging.level.com.learnkafka=WARN");
+        producerUrl = "http://localhost:" + producer.getEnvironment().getProperty("local.server.port") + "/v1/libraryevent";
+    }
+
+    @AfterAll
+    static void stopEnvironment() throws Exception {
+        if (producer != null) {
+            producer.close();
+        }
+        if (consumer != null) {
+            consumer.close();
+        }
+        if (admin != null) {
+            admin.close();
+        }
+        if (broker != null) {
+            broker.destroy();
+        }
+    }
+
+    @Test
+    void sustainedLoadWithinBudgets() throws Exception {
+
+        // 1. Calentamiento: NEW que crean los IDs sobre los que luego se hacen los UPDATE
+        drive(settings.warmupEvents(), Map.of());
+        awaitDrained(Duration.ofSeconds(settings.drainTimeoutSeconds()));
+        Map<Long, Integer> books = consumer.libraryEventBooks();
+        log.warn("Warm-up done: {} library events persisted", books.size());
+
+        // 2. Fase medida: mezcla NEW/UPDATE al ritmo objetivo, muestreando el lag cada segundo
+        TreeMap<Double, Double> bucketsBefore = consumer.endToEndBuckets();
+        long committedBefore = committedOffsets();
+        AtomicLong maxLag = new AtomicLong();
+        ScheduledExecutorService lagSampler = Executors.newSingleThreadScheduledExecutor();
+        lagSampler.scheduleAtFixedRate(() -> {
+            try {
+                maxLag.accumulateAndGet(lag(), Math::max);
+            } catch (Exception e) {
+                log.warn("Lag sample failed: {}", e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        long sent = drive((long) settings.rate() * settings.durationSeconds(), books);
+        double sendSeconds = (System.nanoTime() - start) / 1e9;
+        long finalLag = awaitDrained(Duration.ofSeconds(settings.drainTimeoutSeconds()));
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        lagSampler.shutdownNow();
+
+        // 3. Resultados: el throughput incluye el tiempo de drenado, asi que es el que el consumidor sostiene
+        long consumed = committedOffsets() - committedBefore;
+        double throughput = consumed / elapsedSeconds;
+        TreeMap<Double, Double> buckets = delta(bucketsBefore, consumer.endToEndBuckets());
+        double p50Ms = quantileMs(buckets, 0.50);
+        double p99Ms = quantileMs(buckets, 0.99);
+
+        var report = new LoadTestReport(settings, sent, requestsFailed.get(), sent / sendSeconds, consumed, throughput,
+                p50Ms, p99Ms, maxLag.get(), finalLag, elapsedSeconds,
+                LoadTestReport.budgetViolations(settings, throughput, p99Ms, maxLag.get(), finalLag));
+        Files.createDirectories(settings.reportDir());
+        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        Files.writeString(settings.reportDir().resolve("load-test-report-" + settings.producerProfiles().replace(',', '-') + ".json"), json);
+        log.warn("Load test report: {}", json);
+
+        assertTrue(report.violations().isEmpty(), "Load budgets missed: " + report.violations());
+    }
+
+    // Envia count peticiones al ritmo configurado; con books vacio solo envia NEW
+    private long drive(long count, Map<Long, Integer> books) throws InterruptedException {
+
+        List<Long> updatableIds = new ArrayList<>(books.keySet());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        Semaphore inFlight = new Semaphore(settings.maxInFlight());
+        long next = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            next += intervalNanos;
+
+            boolean update = !updatableIds.isEmpty() && ThreadLocalRandom.current().nextDouble() < settings.updateRatio();
+            HttpRequest request = update
+                    ? request("PUT", updateEvent(updatableIds.get(ThreadLocalRandom.current().nextInt(updatableIds.size())), books))
+                    : request("POST", newEvent());
+            inFlight.acquire();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, throwable) -> {
+                        if (throwable != null || response.statusCode() >= 300) {
+                            requestsFailed.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(settings.maxInFlight());
+        return count;
+    }
+
+    private LibraryEvent newEvent() {
+        // Book usa un @Id asignado en el consumidor: cada NEW necesita un bookId nuevo
+        int bookId = nextBookId.getAndIncrement();
+        return new LibraryEvent(null, LibraryEventType.NEW, new Book(bookId, "Kafka Using Spring Boot " + bookId, "Dilip"));
+    }
+
+    private static LibraryEvent updateEvent(Long libraryEventId, Map<Long, Integer> books) {
+        int bookId = books.get(libraryEventId);
+        return new LibraryEvent(libraryEventId, LibraryEventType.UPDATE,
+                new Book(bookId, "Kafka Using Spring Boot " + bookId + " 2.X", "Dilip"));
+    }
+
+    private HttpRequest request(String method, LibraryEvent libraryEvent) {
+        try {
+            return HttpRequest.newBuilder(URI.create(producerUrl))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(libraryEvent)))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Espera a que el grupo consumidor alcance el final del topic; devuelve el lag restante
+    private static long awaitDrained(Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long lag = lag();
+        while (lag > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(250);
+            lag = lag();
+        }
+        return lag;
+    }
+
+    private static long lag() throws Exception {
+        var committed = admin.listConsumerGroupOffsets(CONSUMER_GROUP).partitionsToOffsetAndMetadata().get();
+        var latest = admin.listOffsets(partitions.stream()
+                        .collect(Collectors.toMap(partition -> partition, partition -> OffsetSpec.latest())))
+                .all().get();
+        long lag = 0;
+        for (var entry : latest.entrySet()) {
+            OffsetAndMetadata offset = committed.get(entry.getKey());
+            lag += entry.getValue().offset() - (offset == null ? 0 : offset.offset());
+        }
+        return lag;
+    }
+
+    private static long committedOffsets() throws Exception {
+        return admin.listConsumerGroupOffsets(CONSUMER_GROUP).partitionsToOffsetAndMetadata().get().entrySet().stream()
+                .filter(entry -> TOPIC.equals(entry.getKey().topic()) && entry.getValue() != null)
+                .mapToLong(entry -> entry.getValue().offset())
+                .sum();
+    }
+
+    private static void awaitGroupStable(Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            var description = admin.describeConsumerGroups(List.of(CONSUMER_GROUP)).all().get().get(CONSUMER_GROUP);
+            if (description.state() == ConsumerGroupState.STABLE && !description.members().isEmpty()) {
+                return;
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Consumer group " + CONSUMER_GROUP + " not stable after " + timeout);
+    }
+
+    private static TreeMap<Double, Double> delta(TreeMap<Double, Double> before, TreeMap<Double, Double> after) {
+        TreeMap<Double, Double> delta = new TreeMap<>();
+        after.forEach((le, count) -> delta.put(le, count - before.getOrDefault(le, 0.0)));
+        return delta;
+    }
+
+    // Cuantil a partir de cubetas acumuladas (como histogram_quantile, sin interpolar): limite superior de la cubeta
+    private static double quantileMs(TreeMap<Double, Double> buckets, double quantile) {
+        double total = buckets.getOrDefault(Double.POSITIVE_INFINITY, 0.0);
+        if (total == 0) {
+            return Double.NaN;
+        }
+        for (var bucket : buckets.entrySet()) {
+            if (bucket.getValue() >= quantile * total) {
+                return bucket.getKey() * 1000;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
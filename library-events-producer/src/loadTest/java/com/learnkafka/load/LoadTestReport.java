@@ -0,0 +1,38 @@
+package com.learnkafka.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resultado de una ejecucion; se escribe como JSON en build/reports/load
+public record LoadTestReport(
+        LoadTestSettings settings,
+        long requestsSent,
+        long requestsFailed,
+        double achievedRate,
+        long eventsConsumed,
+        double throughput,
+        double p50Ms,
+        double p99Ms,
+        long maxLag,
+        long finalLag,
+        double elapsedSeconds,
+        List<String> violations) {
+
+    public static List<String> budgetViolations(LoadTestSettings settings, double throughput, double p99Ms, long maxLag, long finalLag) {
+
+        List<String> violations = new ArrayList<>();
+        if (throughput < settings.minThroughput()) {
+            violations.add("throughput %.1f events/s < %.1f".formatted(throughput, settings.minThroughput()));
+        }
+        if (p99Ms > settings.maxP99Ms()) {
+            violations.add("end-to-end p99 %.1f ms > %d ms".formatted(p99Ms, settings.maxP99Ms()));
+        }
+        if (maxLag > settings.maxLag()) {
+            violations.add("max consumer lag %d > %d".formatted(maxLag, settings.maxLag()));
+        }
+        if (finalLag > 0) {
+            violations.add("consumer did not drain: %d events left after %ds".formatted(finalLag, settings.drainTimeoutSeconds()));
+        }
+        return violations;
+    }
+}
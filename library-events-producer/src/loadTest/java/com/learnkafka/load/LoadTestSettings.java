@@ -0,0 +1,46 @@
+package com.learnkafka.load;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Parametros de la prueba de carga; se pasan como -PloadTest.<nombre>=<valor> a ./gradlew loadTest
+public record LoadTestSettings(
+        int rate,                    // peticiones HTTP por segundo (POST + PUT)
+        int durationSeconds,         // duracion de la fase medida; valores altos = soak test
+        double updateRatio,          // fraccion de PUT /v1/libraryevent sobre el total
+        int warmupEvents,            // NEW enviados antes de medir; sus IDs se usan en los UPDATE
+        int maxInFlight,             // peticiones HTTP sin respuesta permitidas
+        int drainTimeoutSeconds,     // espera maxima a que el consumidor alcance al productor
+        double minThroughput,        // presupuesto: eventos/s consumidos como minimo
+        long maxP99Ms,               // presupuesto: p99 end-to-end maximo
+        long maxLag,                 // presupuesto: lag maximo observado del grupo consumidor
+        String producerProfiles,     // local (servlet) o local,reactive (WebFlux + reactor-kafka)
+        String retryDelaysMs,        // retryTopics.delaysMs del consumidor: un topic library-events.RETRY-<delayMs> por nivel
+        Path consumerJarDir,
+        Path reportDir) {
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadTest.rate", 200),
+                Integer.getInteger("loadTest.durationSeconds", 60),
+                Double.parseDouble(System.getProperty("loadTest.updateRatio", "0.2")),
+                Integer.getInteger("loadTest.warmupEvents", 500),
+                Integer.getInteger("loadTest.maxInFlight", 200),
+                Integer.getInteger("loadTest.drainTimeoutSeconds", 60),
+                Double.parseDouble(System.getProperty("loadTest.minThroughput", "150")),
+                Long.getLong("loadTest.maxP99Ms", 2000L),
+                Long.getLong("loadTest.maxLag", 5000L),
+                System.getProperty("loadTest.producerProfiles", "local"),
+                System.getProperty("loadTest.retryDelaysMs", "5000,30000,300000"),
+                Path.of(System.getProperty("loadTest.consumerJarDir", "../library-events-consumer/build/libs")),
+                Path.of(System.getProperty("loadTest.reportDir", "build/reports/load")));
+    }
+
+    // Topics de los niveles de reintento, con el mismo nombre que RetryTiers.topics() en el consumidor
+    public List<String> retryTopics(String retryTopicPrefix) {
+        return Arrays.stream(retryDelaysMs.split(","))
+                .map(delayMs -> retryTopicPrefix + "-" + delayMs.trim())
+                .toList();
+    }
+}
@@ -0,0 +1,141 @@
+package com.learnkafka.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.IdempotentSendCache;
+import com.learnkafka.producer.InFlightSendLimiter;
+import com.learnkafka.producer.LibraryEventProducer;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+// Modo async: la respuesta se completa con el ack del broker, sin ocupar un hilo de Tomcat mientras tanto.
+// Los envios sin ack estan acotados por InFlightSendLimiter; al saturarse se responde 429/503 con Retry-After.
+@RestController
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "libraryEvents.controller.mode", havingValue = "async")
+public class LibraryEventsAsyncController {
+
+    private final LibraryEventProducer libraryEventProducer;
+    private final InFlightSendLimiter inFlightSendLimiter;
+    private final LibraryEventIds libraryEventIds;
+    private final IdempotentSendCache idempotentSendCache;
+    private final String retryAfterSeconds;
+
+    public LibraryEventsAsyncController(LibraryEventProducer libraryEventProducer, InFlightSendLimiter inFlightSendLimiter,
+                                        LibraryEventIds libraryEventIds, IdempotentSendCache idempotentSendCache,
+                                        @Value("${libraryEvents.async.retryAfterSeconds:1}") int retryAfterSeconds) {
+        this.libraryEventProducer = libraryEventProducer;
+        this.inFlightSendLimiter = inFlightSendLimiter;
+        this.libraryEventIds = libraryEventIds;
+        this.idempotentSendCache = idempotentSendCache;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    @PostMapping("/v1/libraryevent")
+    public CompletableFuture<ResponseEntity<?>> postLibraryEvent(@RequestBody @Valid LibraryEvent libraryEvent,
+                                                                 @RequestHeader(name = IdempotentSendCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws JsonProcessingException {
+
+        if (LibraryEventType.NEW != libraryEvent.libraryEventType()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Only NEW event type is supported"));
+        }
+        var reservation = idempotentSendCache.reserve("POST", idempotencyKey, libraryEvent);
+        if (reservation.isRepeated()) {
+            return replay(reservation, HttpStatus.CREATED);
+        }
+        return send(reservation, libraryEventIds.assign(libraryEvent), HttpStatus.CREATED);
+    }
+
+    @PutMapping("/v1/libraryevent")
+    public CompletableFuture<ResponseEntity<?>> putLibraryEvent(@RequestBody @Valid LibraryEvent libraryEvent,
+                                                                @RequestHeader(name = IdempotentSendCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws JsonProcessingException {
+
+        ResponseEntity<String> BAD_REQUEST = LibraryEventsController.validateLibraryEvent(libraryEvent);
+        if (BAD_REQUEST != null) {
+            return CompletableFuture.completedFuture(BAD_REQUEST);
+        }
+        var reservation = idempotentSendCache.reserve("PUT", idempotencyKey, libraryEvent);
+        if (reservation.isRepeated()) {
+            return replay(reservation, HttpStatus.OK);
+        }
+        return send(reservation, libraryEvent, HttpStatus.OK);
+    }
+
+    private CompletableFuture<ResponseEntity<?>> send(IdempotentSendCache.Reservation reservation, LibraryEvent libraryEvent,
+                                                      HttpStatus status) throws JsonProcessingException {
+
+        // 1. Sin permiso no se llega a serializar ni a tocar el buffer del productor
+        InFlightSendLimiter.Rejection rejection = inFlightSendLimiter.tryAcquire();
+        if (rejection != null) {
+            HttpStatus rejectedStatus = rejection == InFlightSendLimiter.Rejection.IN_FLIGHT_LIMIT
+                    ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+            idempotentSendCache.abandon(reservation, new IllegalStateException("Producer saturated"));
+            return CompletableFuture.completedFuture(unavailable(rejectedStatus, "Producer saturated, retry later"));
+        }
+
+        // 2. El permiso se libera al recibir el ack (o el error) del broker
+        CompletableFuture<SendResult<Long, Object>> sendFuture;
+        try {
+            sendFuture = libraryEventProducer.sendLibraryEvent_Approach2(libraryEvent);
+        } catch (JsonProcessingException e) {
+            inFlightSendLimiter.release();
+            idempotentSendCache.abandon(reservation, e);
+            throw e;
+        } catch (RuntimeException e) {
+            // p.ej. metadata no disponible o buffer lleno tras max.block.ms
+            inFlightSendLimiter.release();
+            idempotentSendCache.abandon(reservation, e);
+            log.error("Library event could not be sent : {}", e.getMessage());
+            return CompletableFuture.completedFuture(unavailable(HttpStatus.SERVICE_UNAVAILABLE, "Library event could not be sent"));
+        }
+        // 3. Los reintentos con la misma Idempotency-Key esperan a este mismo ack
+        idempotentSendCache.sent(reservation, libraryEvent, sendFuture);
+        return sendFuture.handle((sendResult, throwable) -> {
+            inFlightSendLimiter.release();
+            return acknowledged(libraryEvent, status, throwable);
+        });
+    }
+
+    // Una peticion repetida no ocupa permiso: responde con el resultado del primer envio cuando llegue
+    private CompletableFuture<ResponseEntity<?>> replay(IdempotentSendCache.Reservation reservation, HttpStatus status) {
+
+        if (reservation.status() == IdempotentSendCache.Status.CONFLICT) {
+            return CompletableFuture.completedFuture(LibraryEventsController.conflict());
+        }
+        return reservation.sent()
+                .<ResponseEntity<?>>thenCompose(sent -> sent.ack().handle((sendResult, throwable) -> acknowledged(sent.libraryEvent(), status, throwable)))
+                .exceptionally(throwable -> unavailable(HttpStatus.SERVICE_UNAVAILABLE, "Library event could not be sent"));
+    }
+
+    private ResponseEntity<?> acknowledged(LibraryEvent libraryEvent, HttpStatus status, Throwable throwable) {
+
+        if (throwable != null) {
+            log.error("Library event not acknowledged by the broker : {}", throwable.getMessage());
+            return unavailable(HttpStatus.SERVICE_UNAVAILABLE, "Library event not acknowledged by the broker");
+        }
+        return ResponseEntity.status(status).body(libraryEvent);
+    }
+
+    private ResponseEntity<?> unavailable(HttpStatus status, String message) {
+        return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, retryAfterSeconds).body(message);
+    }
+}
@@ -0,0 +1,43 @@
+package com.learnkafka.controller;
+
+import com.learnkafka.domain.LibraryEventBatchResult;
+import com.learnkafka.service.LibraryEventBatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LibraryEventsBatchController {
+
+    private final LibraryEventBatchService libraryEventBatchService;
+
+    public LibraryEventsBatchController(LibraryEventBatchService libraryEventBatchService) {
+        this.libraryEventBatchService = libraryEventBatchService;
+    }
+
+    // El body se recibe como InputStream para leerlo en streaming sin cargarlo completo en memoria
+    @PostMapping(value = "/v1/libraryevents/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<LibraryEventBatchResult> postLibraryEventsBatch(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) throws IOException {
+
+        LibraryEventBatchResult result = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? libraryEventBatchService.ingestNdjson(body)
+                : libraryEventBatchService.ingestJsonArray(body);
+
+        // 201 si todo se publico, 207 si alguna linea fue rechazada o fallo
+        HttpStatus status = result.accepted() == result.received() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(result);
+    }
+}
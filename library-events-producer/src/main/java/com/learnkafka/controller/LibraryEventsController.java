@@ -3,56 +3,140 @@ package com.learnkafka.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.learnkafka.domain.LibraryEvent;
 import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.IdempotentSendCache;
 import com.learnkafka.producer.LibraryEventProducer;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletionException;
 
+
+// Modo por defecto: responde en cuanto el envio se encola, sin esperar el ack del broker.
+// Con libraryEvents.controller.mode=async se usa LibraryEventsAsyncController.
 @RestController
 @Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "libraryEvents.controller.mode", havingValue = "fire-and-forget", matchIfMissing = true)
 public class LibraryEventsController {
 
     private LibraryEventProducer libraryEventProducer;
+    private final LibraryEventIds libraryEventIds;
+    private final IdempotentSendCache idempotentSendCache;
 
-    public LibraryEventsController(LibraryEventProducer libraryEventProducer) {
+    public LibraryEventsController(LibraryEventProducer libraryEventProducer, LibraryEventIds libraryEventIds,
+                                   IdempotentSendCache idempotentSendCache) {
         this.libraryEventProducer = libraryEventProducer;
+        this.libraryEventIds = libraryEventIds;
+        this.idempotentSendCache = idempotentSendCache;
     }
 
     @PostMapping("/v1/libraryevent")
-    public ResponseEntity<?> postLibraryEvent(@RequestBody @Valid LibraryEvent libraryEvent) throws JsonProcessingException {
+    public ResponseEntity<?> postLibraryEvent(@RequestBody @Valid LibraryEvent libraryEvent,
+                                              @RequestHeader(name = IdempotentSendCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws JsonProcessingException {
 
         if (LibraryEventType.NEW != libraryEvent.libraryEventType()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Only NEW event type is supported");
         }
 
+        // Un reintento con la misma Idempotency-Key devuelve el ID del primer intento sin volver a enviar
+        var reservation = idempotentSendCache.reserve("POST", idempotencyKey, libraryEvent);
+        if (reservation.isRepeated()) {
+            return replay(reservation, HttpStatus.CREATED);
+        }
+
+        // El ID asignado es la key del registro y se devuelve al cliente para sus UPDATE
+        libraryEvent = libraryEventIds.assign(libraryEvent);
+
         // invoke kafka producer
-        libraryEventProducer.sendLibraryEvent_Approach2(libraryEvent);
+        ResponseEntity<String> notSent = send(reservation, libraryEvent);
+        if (notSent != null) {
+            return notSent;
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(libraryEvent);
 
     }
 
     @PutMapping("/v1/libraryevent")
-    public ResponseEntity<?> putLibraryEvent(@RequestBody @Valid LibraryEvent libraryEvent) throws JsonProcessingException {
+    public ResponseEntity<?> putLibraryEvent(@RequestBody @Valid LibraryEvent libraryEvent,
+                                             @RequestHeader(name = IdempotentSendCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws JsonProcessingException {
 
         ResponseEntity<String> BAD_REQUEST = validateLibraryEvent(libraryEvent);
         if (BAD_REQUEST != null) {
             return BAD_REQUEST;
         }
 
+        var reservation = idempotentSendCache.reserve("PUT", idempotencyKey, libraryEvent);
+        if (reservation.isRepeated()) {
+            return replay(reservation, HttpStatus.OK);
+        }
+
         // invoke kafka producer
-        libraryEventProducer.sendLibraryEvent_Approach2(libraryEvent);
+        ResponseEntity<String> notSent = send(reservation, libraryEvent);
+        if (notSent != null) {
+            return notSent;
+        }
         log.info("affter produce call");
 
         return  ResponseEntity.status(HttpStatus.OK).body(libraryEvent);
     }
 
-    private static ResponseEntity<String> validateLibraryEvent(LibraryEvent libraryEvent) {
+    // null si el envio se encolo; si no, la respuesta de error para el cliente
+    private ResponseEntity<String> send(IdempotentSendCache.Reservation reservation, LibraryEvent libraryEvent) throws JsonProcessingException {
+
+        try {
+            idempotentSendCache.sent(reservation, libraryEvent, libraryEventProducer.sendLibraryEvent_Approach2(libraryEvent));
+            return null;
+        } catch (JsonProcessingException e) {
+            idempotentSendCache.abandon(reservation, e);
+            throw e;
+        } catch (RuntimeException e) {
+            // p.ej. metadata no disponible o buffer lleno tras max.block.ms
+            idempotentSendCache.abandon(reservation, e);
+            log.error("Library event could not be sent : {}", e.getMessage());
+            return notSent();
+        }
+    }
+
+    // Espera solo a que el primer intento se encole; si fallo, el cliente recibe el mismo error
+    private ResponseEntity<?> replay(IdempotentSendCache.Reservation reservation, HttpStatus status) throws JsonProcessingException {
+
+        if (reservation.status() == IdempotentSendCache.Status.CONFLICT) {
+            return conflict();
+        }
+        IdempotentSendCache.Sent sent;
+        try {
+            sent = reservation.sent().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof JsonProcessingException jsonProcessingException) {
+                throw jsonProcessingException;
+            }
+            return notSent();
+        }
+        return ResponseEntity.status(status).body(sent.libraryEvent());
+    }
+
+    private static ResponseEntity<String> notSent() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Library event could not be sent");
+    }
+
+    static ResponseEntity<String> conflict() {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body("Idempotency-Key already used with a different request");
+    }
+
+    static ResponseEntity<String> validateLibraryEvent(LibraryEvent libraryEvent) {
         if (libraryEvent.libraryEventId() == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Please pass the LibraryEvent Id");
         }
@@ -0,0 +1,220 @@
+package com.learnkafka.controller;
+
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventBatchResult;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.IdempotentSendCache;
+import com.learnkafka.producer.ReactiveLibraryEventProducer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Handlers de LibraryEventsRouter: mismas reglas y respuestas que LibraryEventsController, pero respondiendo
+// con el ack del broker y sin bloquear hilos del event loop. POST/PUT comparten IdempotentSendCache con la
+// entrada servlet, con las mismas respuestas para Idempotency-Key que el modo async.
+@Component
+@Profile("reactive")
+@Slf4j
+public class LibraryEventsHandler {
+
+    private final ReactiveLibraryEventProducer reactiveLibraryEventProducer;
+    private final Validator validator;
+    private final LibraryEventIds libraryEventIds;
+    private final IdempotentSendCache idempotentSendCache;
+
+    @Value("${libraryEvents.batch.maxReportedErrors:1000}")
+    private int maxReportedErrors;
+
+    public LibraryEventsHandler(ReactiveLibraryEventProducer reactiveLibraryEventProducer, Validator validator,
+                                LibraryEventIds libraryEventIds, IdempotentSendCache idempotentSendCache) {
+        this.reactiveLibraryEventProducer = reactiveLibraryEventProducer;
+        this.validator = validator;
+        this.libraryEventIds = libraryEventIds;
+        this.idempotentSendCache = idempotentSendCache;
+    }
+
+    public Mono<ServerResponse> postLibraryEvent(ServerRequest request) {
+
+        return request.bodyToMono(LibraryEvent.class)
+                .flatMap(libraryEvent -> {
+                    String violations = violations(libraryEvent);
+                    if (violations != null) {
+                        return badRequest(violations);
+                    }
+                    if (LibraryEventType.NEW != libraryEvent.libraryEventType()) {
+                        return badRequest("Only NEW event type is supported");
+                    }
+                    var reservation = idempotentSendCache.reserve("POST", idempotencyKey(request), libraryEvent);
+                    if (reservation.isRepeated()) {
+                        return replay(reservation, HttpStatus.CREATED);
+                    }
+                    return send(reservation, libraryEventIds.assign(libraryEvent), HttpStatus.CREATED);
+                });
+    }
+
+    public Mono<ServerResponse> putLibraryEvent(ServerRequest request) {
+
+        return request.bodyToMono(LibraryEvent.class)
+                .flatMap(libraryEvent -> {
+                    String violations = violations(libraryEvent);
+                    if (violations != null) {
+                        return badRequest(violations);
+                    }
+                    if (libraryEvent.libraryEventId() == null) {
+                        return badRequest("Please pass the LibraryEvent Id");
+                    }
+                    if (!LibraryEventType.UPDATE.equals(libraryEvent.libraryEventType())) {
+                        return badRequest("Only UPDATE event type is supported");
+                    }
+                    var reservation = idempotentSendCache.reserve("PUT", idempotencyKey(request), libraryEvent);
+                    if (reservation.isRepeated()) {
+                        return replay(reservation, HttpStatus.OK);
+                    }
+                    return send(reservation, libraryEvent, HttpStatus.OK);
+                });
+    }
+
+    // NDJSON en streaming: cada evento valido se publica segun lo permite maxInFlight del KafkaSender,
+    // asi que el body se lee al ritmo al que el broker confirma y nunca se materializa completo.
+    public Mono<ServerResponse> postLibraryEventsBatch(ServerRequest request) {
+
+        var batch = new Batch();
+        var validEvents = request.bodyToFlux(LibraryEvent.class)
+                .index((index, libraryEvent) -> Tuples.of(index + 1, libraryEvent))
+                .filter(line -> {
+                    batch.received.incrementAndGet();
+                    String error = batchError(line.getT2());
+                    if (error != null) {
+                        batch.addError(line.getT1(), "REJECTED", error);
+                        batch.rejected.incrementAndGet();
+                        return false;
+                    }
+                    return true;
+                })
+                .map(line -> Tuples.of(line.getT1(), libraryEventIds.assign(line.getT2())));
+
+        return reactiveLibraryEventProducer.sendLibraryEvents(validEvents)
+                .doOnNext(outcome -> {
+                    if (outcome.exception() != null) {
+                        batch.addError(outcome.line(), "FAILED", outcome.exception().getMessage());
+                        batch.failed.incrementAndGet();
+                    } else {
+                        batch.accepted.incrementAndGet();
+                    }
+                })
+                .then(Mono.fromSupplier(batch::result))
+                .flatMap(result -> ServerResponse
+                        .status(result.accepted() == result.received() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                        .bodyValue(result));
+    }
+
+    private Mono<ServerResponse> send(IdempotentSendCache.Reservation reservation, LibraryEvent libraryEvent, HttpStatus status) {
+
+        // toFuture() se suscribe ya: los reintentos con la misma Idempotency-Key esperan a este mismo ack
+        CompletableFuture<LibraryEvent> ack = reactiveLibraryEventProducer.sendLibraryEvent(libraryEvent).toFuture();
+        idempotentSendCache.sent(reservation, libraryEvent, ack);
+        return acknowledged(ack, libraryEvent, status);
+    }
+
+    private Mono<ServerResponse> replay(IdempotentSendCache.Reservation reservation, HttpStatus status) {
+
+        if (reservation.status() == IdempotentSendCache.Status.CONFLICT) {
+            return ServerResponse.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .bodyValue("Idempotency-Key already used with a different request");
+        }
+        return Mono.fromFuture(reservation.sent(), true)
+                .flatMap(sent -> acknowledged(sent.ack(), sent.libraryEvent(), status))
+                .onErrorResume(throwable -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .bodyValue("Library event could not be sent"));
+    }
+
+    // suppressCancel: si el cliente se desconecta, el futuro compartido con los reintentos no se cancela
+    private static Mono<ServerResponse> acknowledged(CompletableFuture<?> ack, LibraryEvent libraryEvent, HttpStatus status) {
+
+        return Mono.fromFuture(ack, true).then(ServerResponse.status(status).bodyValue(libraryEvent))
+                .onErrorResume(throwable -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .bodyValue("Library event not acknowledged by the broker"));
+    }
+
+    private static String idempotencyKey(ServerRequest request) {
+        return request.headers().firstHeader(IdempotentSendCache.IDEMPOTENCY_KEY_HEADER);
+    }
+
+    private static Mono<ServerResponse> badRequest(String message) {
+        return ServerResponse.status(HttpStatus.BAD_REQUEST).bodyValue(message);
+    }
+
+    // Mismo formato que LibraryEventControllerAdvice: "campo - mensaje" ordenado y separado por comas
+    private String violations(LibraryEvent libraryEvent) {
+
+        Set<ConstraintViolation<LibraryEvent>> violations = validator.validate(libraryEvent);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " - " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    // Mismas reglas que LibraryEventBatchService
+    private String batchError(LibraryEvent libraryEvent) {
+
+        String violations = violations(libraryEvent);
+        if (violations != null) {
+            return violations;
+        }
+        if (libraryEvent.libraryEventType() == null) {
+            return "Only NEW or UPDATE event type is supported";
+        }
+        if (LibraryEventType.UPDATE == libraryEvent.libraryEventType() && libraryEvent.libraryEventId() == null) {
+            return "Please pass the LibraryEvent Id";
+        }
+        return null;
+    }
+
+    private class Batch {
+
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong accepted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong errorsTruncated = new AtomicLong();
+        private final List<LibraryEventBatchResult.LineError> errors = new ArrayList<>();
+
+        void addError(long line, String status, String message) {
+            synchronized (errors) {
+                if (errors.size() < maxReportedErrors) {
+                    errors.add(new LibraryEventBatchResult.LineError(line, status, message));
+                } else {
+                    errorsTruncated.incrementAndGet();
+                }
+            }
+        }
+
+        LibraryEventBatchResult result() {
+            synchronized (errors) {
+                log.info("Batch ingest completed received : {}, accepted : {}, rejected : {}, failed : {}",
+                        received.get(), accepted.get(), rejected.get(), failed.get());
+                return new LibraryEventBatchResult(received.get(), accepted.get(), rejected.get(), failed.get(),
+                        List.copyOf(errors), errorsTruncated.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.learnkafka.controller;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+// Entrada reactiva (perfil reactive): mismas rutas que LibraryEventsController y LibraryEventsBatchController.
+// Arrancar con --spring.profiles.active=local,reactive
+@Configuration
+@Profile("reactive")
+public class LibraryEventsRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> libraryEventsRoutes(LibraryEventsHandler libraryEventsHandler) {
+        return route()
+                .POST("/v1/libraryevent", libraryEventsHandler::postLibraryEvent)
+                .PUT("/v1/libraryevent", libraryEventsHandler::putLibraryEvent)
+                .POST("/v1/libraryevents/batch", contentType(MediaType.APPLICATION_NDJSON), libraryEventsHandler::postLibraryEventsBatch)
+                .build();
+    }
+}
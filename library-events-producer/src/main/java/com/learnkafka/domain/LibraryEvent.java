@@ -1,10 +1,14 @@
 package com.learnkafka.domain;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 
 public record LibraryEvent(
-        Integer libraryEventId,
+        // Los IDs Snowflake pasan de 2^53: como numero JSON los clientes JavaScript perderian precision.
+        // Se escribe como cadena y se acepta tanto cadena como numero
+        @JsonFormat(shape = JsonFormat.Shape.STRING)
+        Long libraryEventId,
         LibraryEventType libraryEventType,
         @NotNull
         @Valid
@@ -0,0 +1,19 @@
+package com.learnkafka.domain;
+
+import java.util.List;
+
+public record LibraryEventBatchResult(
+        long received,
+        long accepted,
+        long rejected,
+        long failed,
+        List<LineError> errors,
+        long errorsTruncated) {
+
+    // Resultado de una linea que no llego a Kafka (rechazada en validacion o fallida en el envio)
+    public record LineError(
+            long line,
+            String status,
+            String message) {
+    }
+}
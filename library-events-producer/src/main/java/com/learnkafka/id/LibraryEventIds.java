@@ -0,0 +1,27 @@
+package com.learnkafka.id;
+
+import com.learnkafka.domain.LibraryEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Asigna el ID de los NEW antes de enviarlos: como el ID es la key del registro, todos los eventos de una
+// entidad (NEW y sus UPDATE) van a la misma particion y se consumen en orden.
+// Cada replica del productor necesita su propio libraryEvents.id.nodeId.
+@Component
+public class LibraryEventIds {
+
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    public LibraryEventIds(@Value("${libraryEvents.id.nodeId:0}") int nodeId) {
+        this.snowflakeIdGenerator = new SnowflakeIdGenerator(nodeId);
+    }
+
+    // Un ID ya presente (p.ej. un cliente que reintenta el mismo NEW) se respeta
+    public LibraryEvent assign(LibraryEvent libraryEvent) {
+
+        if (libraryEvent.libraryEventId() != null) {
+            return libraryEvent;
+        }
+        return new LibraryEvent(snowflakeIdGenerator.nextId(), libraryEvent.libraryEventType(), libraryEvent.book());
+    }
+}
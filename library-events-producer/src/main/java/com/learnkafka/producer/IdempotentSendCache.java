@@ -0,0 +1,160 @@
+package com.learnkafka.producer;
+
+import com.learnkafka.domain.LibraryEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Cache en memoria de peticiones con cabecera Idempotency-Key: un cliente que reintenta POST/PUT por timeout
+// recibe la respuesta del primer intento en lugar de producir otro registro. Las peticiones concurrentes con la
+// misma key esperan al mismo envio. Acotada a maxEntries y con TTL desde la primera peticion; los envios fallidos
+// se olvidan para que el siguiente reintento vuelva a enviar. Es local a cada replica del productor.
+@Component
+@Slf4j
+public class IdempotentSendCache {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public enum Status {
+        NONE,     // sin Idempotency-Key: se envia como siempre
+        NEW,      // primera peticion con la key: debe enviar y llamar a sent() o abandon()
+        REPLAY,   // misma key y mismo cuerpo: se responde con el resultado del primer envio
+        CONFLICT  // misma key con otro cuerpo: la peticion se rechaza
+    }
+
+    // Evento tal y como se envio (con el ID asignado) y el futuro del ack del broker (KafkaTemplate o KafkaSender)
+    public record Sent(LibraryEvent libraryEvent, CompletableFuture<?> ack) {
+    }
+
+    public record Reservation(Status status, Entry entry) {
+
+        // La key ya se habia usado: no hay que enviar nada
+        public boolean isRepeated() {
+            return status == Status.REPLAY || status == Status.CONFLICT;
+        }
+
+        // Se completa cuando el primer envio se encola, o excepcionalmente si no llego a encolarse
+        public CompletableFuture<Sent> sent() {
+            return entry.sent;
+        }
+    }
+
+    public static final class Entry {
+
+        private final String key;
+        private final LibraryEvent request;
+        private final long expiresAtNanos;
+        private final CompletableFuture<Sent> sent = new CompletableFuture<>();
+
+        private Entry(String key, LibraryEvent request, long expiresAtNanos) {
+            this.key = key;
+            this.request = request;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private static final Reservation NONE = new Reservation(Status.NONE, null);
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final MeterRegistry meterRegistry;
+    // Orden de insercion = orden de caducidad, porque el TTL es el mismo para todas las entradas
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotentSendCache(MeterRegistry meterRegistry,
+                               @Value("${libraryEvents.idempotency.maxEntries:10000}") int maxEntries,
+                               @Value("${libraryEvents.idempotency.ttlSeconds:3600}") long ttlSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        Gauge.builder("library.events.producer.idempotency.entries", this, IdempotentSendCache::size)
+                .register(meterRegistry);
+    }
+
+    // La key se separa por metodo: el mismo valor en un POST y en un PUT son peticiones distintas
+    public Reservation reserve(String method, String idempotencyKey, LibraryEvent request) {
+
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return NONE;
+        }
+        String key = method + " " + idempotencyKey;
+        long now = System.nanoTime();
+        Reservation reservation;
+        synchronized (entries) {
+            evictExpired(now);
+            Entry existing = entries.get(key);
+            if (existing == null) {
+                Entry entry = new Entry(key, request, now + ttlNanos);
+                entries.put(key, entry);
+                if (entries.size() > maxEntries) {
+                    // Se descarta la mas antigua; si aun estaba en vuelo, su reintento ya no se agrupa
+                    Iterator<String> eldest = entries.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+                reservation = new Reservation(Status.NEW, entry);
+            } else if (existing.request.equals(request)) {
+                reservation = new Reservation(Status.REPLAY, existing);
+            } else {
+                reservation = new Reservation(Status.CONFLICT, existing);
+            }
+        }
+        meterRegistry.counter("library.events.producer.idempotency", "result", reservation.status().name().toLowerCase()).increment();
+        if (reservation.status() != Status.NEW) {
+            log.info("Idempotency-Key {} {} : {}", method, idempotencyKey, reservation.status());
+        }
+        return reservation;
+    }
+
+    // El primer envio se encolo: las peticiones repetidas responden con este evento y este ack
+    public void sent(Reservation reservation, LibraryEvent libraryEvent, CompletableFuture<?> ack) {
+
+        if (reservation.status() != Status.NEW) {
+            return;
+        }
+        Entry entry = reservation.entry();
+        // Sin ack no hay registro en Kafka: el siguiente reintento debe enviar de nuevo
+        ack.whenComplete((sendResult, throwable) -> {
+            if (throwable != null) {
+                remove(entry);
+            }
+        });
+        entry.sent.complete(new Sent(libraryEvent, ack));
+    }
+
+    // El primer envio no llego a encolarse (rechazo, error de serializacion o del productor)
+    public void abandon(Reservation reservation, Throwable cause) {
+
+        if (reservation.status() != Status.NEW) {
+            return;
+        }
+        remove(reservation.entry());
+        reservation.entry().sent.completeExceptionally(cause);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void remove(Entry entry) {
+        synchronized (entries) {
+            entries.remove(entry.key, entry);
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && iterator.next().getValue().expiresAtNanos - now <= 0) {
+            iterator.remove();
+        }
+    }
+}
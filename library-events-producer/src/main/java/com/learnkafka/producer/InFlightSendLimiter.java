@@ -0,0 +1,93 @@
+package com.learnkafka.producer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+
+// Limite global de envios sin ack para el modo async del controlador. No bloquea: si no hay permiso
+// o el buffer del KafkaProducer esta casi lleno, el controlador rechaza la peticion en lugar de encolarla.
+@Component
+@Slf4j
+public class InFlightSendLimiter {
+
+    public enum Rejection { IN_FLIGHT_LIMIT, BUFFER_SATURATED }
+
+    private final KafkaTemplate<Long, Object> kafkaTemplate;
+    private final int maxInFlight;
+    private final double minBufferAvailableRatio;
+    private final Semaphore permits;
+    private final Counter inFlightRejections;
+    private final Counter bufferRejections;
+
+    private volatile Metric bufferAvailableBytes;
+    private volatile Metric bufferTotalBytes;
+
+    public InFlightSendLimiter(KafkaTemplate<Long, Object> kafkaTemplate, MeterRegistry meterRegistry,
+                               @Value("${libraryEvents.async.maxInFlight:1000}") int maxInFlight,
+                               @Value("${libraryEvents.async.minBufferAvailableRatio:0.1}") double minBufferAvailableRatio) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxInFlight = maxInFlight;
+        this.minBufferAvailableRatio = minBufferAvailableRatio;
+        this.permits = new Semaphore(maxInFlight);
+        this.inFlightRejections = Counter.builder("library.events.producer.rejected").tag("reason", "in_flight").register(meterRegistry);
+        this.bufferRejections = Counter.builder("library.events.producer.rejected").tag("reason", "buffer").register(meterRegistry);
+        Gauge.builder("library.events.producer.in.flight", permits, semaphore -> maxInFlight - semaphore.availablePermits())
+                .register(meterRegistry);
+    }
+
+    // null si se concedio el permiso (hay que llamar a release() al recibir el ack); si no, el motivo del rechazo
+    public Rejection tryAcquire() {
+
+        if (!permits.tryAcquire()) {
+            inFlightRejections.increment();
+            return Rejection.IN_FLIGHT_LIMIT;
+        }
+        if (bufferSaturated()) {
+            permits.release();
+            bufferRejections.increment();
+            return Rejection.BUFFER_SATURATED;
+        }
+        return null;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    // Con el buffer lleno, send() bloquea el hilo hasta max.block.ms: mejor rechazar antes
+    private boolean bufferSaturated() {
+
+        if (minBufferAvailableRatio <= 0) {
+            return false;
+        }
+        if (bufferAvailableBytes == null || bufferTotalBytes == null) {
+            lookupBufferMetrics();
+            if (bufferAvailableBytes == null || bufferTotalBytes == null) {
+                return false;
+            }
+        }
+        double total = ((Number) bufferTotalBytes.metricValue()).doubleValue();
+        double available = ((Number) bufferAvailableBytes.metricValue()).doubleValue();
+        return total > 0 && available / total < minBufferAvailableRatio;
+    }
+
+    // El KafkaProducer se comparte entre envios, asi que las metricas se buscan una sola vez
+    private void lookupBufferMetrics() {
+        kafkaTemplate.metrics().forEach((name, metric) -> {
+            if ("producer-metrics".equals(name.group())) {
+                if ("buffer-available-bytes".equals(name.name())) {
+                    bufferAvailableBytes = metric;
+                } else if ("buffer-total-bytes".equals(name.name())) {
+                    bufferTotalBytes = metric;
+                }
+            }
+        });
+    }
+}
@@ -1,10 +1,15 @@
 package com.learnkafka.producer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.logging.HotPathLog;
+import com.learnkafka.serde.LibraryEventWireFormat;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeader;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +17,7 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -22,76 +28,104 @@ import java.util.concurrent.TimeoutException;
 @Slf4j
 public class LibraryEventProducer {
 
-    KafkaTemplate<Integer, String> kafkaTemplate;
-    ObjectMapper objectMapper;
+    // Instante (epoch millis) en que el productor envio el evento; el consumidor calcula la latencia end-to-end
+    public static final String SENT_AT_HEADER = "library-event-sent-at";
 
-    public LibraryEventProducer(KafkaTemplate<Integer, String> kafkaTemplate, ObjectMapper objectMapper) {
+    KafkaTemplate<Long, Object> kafkaTemplate;
+    LibraryEventWireFormat wireFormat;
+
+    private final Timer sendSuccessTimer;
+    private final Timer sendFailureTimer;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary recordSize;
+    private final HotPathLog.Event sent;
+
+    public LibraryEventProducer(KafkaTemplate<Long, Object> kafkaTemplate, LibraryEventWireFormat wireFormat,
+                                MeterRegistry meterRegistry, HotPathLog hotPathLog) {
         this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+        this.wireFormat = wireFormat;
+        this.meterRegistry = meterRegistry;
+        this.sent = hotPathLog.event("sent");
+        this.sendSuccessTimer = Timer.builder("library.events.producer.send")
+                .description("Time from the send call to the broker ack").tag("outcome", "success").register(meterRegistry);
+        this.sendFailureTimer = Timer.builder("library.events.producer.send")
+                .description("Time from the send call to the broker ack").tag("outcome", "failure").register(meterRegistry);
+        this.recordSize = DistributionSummary.builder("library.events.producer.record.size")
+                .baseUnit("bytes").register(meterRegistry);
     }
 
     @Value("library-events")
     private String topic;
 
     //asíncrona
-    public CompletableFuture<SendResult<Integer, String>> sendLibraryEvent(LibraryEvent libraryEvent) throws JsonProcessingException {
+    public CompletableFuture<SendResult<Long, Object>> sendLibraryEvent(LibraryEvent libraryEvent) throws JsonProcessingException {
 
-        Integer key = libraryEvent.libraryEventId();
-        String value = objectMapper.writeValueAsString(libraryEvent);
+        long start = System.nanoTime();
+        Long key = libraryEvent.libraryEventId();
+        Object value = wireFormat.value(libraryEvent);
 
         var completableFuture = kafkaTemplate.sendDefault(key, value);
 
         return completableFuture
                 .whenComplete((SendResult, throwable) -> {
                     if (throwable != null) {
-                        handleFailure(key, value, throwable);
+                        handleFailure(key, value, throwable, start);
                     } else {
-                        handleSuccess(key, value, SendResult);
+                        handleSuccess(libraryEvent, SendResult, start);
                     }
                 });
 
     }
 
-    public CompletableFuture<SendResult<Integer, String>> sendLibraryEvent_Approach2(LibraryEvent libraryEvent) throws  JsonProcessingException {
+    public CompletableFuture<SendResult<Long, Object>> sendLibraryEvent_Approach2(LibraryEvent libraryEvent) throws  JsonProcessingException {
 
-        Integer key = libraryEvent.libraryEventId();
-        String value = objectMapper.writeValueAsString(libraryEvent);
+        long start = System.nanoTime();
+        Long key = libraryEvent.libraryEventId();
+        Object value = wireFormat.value(libraryEvent);
 
         //Representación completa de un mensaje en Kafka. Nos da control total sobre todos sus componentes.
-        ProducerRecord<Integer, String> producerRecord = buildProducerRecord(key, value, topic);
+        ProducerRecord<Long, Object> producerRecord = buildProducerRecord(key, value, topic);
 
         var completableFuture = kafkaTemplate.send(producerRecord);
         return completableFuture
                 .whenComplete((SendResult, throwable) -> {
                     if (throwable != null) {
-                        handleFailure(key, value, throwable);
+                        handleFailure(key, value, throwable, start);
                     } else {
-                        handleSuccess(key, value, SendResult);
+                        handleSuccess(libraryEvent, SendResult, start);
                     }
                 });
     }
 
 
-    private ProducerRecord<Integer, String> buildProducerRecord (Integer key, String value, String topic) {
+    private ProducerRecord<Long, Object> buildProducerRecord (Long key, Object value, String topic) {
 
-        List<Header> recordHeader = List.of(new RecordHeader("event-soruce", "scanner".getBytes()));
+        return  new ProducerRecord<Long, Object>(topic, null, key, value, recordHeaders());
+    }
 
-        return  new ProducerRecord<>(topic, null, key, value, recordHeader);
+    // Compartido con ReactiveLibraryEventProducer para que ambos caminos publiquen los mismos headers
+    static List<Header> recordHeaders() {
+        return List.of(new RecordHeader("event-soruce", "scanner".getBytes()),
+                new RecordHeader(SENT_AT_HEADER, Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8)));
     }
 
-    public SendResult<Integer, String> sendLibraryEventSynchronous(LibraryEvent libraryEvent) throws JsonProcessingException,
+    public SendResult<Long, Object> sendLibraryEventSynchronous(LibraryEvent libraryEvent) throws JsonProcessingException,
             ExecutionException, InterruptedException, TimeoutException {
 
-        Integer key = libraryEvent.libraryEventId();
-        String value = objectMapper.writeValueAsString(libraryEvent);
-        SendResult<Integer, String> sendResult = null;
+        long start = System.nanoTime();
+        Long key = libraryEvent.libraryEventId();
+        Object value = wireFormat.value(libraryEvent);
+        SendResult<Long, Object> sendResult = null;
         try {
             sendResult = kafkaTemplate.sendDefault(key, value).get(1, TimeUnit.SECONDS);
+            recordSuccess(sendResult, start);
         } catch (ExecutionException | InterruptedException e) {
             log.error("ExecutionExc eption/InterruptedException Sending the Message and the exception is {}", e.getMessage());
+            recordFailure(e, start);
             throw e;
         } catch (Exception e) {
             log.error("Exception Sending the Message and the exception is {}", e.getMessage());
+            recordFailure(e, start);
             throw e;
         }
 
@@ -99,12 +133,30 @@ public class LibraryEventProducer {
 
     }
 
-    private void handleFailure(Integer key, String value, Throwable throwable) {
-        log.error("Error sending the message and the exception is {}", throwable.getMessage());
+    // Los errores se registran completos: key, valor y traza
+    private void handleFailure(Long key, Object value, Throwable throwable, long start) {
+        log.error("Error sending the message for the key: {} and the value is {}", key, value, throwable);
+        recordFailure(throwable, start);
+    }
+
+    private void handleSuccess(LibraryEvent libraryEvent, SendResult<Long, Object> result, long start) {
+        recordSuccess(result, start);
+        RecordMetadata metadata = result.getRecordMetadata();
+        sent.record(libraryEvent.libraryEventType(), libraryEvent.libraryEventId(),
+                metadata.topic(), metadata.partition(), metadata.offset());
+    }
+
+    // Latencia hasta el ack y tamaño real del valor tal y como lo serializo el cliente de Kafka
+    private void recordSuccess(SendResult<Long, Object> result, long start) {
+        sendSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        recordSize.record(result.getRecordMetadata().serializedValueSize());
     }
 
-    private void handleSuccess(Integer key, String value, SendResult<Integer, String> result) {
-        log.info("Message sent successfully for the key: {} and the value is {}, partition is {}", key, value, result.getRecordMetadata().partition());
+    // Latencia del envio fallido y contador por tipo de excepcion (la causa real viene envuelta en KafkaException)
+    private void recordFailure(Throwable throwable, long start) {
+        sendFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+        meterRegistry.counter("library.events.producer.send.failures", "exception", cause.getClass().getSimpleName()).increment();
     }
 
 
@@ -0,0 +1,119 @@
+package com.learnkafka.producer;
+
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.serde.LibraryEventWireFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Equivalente reactivo de LibraryEventProducer (perfil reactive): mismo topic, key y headers.
+// El Flux de entrada se agrupa en lotes de batchSize (o lo que haya llegado en batchTimeoutMs) y cada lote va al
+// KafkaSender en un solo send; entre todos los lotes en curso no se pasa de maxInFlight envios sin ack, y los lotes
+// solo se piden cuando hay hueco, asi que la contrapresion llega hasta la lectura del body HTTP.
+@Component
+@Profile("reactive")
+@Slf4j
+public class ReactiveLibraryEventProducer {
+
+    private final KafkaSender<Long, Object> kafkaSender;
+    private final LibraryEventWireFormat wireFormat;
+    private final Timer sendSuccessTimer;
+    private final Timer sendFailureTimer;
+    private final int batchSize;
+    private final Duration batchTimeout;
+    private final int concurrentBatches;
+
+    @Value("library-events")
+    private String topic;
+
+    @Autowired
+    public ReactiveLibraryEventProducer(KafkaProperties kafkaProperties, LibraryEventWireFormat wireFormat, MeterRegistry meterRegistry,
+                                        @Value("${libraryEvents.reactive.maxInFlight:1024}") int maxInFlight,
+                                        @Value("${libraryEvents.reactive.batchSize:100}") int batchSize,
+                                        @Value("${libraryEvents.reactive.batchTimeoutMs:5}") long batchTimeoutMs) {
+        this(KafkaSender.create(SenderOptions.<Long, Object>create(kafkaProperties.buildProducerProperties(null))
+                        .maxInFlight(maxInFlight)
+                        // Un envio fallido no debe cancelar el resto del Flux; el error llega en su SenderResult
+                        .stopOnError(false)),
+                wireFormat, meterRegistry, maxInFlight, batchSize, batchTimeoutMs);
+    }
+
+    ReactiveLibraryEventProducer(KafkaSender<Long, Object> kafkaSender, LibraryEventWireFormat wireFormat, MeterRegistry meterRegistry,
+                                 int maxInFlight, int batchSize, long batchTimeoutMs) {
+        this.kafkaSender = kafkaSender;
+        this.wireFormat = wireFormat;
+        this.batchSize = batchSize;
+        this.batchTimeout = Duration.ofMillis(batchTimeoutMs);
+        this.concurrentBatches = Math.max(maxInFlight / batchSize, 1);
+        this.sendSuccessTimer = meterRegistry.timer("library.events.producer.send", "outcome", "success");
+        this.sendFailureTimer = meterRegistry.timer("library.events.producer.send", "outcome", "failure");
+    }
+
+    // Completa con el ack del broker; falla si el broker no confirma el envio
+    public Mono<LibraryEvent> sendLibraryEvent(LibraryEvent libraryEvent) {
+
+        return sendLibraryEvents(Flux.just(Tuples.of(0L, libraryEvent)))
+                .next()
+                .flatMap(outcome -> outcome.exception() == null ? Mono.just(libraryEvent) : Mono.error(outcome.exception()));
+    }
+
+    // Envia un Flux de eventos (numero de linea, evento); emite un resultado por evento al recibir su ack o error.
+    // Un Flux de un solo evento no espera a batchTimeout: el lote se cierra al completarse la entrada
+    public Flux<SendOutcome> sendLibraryEvents(Flux<Tuple2<Long, LibraryEvent>> libraryEvents) {
+
+        // fairBackpressure: el lote solo se emite cuando hay demanda, en lugar de fallar por overflow al vencer el timeout
+        return libraryEvents.map(this::toSenderRecord)
+                .bufferTimeout(batchSize, batchTimeout, true)
+                .flatMap(batch -> kafkaSender.send(Flux.fromIterable(batch)), concurrentBatches)
+                .map(result -> {
+                    long elapsed = System.nanoTime() - result.correlationMetadata().startNanos();
+                    (result.exception() == null ? sendSuccessTimer : sendFailureTimer).record(elapsed, TimeUnit.NANOSECONDS);
+                    if (result.exception() != null) {
+                        log.error("Error sending the message and the exception is {}", result.exception().getMessage());
+                    }
+                    return new SendOutcome(result.correlationMetadata().line(), result.exception());
+                });
+    }
+
+    private SenderRecord<Long, Object, Correlation> toSenderRecord(Tuple2<Long, LibraryEvent> line) {
+
+        LibraryEvent libraryEvent = line.getT2();
+        Object value;
+        try {
+            value = wireFormat.value(libraryEvent);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Library event could not be serialized", e);
+        }
+        var producerRecord = new ProducerRecord<Long, Object>(topic, null, libraryEvent.libraryEventId(), value,
+                LibraryEventProducer.recordHeaders());
+        return SenderRecord.create(producerRecord, new Correlation(line.getT1(), System.nanoTime()));
+    }
+
+    @PreDestroy
+    public void close() {
+        kafkaSender.close();
+    }
+
+    public record SendOutcome(long line, Exception exception) {
+    }
+
+    private record Correlation(long line, long startNanos) {
+    }
+}
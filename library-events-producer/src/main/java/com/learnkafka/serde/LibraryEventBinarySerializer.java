@@ -0,0 +1,142 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Serializa el record LibraryEvent directamente a bytes (schema LibraryEventSchemas.V2), sin pasar por
+// un String JSON intermedio. Se puede usar como spring.kafka.producer.value-serializer.
+public class LibraryEventBinarySerializer implements Serializer<LibraryEvent> {
+
+    private InMemorySchemaRegistry schemaRegistry;
+    private volatile byte[] schemaIdHeader;
+
+    public LibraryEventBinarySerializer() {
+        this(InMemorySchemaRegistry.getDefault());
+    }
+
+    public LibraryEventBinarySerializer(InMemorySchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (configs.get(LibraryEventSchemas.REGISTRY_CONFIG) instanceof InMemorySchemaRegistry registry) {
+            this.schemaRegistry = registry;
+            this.schemaIdHeader = null;
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, LibraryEvent data) {
+
+        if (data == null) {
+            return null;
+        }
+        headers.remove(LibraryEventSchemas.SCHEMA_ID_HEADER);
+        headers.add(LibraryEventSchemas.SCHEMA_ID_HEADER, schemaIdHeader());
+        return serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, LibraryEvent data) {
+
+        if (data == null) {
+            return null;
+        }
+        Book book = data.book();
+        if (book == null || book.bookId() == null || book.bookName() == null || book.bookAuthor() == null
+                || data.libraryEventType() == null) {
+            throw new SerializationException("LibraryEvent does not match schema v2: " + data);
+        }
+
+        // 1. Calcula el tamaño exacto para reservar un unico byte[]
+        byte[] bookName = book.bookName().getBytes(StandardCharsets.UTF_8);
+        byte[] bookAuthor = book.bookAuthor().getBytes(StandardCharsets.UTF_8);
+        Long libraryEventId = data.libraryEventId();
+        int size = 1
+                + (libraryEventId != null ? varlongSize(zigZag(libraryEventId.longValue())) : 0)
+                + varintSize(zigZag(data.libraryEventType().ordinal()))
+                + varintSize(zigZag(book.bookId()))
+                + varintSize(zigZag(bookName.length)) + bookName.length
+                + varintSize(zigZag(bookAuthor.length)) + bookAuthor.length;
+
+        // 2. Escribe los campos en el orden del schema
+        byte[] buffer = new byte[size];
+        int position = writeVarint(buffer, 0, zigZag(libraryEventId != null ? 1 : 0)); // indice de la union [null, long]
+        if (libraryEventId != null) {
+            position = writeVarlong(buffer, position, zigZag(libraryEventId.longValue()));
+        }
+        position = writeVarint(buffer, position, zigZag(data.libraryEventType().ordinal()));
+        position = writeVarint(buffer, position, zigZag(book.bookId()));
+        position = writeBytes(buffer, position, bookName);
+        writeBytes(buffer, position, bookAuthor);
+        return buffer;
+    }
+
+    private byte[] schemaIdHeader() {
+        byte[] header = schemaIdHeader;
+        if (header == null) {
+            int schemaId = schemaRegistry.register(LibraryEventSchemas.SUBJECT, LibraryEventSchemas.V2);
+            header = ByteBuffer.allocate(Integer.BYTES).putInt(schemaId).array();
+            schemaIdHeader = header;
+        }
+        return header;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varlongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarlong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int writeBytes(byte[] buffer, int position, byte[] bytes) {
+        position = writeVarint(buffer, position, zigZag(bytes.length));
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+}
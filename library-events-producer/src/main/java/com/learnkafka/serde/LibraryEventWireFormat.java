@@ -0,0 +1,31 @@
+package com.learnkafka.serde;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.LibraryEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Valor que se entrega al KafkaTemplate segun libraryEvents.wireFormat: el JSON como String (json, por defecto)
+// o el propio record (binary), que LibraryEventWireSerializer codifica sin pasar por un String intermedio.
+@Component
+public class LibraryEventWireFormat {
+
+    public enum Format { JSON, BINARY }
+
+    private final ObjectMapper objectMapper;
+    private final Format format;
+
+    public LibraryEventWireFormat(ObjectMapper objectMapper, @Value("${libraryEvents.wireFormat:json}") String format) {
+        this.objectMapper = objectMapper;
+        this.format = Format.valueOf(format.toUpperCase());
+    }
+
+    public Object value(LibraryEvent libraryEvent) throws JsonProcessingException {
+        return format == Format.BINARY ? libraryEvent : objectMapper.writeValueAsString(libraryEvent);
+    }
+
+    public Format format() {
+        return format;
+    }
+}
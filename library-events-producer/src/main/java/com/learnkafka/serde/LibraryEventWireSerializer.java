@@ -0,0 +1,53 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.domain.LibraryEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// value-serializer del productor: los String (JSON) se escriben en UTF-8 como con StringSerializer y los
+// LibraryEvent en el formato binario, con su cabecera de schema. LibraryEventWireFormat decide cual llega.
+public class LibraryEventWireSerializer implements Serializer<Object> {
+
+    private final LibraryEventBinarySerializer binarySerializer;
+
+    public LibraryEventWireSerializer() {
+        this(new LibraryEventBinarySerializer());
+    }
+
+    public LibraryEventWireSerializer(LibraryEventBinarySerializer binarySerializer) {
+        this.binarySerializer = binarySerializer;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        binarySerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+
+        if (data instanceof LibraryEvent libraryEvent) {
+            return binarySerializer.serialize(topic, headers, libraryEvent);
+        }
+        return serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+
+        if (data == null) {
+            return null;
+        }
+        if (data instanceof String json) {
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+        if (data instanceof LibraryEvent) {
+            throw new SerializationException("The binary format needs record headers for the schema id");
+        }
+        throw new SerializationException("Unsupported value type " + data.getClass().getName());
+    }
+}
@@ -0,0 +1,314 @@
+package com.learnkafka.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventBatchResult;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.LibraryEventProducer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class LibraryEventBatchService {
+
+    public static final String REJECTED = "REJECTED";
+    public static final String FAILED = "FAILED";
+
+    private final LibraryEventProducer libraryEventProducer;
+    private final ObjectReader libraryEventReader;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final LibraryEventIds libraryEventIds;
+
+    @Value("${libraryEvents.batch.maxInFlight:500}")
+    private int maxInFlight;
+
+    @Value("${libraryEvents.batch.maxReportedErrors:1000}")
+    private int maxReportedErrors;
+
+    @Value("${libraryEvents.batch.drainTimeoutMs:30000}")
+    private long drainTimeoutMs;
+
+    @Value("${libraryEvents.batch.maxLineLength:65536}")
+    private int maxLineLength;
+
+    public LibraryEventBatchService(LibraryEventProducer libraryEventProducer, ObjectMapper objectMapper, Validator validator,
+                                    LibraryEventIds libraryEventIds) {
+        this.libraryEventProducer = libraryEventProducer;
+        this.objectMapper = objectMapper;
+        this.libraryEventReader = objectMapper.readerFor(LibraryEvent.class);
+        this.validator = validator;
+        this.libraryEventIds = libraryEventIds;
+    }
+
+    // Lee NDJSON linea a linea: una linea mal formada o de mas de maxLineLength caracteres solo invalida esa linea.
+    public LibraryEventBatchResult ingestNdjson(InputStream body) throws IOException {
+
+        var batch = new Batch();
+        try (var reader = new BoundedLineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (reader.isTooLong()) {
+                    batch.reject(lineNumber, "Line too long - more than " + maxLineLength + " characters");
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                LibraryEvent libraryEvent;
+                try {
+                    libraryEvent = libraryEventReader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    batch.reject(lineNumber, "Malformed JSON - " + e.getOriginalMessage());
+                    continue;
+                }
+                batch.submit(lineNumber, libraryEvent);
+            }
+        }
+        return batch.complete();
+    }
+
+    // Lee un array JSON elemento a elemento con el parser en streaming, sin materializar la lista.
+    // Un elemento que no encaja con LibraryEvent solo invalida ese elemento; un error de sintaxis detiene la lectura
+    // (el parser ya no sabe donde empieza el siguiente elemento) y se informa con el indice del elemento.
+    public LibraryEventBatchResult ingestJsonArray(InputStream body) throws IOException {
+
+        var batch = new Batch();
+        long element = 0;
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                batch.reject(0, "Malformed JSON - expected an array of library events");
+                return batch.complete();
+            }
+            while (true) {
+                element++;
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    break;
+                }
+                // 1. El arbol del elemento se lee entero: la sintaxis se valida antes de mapearlo
+                JsonNode node = parser.readValueAsTree();
+                LibraryEvent libraryEvent;
+                try {
+                    libraryEvent = libraryEventReader.readValue(node);
+                } catch (JsonProcessingException e) {
+                    batch.reject(element, "Malformed JSON - " + e.getOriginalMessage());
+                    continue;
+                }
+                batch.submit(element, libraryEvent);
+            }
+        } catch (JsonParseException e) {
+            batch.reject(element, "Malformed JSON, stopped reading at this element - " + e.getOriginalMessage());
+        }
+        return batch.complete();
+    }
+
+    private String validate(LibraryEvent libraryEvent) {
+
+        // 1. Mismas restricciones de Bean Validation que @Valid en el controlador
+        Set<ConstraintViolation<LibraryEvent>> violations = validator.validate(libraryEvent);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " - " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+
+        // 2. Mismas reglas de tipo de evento que POST/PUT /v1/libraryevent
+        if (libraryEvent.libraryEventType() == null) {
+            return "Only NEW or UPDATE event type is supported";
+        }
+        if (LibraryEventType.UPDATE == libraryEvent.libraryEventType() && libraryEvent.libraryEventId() == null) {
+            return "Please pass the LibraryEvent Id";
+        }
+        return null;
+    }
+
+    // Como BufferedReader.readLine, pero una linea nunca ocupa mas de maxLength caracteres en memoria: del resto solo
+    // se busca el salto de linea. Acepta \n y \r\n como fin de linea.
+    private static final class BoundedLineReader implements AutoCloseable {
+
+        private final Reader reader;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean tooLong;
+
+        BoundedLineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        // null al final del body. Una linea demasiado larga devuelve lo leido y isTooLong() == true
+        String readLine() throws IOException {
+
+            line.setLength(0);
+            tooLong = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return read ? endLine() : null;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                if (position < limit) {
+                    position++;
+                    return endLine();
+                }
+            }
+        }
+
+        boolean isTooLong() {
+            return tooLong;
+        }
+
+        private void append(int start, int end) {
+            int room = maxLength + 1 - line.length();
+            // Un caracter de margen para el \r de \r\n, que se quita al cerrar la linea
+            int count = Math.min(end - start, Math.max(room, 0));
+            line.append(buffer, start, count);
+            if (count < end - start) {
+                tooLong = true;
+            }
+        }
+
+        private String endLine() {
+            if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+                line.setLength(line.length() - 1);
+            }
+            if (line.length() > maxLength) {
+                tooLong = true;
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Estado de una carga: contadores, errores acotados y un semaforo que limita los envios en vuelo.
+    private class Batch {
+
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong accepted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong errorsTruncated = new AtomicLong();
+        private final List<LibraryEventBatchResult.LineError> errors = new ArrayList<>();
+
+        void submit(long line, LibraryEvent libraryEvent) throws IOException {
+
+            received.incrementAndGet();
+            String validationError = validate(libraryEvent);
+            if (validationError != null) {
+                addError(line, REJECTED, validationError);
+                rejected.incrementAndGet();
+                return;
+            }
+
+            // Backpressure: si hay maxInFlight envios sin ack, deja de leer el body hasta que se libere uno
+            acquire();
+            try {
+                libraryEventProducer.sendLibraryEvent_Approach2(libraryEventIds.assign(libraryEvent))
+                        .whenComplete((sendResult, throwable) -> {
+                            if (throwable != null) {
+                                failed.incrementAndGet();
+                                addError(line, FAILED, throwable.getMessage());
+                            } else {
+                                accepted.incrementAndGet();
+                            }
+                            inFlight.release();
+                        });
+            } catch (Exception e) {
+                inFlight.release();
+                failed.incrementAndGet();
+                addError(line, FAILED, e.getMessage());
+            }
+        }
+
+        void reject(long line, String message) {
+            received.incrementAndGet();
+            rejected.incrementAndGet();
+            addError(line, REJECTED, message);
+        }
+
+        LibraryEventBatchResult complete() throws IOException {
+
+            // Espera a que todos los envios pendientes reciban ack antes de responder
+            try {
+                if (!inFlight.tryAcquire(maxInFlight, drainTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    log.warn("Batch ingest finished with {} sends still in flight", maxInFlight - inFlight.availablePermits());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for in-flight sends", e);
+            }
+
+            synchronized (errors) {
+                log.info("Batch ingest completed received : {}, accepted : {}, rejected : {}, failed : {}",
+                        received.get(), accepted.get(), rejected.get(), failed.get());
+                return new LibraryEventBatchResult(received.get(), accepted.get(), rejected.get(), failed.get(),
+                        List.copyOf(errors), errorsTruncated.get());
+            }
+        }
+
+        private void acquire() throws IOException {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for in-flight sends", e);
+            }
+        }
+
+        private void addError(long line, String status, String message) {
+            synchronized (errors) {
+                if (errors.size() < maxReportedErrors) {
+                    errors.add(new LibraryEventBatchResult.LineError(line, status, message));
+                } else {
+                    errorsTruncated.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -6,7 +6,7 @@ import com.learnkafka.domain.LibraryEvent;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.common.serialization.IntegerDeserializer;
+import org.apache.kafka.common.serialization.LongDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +25,7 @@ import util.TestUtil;
 import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -43,13 +44,13 @@ class LibraryEventsControllerIntegrationTest {
     @Autowired
     ObjectMapper objectMapper;
 
-    private Consumer<Integer, String> consumer;
+    private Consumer<Long, String> consumer;
 
     @BeforeEach
     void setUp() {
         var configs = new HashMap<>(KafkaTestUtils.consumerProps("group1", "true", embeddedKafkaBroker));
         configs.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
-        consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(), new StringDeserializer()).createConsumer();
+        consumer = new DefaultKafkaConsumerFactory<>(configs, new LongDeserializer(), new StringDeserializer()).createConsumer();
         embeddedKafkaBroker.consumeFromAllEmbeddedTopics(consumer);
     }
 
@@ -73,16 +74,20 @@ class LibraryEventsControllerIntegrationTest {
 
         //then
         assertEquals(HttpStatus.CREATED, responseEntity.getStatusCode());
+        LibraryEvent sentLibraryEvent = responseEntity.getBody();
+        assertNotNull(sentLibraryEvent.libraryEventId());
 
         //Instantiate a consumer
         // Read the record , assert the count and parse the record and assert on it.
 
-        ConsumerRecords<Integer, String> consumerRecords = KafkaTestUtils.getRecords(consumer);
+        ConsumerRecords<Long, String> consumerRecords = KafkaTestUtils.getRecords(consumer);
         //Thread.sleep(3000);
         assert consumerRecords.count() == 1;
         consumerRecords.forEach(record -> {
             var libraryEventActual = TestUtil.parseLibraryEventRecord(objectMapper, record.value());
-            assertEquals(libraryEvent, libraryEventActual);
+            assertEquals(sentLibraryEvent, libraryEventActual);
+            // El ID asignado por el productor es tambien la key: NEW y UPDATE comparten particion
+            assertEquals(sentLibraryEvent.libraryEventId(), record.key());
 
         });
 
@@ -29,7 +29,7 @@ public class TestUtil {
     public static LibraryEvent newLibraryEventRecordWithLibraryEventId(){
 
         return
-                new LibraryEvent(123,
+                new LibraryEvent(123L,
                         LibraryEventType.NEW,
                         bookRecord());
     }
@@ -37,7 +37,7 @@ public class TestUtil {
     public static LibraryEvent libraryEventRecordUpdate(){
 
         return
-                new LibraryEvent(123,
+                new LibraryEvent(123L,
                         LibraryEventType.UPDATE,
                         bookRecord());
     }
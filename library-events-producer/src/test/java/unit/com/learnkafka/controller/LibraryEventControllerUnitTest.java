@@ -2,23 +2,38 @@ package com.learnkafka.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.IdempotentSendCache;
 import com.learnkafka.producer.LibraryEventProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import util.TestUtil;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(LibraryEventsController.class)
+@Import({LibraryEventIds.class, IdempotentSendCache.class, SimpleMeterRegistry.class})
 public class LibraryEventControllerUnitTest {
 
     @Autowired
@@ -27,6 +42,9 @@ public class LibraryEventControllerUnitTest {
     @Autowired
     ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired
+    SimpleMeterRegistry meterRegistry;
+
     @MockitoBean
     LibraryEventProducer libraryEventProducer;
 
@@ -43,7 +61,9 @@ public class LibraryEventControllerUnitTest {
         mockMvc.perform(post("/v1/libraryevent")
                 .content(json)
                 .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isCreated());
+                .andExpect(status().isCreated())
+                // El NEW sale con el ID Snowflake asignado por el productor
+                .andExpect(jsonPath("$.libraryEventId").isString());
 
     }
 
@@ -117,4 +137,91 @@ public class LibraryEventControllerUnitTest {
                 .andExpect(content().string("Only UPDATE event type is supported"));
     }
 
+    @Test
+    void postLibraryEvent_retryWithSameIdempotencyKeyIsNotSentAgain() throws Exception {
+
+        //given
+        String json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(new CompletableFuture<>());
+        String firstResponse = mockMvc.perform(post("/v1/libraryevent")
+                        .header("Idempotency-Key", "order-1")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        //expect: mismo ID que el primer intento y un solo envio
+        mockMvc.perform(post("/v1/libraryevent")
+                        .header("Idempotency-Key", "order-1")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.libraryEventId")
+                        .value(String.valueOf(objectMapper.readValue(firstResponse, LibraryEvent.class).libraryEventId())));
+        verify(libraryEventProducer, times(1)).sendLibraryEvent_Approach2(isA(LibraryEvent.class));
+    }
+
+    @Test
+    void putLibraryEvent_sameIdempotencyKeyWithDifferentBody_422() throws Exception {
+
+        //given
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(new CompletableFuture<>());
+        mockMvc.perform(put("/v1/libraryevent")
+                        .header("Idempotency-Key", "update-1")
+                        .content(objectMapper.writeValueAsString(TestUtil.libraryEventRecordUpdate()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        //expect
+        mockMvc.perform(put("/v1/libraryevent")
+                        .header("Idempotency-Key", "update-1")
+                        .content(objectMapper.writeValueAsString(new LibraryEvent(456L, LibraryEventType.UPDATE, TestUtil.bookRecord())))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("Idempotency-Key already used with a different request"));
+    }
+
+    @Test
+    void postLibraryEvent_retryWaitingOnAnAbandonedSendGetsTheSame503() throws Exception {
+
+        //given: el primer envio queda bloqueado hasta que el reintento concurrente espera su resultado
+        String json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class))).thenAnswer(invocation -> {
+            sending.countDown();
+            fail.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("buffer full");
+        });
+        var replays = meterRegistry.counter("library.events.producer.idempotency", "result", "replay");
+        double replaysBefore = replays.count();
+        var first = CompletableFuture.supplyAsync(() -> postWithKey(json, "order-2"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        var retry = CompletableFuture.supplyAsync(() -> postWithKey(json, "order-2"));
+        while (replays.count() == replaysBefore) {
+            Thread.sleep(10);
+        }
+
+        //when
+        fail.countDown();
+
+        //then
+        assertEquals(503, first.get(5, TimeUnit.SECONDS));
+        assertEquals(503, retry.get(5, TimeUnit.SECONDS));
+        verify(libraryEventProducer, times(1)).sendLibraryEvent_Approach2(isA(LibraryEvent.class));
+    }
+
+    private int postWithKey(String json, String idempotencyKey) {
+        try {
+            return mockMvc.perform(post("/v1/libraryevent")
+                            .header("Idempotency-Key", idempotencyKey)
+                            .content(json)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andReturn().getResponse().getStatus();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
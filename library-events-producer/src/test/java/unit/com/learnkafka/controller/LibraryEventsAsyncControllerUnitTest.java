@@ -0,0 +1,137 @@
+package com.learnkafka.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.IdempotentSendCache;
+import com.learnkafka.producer.InFlightSendLimiter;
+import com.learnkafka.producer.LibraryEventProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import util.TestUtil;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(LibraryEventsAsyncController.class)
+@Import({InFlightSendLimiter.class, SimpleMeterRegistry.class, LibraryEventIds.class, IdempotentSendCache.class})
+@TestPropertySource(properties = {
+        "libraryEvents.controller.mode=async",
+        "libraryEvents.async.maxInFlight=1",
+        "libraryEvents.async.retryAfterSeconds=2"})
+public class LibraryEventsAsyncControllerUnitTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @MockitoBean
+    LibraryEventProducer libraryEventProducer;
+
+    @MockitoBean
+    KafkaTemplate<Long, Object> kafkaTemplate;
+
+    @Test
+    void postLibraryEvent_respondsAfterBrokerAck() throws Exception {
+
+        //given
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        MvcResult mvcResult = mockMvc.perform(post("/v1/libraryevent")
+                        .content(objectMapper.writeValueAsString(TestUtil.libraryEventRecord()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void postLibraryEvent_429WhenInFlightLimitReached() throws Exception {
+
+        //given: el primer envio nunca recibe ack y ocupa el unico permiso
+        CompletableFuture<SendResult<Long, Object>> pendingAck = new CompletableFuture<>();
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class))).thenReturn(pendingAck);
+        String json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        mockMvc.perform(post("/v1/libraryevent").content(json).contentType(MediaType.APPLICATION_JSON));
+
+        //expect
+        MvcResult mvcResult = mockMvc.perform(post("/v1/libraryevent").content(json).contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+
+        pendingAck.complete(null);
+    }
+
+    @Test
+    void postLibraryEvent_503WhenBrokerDoesNotAck() throws Exception {
+
+        //given
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("Expiring 1 record(s)")));
+
+        //expect
+        MvcResult mvcResult = mockMvc.perform(post("/v1/libraryevent")
+                        .content(objectMapper.writeValueAsString(TestUtil.libraryEventRecord()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    void postLibraryEvent_concurrentRetryWithSameIdempotencyKeyWaitsForTheSameAck() throws Exception {
+
+        //given: el primer envio ocupa el unico permiso y aun no tiene ack
+        CompletableFuture<SendResult<Long, Object>> pendingAck = new CompletableFuture<>();
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class))).thenReturn(pendingAck);
+        String json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        MvcResult first = mockMvc.perform(post("/v1/libraryevent").header("Idempotency-Key", "order-1")
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        //when: el reintento no pide permiso (no hay 429) ni produce otro registro
+        MvcResult retry = mockMvc.perform(post("/v1/libraryevent").header("Idempotency-Key", "order-1")
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pendingAck.complete(null);
+
+        //then
+        Long libraryEventId = objectMapper.readValue(mockMvc.perform(asyncDispatch(first))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), LibraryEvent.class).libraryEventId();
+        mockMvc.perform(asyncDispatch(retry))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.libraryEventId").value(String.valueOf(libraryEventId)));
+        verify(libraryEventProducer, times(1)).sendLibraryEvent_Approach2(isA(LibraryEvent.class));
+    }
+}
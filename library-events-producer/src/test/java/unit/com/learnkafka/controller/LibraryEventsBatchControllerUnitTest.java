@@ -0,0 +1,169 @@
+package com.learnkafka.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.LibraryEventProducer;
+import com.learnkafka.service.LibraryEventBatchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import util.TestUtil;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(LibraryEventsBatchController.class)
+@Import({LibraryEventBatchService.class, LibraryEventIds.class})
+public class LibraryEventsBatchControllerUnitTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @MockitoBean
+    LibraryEventProducer libraryEventProducer;
+
+    @Test
+    void postLibraryEventsBatch_ndjson() throws Exception {
+
+        //given
+        String body = objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "\n"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecordUpdate()) + "\n";
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        mockMvc.perform(post("/v1/libraryevents/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.accepted").value(2));
+
+        verify(libraryEventProducer, times(2)).sendLibraryEvent_Approach2(isA(LibraryEvent.class));
+    }
+
+    @Test
+    void postLibraryEventsBatch_ndjson_invalidLines() throws Exception {
+
+        //given
+        String body = objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "\n"
+                + "{not json}\n"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecordWithInvalidBook()) + "\n"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecordUpdateWithNullLibraryEventId()) + "\n";
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        mockMvc.perform(post("/v1/libraryevents/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.received").value(4))
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[1].message").value("book.bookId - must not be null, book.bookName - must not be blank"))
+                .andExpect(jsonPath("$.errors[2].message").value("Please pass the LibraryEvent Id"));
+    }
+
+    @Test
+    void postLibraryEventsBatch_ndjson_lineTooLongIsRejected() throws Exception {
+
+        //given: la segunda linea pasa de libraryEvents.batch.maxLineLength (65536 por defecto); la de despues se sigue leyendo
+        var longBook = new Book(456, "x".repeat(70_000), "Dilip");
+        String body = objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "\r\n"
+                + objectMapper.writeValueAsString(new LibraryEvent(null, LibraryEventType.NEW, longBook)) + "\r\n"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "\r\n";
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        mockMvc.perform(post("/v1/libraryevents/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("Line too long - more than 65536 characters"));
+
+        verify(libraryEventProducer, times(2)).sendLibraryEvent_Approach2(isA(LibraryEvent.class));
+    }
+
+    @Test
+    void postLibraryEventsBatch_jsonArray() throws Exception {
+
+        //given
+        String body = "[" + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + ","
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "]";
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        mockMvc.perform(post("/v1/libraryevents/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.accepted").value(2));
+    }
+
+    @Test
+    void postLibraryEventsBatch_jsonArray_invalidElementIsSkipped() throws Exception {
+
+        //given: el segundo elemento es JSON valido pero no un LibraryEvent
+        String body = "[" + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + ","
+                + "{\"libraryEventType\":\"UNKNOWN\"},"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "]";
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        mockMvc.perform(post("/v1/libraryevents/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+    }
+
+    @Test
+    void postLibraryEventsBatch_jsonArray_syntaxErrorStopsReading() throws Exception {
+
+        //given: el segundo elemento esta mal formado; el tercero ya no se lee
+        String body = "[" + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + ","
+                + "{not json},"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "]";
+        when(libraryEventProducer.sendLibraryEvent_Approach2(isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //expect
+        mockMvc.perform(post("/v1/libraryevents/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+
+        verify(libraryEventProducer, times(1)).sendLibraryEvent_Approach2(isA(LibraryEvent.class));
+    }
+}
@@ -0,0 +1,173 @@
+package com.learnkafka.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import com.learnkafka.id.LibraryEventIds;
+import com.learnkafka.producer.IdempotentSendCache;
+import com.learnkafka.producer.ReactiveLibraryEventProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import util.TestUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryEventsRouterUnitTest {
+
+    ReactiveLibraryEventProducer reactiveLibraryEventProducer = mock(ReactiveLibraryEventProducer.class);
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    WebTestClient webTestClient = webTestClient();
+
+    private WebTestClient webTestClient() {
+        var handler = new LibraryEventsHandler(reactiveLibraryEventProducer,
+                Validation.buildDefaultValidatorFactory().getValidator(), new LibraryEventIds(0),
+                new IdempotentSendCache(new SimpleMeterRegistry(), 100, 60));
+        ReflectionTestUtils.setField(handler, "maxReportedErrors", 10);
+        return WebTestClient.bindToRouterFunction(new LibraryEventsRouter().libraryEventsRoutes(handler)).build();
+    }
+
+    @Test
+    void postLibraryEvent() {
+
+        //given
+        when(reactiveLibraryEventProducer.sendLibraryEvent(isA(LibraryEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        //expect
+        webTestClient.post().uri("/v1/libraryevent")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(TestUtil.libraryEventRecord())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.libraryEventId").value(Matchers.matchesRegex("\\d+"))
+                .jsonPath("$.book.bookId").isEqualTo(TestUtil.libraryEventRecord().book().bookId());
+    }
+
+    @Test
+    void postLibraryEvent_4xx() {
+
+        //expect
+        webTestClient.post().uri("/v1/libraryevent")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(TestUtil.libraryEventRecordWithInvalidBook())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("book.bookId - must not be null, book.bookName - must not be blank");
+    }
+
+    @Test
+    void postLibraryEvent_sameIdempotencyKeyIsSentOnce() {
+
+        //given
+        when(reactiveLibraryEventProducer.sendLibraryEvent(isA(LibraryEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        //when
+        LibraryEvent first = postWithIdempotencyKey("key-1", TestUtil.libraryEventRecord())
+                .expectStatus().isCreated()
+                .expectBody(LibraryEvent.class).returnResult().getResponseBody();
+        LibraryEvent retried = postWithIdempotencyKey("key-1", TestUtil.libraryEventRecord())
+                .expectStatus().isCreated()
+                .expectBody(LibraryEvent.class).returnResult().getResponseBody();
+
+        //then
+        assertEquals(first.libraryEventId(), retried.libraryEventId());
+        verify(reactiveLibraryEventProducer, times(1)).sendLibraryEvent(isA(LibraryEvent.class));
+    }
+
+    @Test
+    void postLibraryEvent_sameIdempotencyKeyWithOtherBody_422() {
+
+        //given
+        when(reactiveLibraryEventProducer.sendLibraryEvent(isA(LibraryEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        postWithIdempotencyKey("key-2", TestUtil.libraryEventRecord()).expectStatus().isCreated();
+        var otherBook = new Book(789, "Other Book", "Dilip");
+
+        //expect
+        postWithIdempotencyKey("key-2", new LibraryEvent(null, LibraryEventType.NEW, otherBook))
+                .expectStatus().isEqualTo(422)
+                .expectBody(String.class).isEqualTo("Idempotency-Key already used with a different request");
+    }
+
+    @Test
+    void postLibraryEvent_failedSendForgetsTheIdempotencyKey() {
+
+        //given
+        when(reactiveLibraryEventProducer.sendLibraryEvent(isA(LibraryEvent.class)))
+                .thenReturn(Mono.error(new TimeoutException("Expiring 1 record(s)")))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        //expect
+        postWithIdempotencyKey("key-3", TestUtil.libraryEventRecord()).expectStatus().isEqualTo(503);
+        postWithIdempotencyKey("key-3", TestUtil.libraryEventRecord()).expectStatus().isCreated();
+        verify(reactiveLibraryEventProducer, times(2)).sendLibraryEvent(isA(LibraryEvent.class));
+    }
+
+    private WebTestClient.ResponseSpec postWithIdempotencyKey(String idempotencyKey, LibraryEvent libraryEvent) {
+        return webTestClient.post().uri("/v1/libraryevent")
+                .header(IdempotentSendCache.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(libraryEvent)
+                .exchange();
+    }
+
+    @Test
+    void putLibraryEvent_brokerFailure_503() {
+
+        //given
+        when(reactiveLibraryEventProducer.sendLibraryEvent(isA(LibraryEvent.class)))
+                .thenReturn(Mono.error(new TimeoutException("Expiring 1 record(s)")));
+
+        //expect
+        webTestClient.put().uri("/v1/libraryevent")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(TestUtil.libraryEventRecordUpdate())
+                .exchange()
+                .expectStatus().isEqualTo(503);
+    }
+
+    @Test
+    void postLibraryEventsBatch_ndjson() throws Exception {
+
+        //given: el productor confirma todo lo que le llega
+        when(reactiveLibraryEventProducer.sendLibraryEvents(any()))
+                .thenAnswer(invocation -> {
+                    Flux<Tuple2<Long, LibraryEvent>> events = invocation.getArgument(0);
+                    return events.map(line -> new ReactiveLibraryEventProducer.SendOutcome(line.getT1(), null));
+                });
+        String body = objectMapper.writeValueAsString(TestUtil.libraryEventRecord()) + "\n"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecordUpdateWithNullLibraryEventId()) + "\n"
+                + objectMapper.writeValueAsString(TestUtil.libraryEventRecordUpdate()) + "\n";
+
+        //expect
+        webTestClient.post().uri("/v1/libraryevents/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isEqualTo(207)
+                .expectBody()
+                .jsonPath("$.received").isEqualTo(3)
+                .jsonPath("$.accepted").isEqualTo(2)
+                .jsonPath("$.errors[0].line").isEqualTo(2)
+                .jsonPath("$.errors[0].message").isEqualTo("Please pass the LibraryEvent Id");
+    }
+}
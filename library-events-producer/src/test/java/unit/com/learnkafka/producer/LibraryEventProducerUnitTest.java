@@ -0,0 +1,77 @@
+package com.learnkafka.producer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.logging.HotPathLog;
+import com.learnkafka.serde.LibraryEventWireFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import util.TestUtil;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryEventProducerUnitTest {
+
+    @SuppressWarnings("unchecked")
+    KafkaTemplate<Long, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    LibraryEventProducer libraryEventProducer = new LibraryEventProducer(kafkaTemplate,
+            new LibraryEventWireFormat(new ObjectMapper(), "json"), meterRegistry, new HotPathLog(meterRegistry, 100));
+
+    @BeforeEach
+    void setUp() {
+        // Fuera de Spring no se inyecta el @Value del topic
+        ReflectionTestUtils.setField(libraryEventProducer, "topic", "library-events");
+    }
+
+    @Test
+    void sendLibraryEvent_Approach2_recordsAckLatencySizeAndSentAtHeader() throws Exception {
+
+        //given
+        var metadata = new RecordMetadata(new TopicPartition("library-events", 0), 0L, 0, 0L, 4, 120);
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(new SendResult<>(invocation.getArgument(0), metadata)));
+
+        //when
+        libraryEventProducer.sendLibraryEvent_Approach2(TestUtil.libraryEventRecord()).get();
+
+        //then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<ProducerRecord<Long, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        assertNotNull(captor.getValue().headers().lastHeader(LibraryEventProducer.SENT_AT_HEADER));
+        assertEquals(1, meterRegistry.get("library.events.producer.send").tag("outcome", "success").timer().count());
+        assertEquals(120.0, meterRegistry.get("library.events.producer.record.size").summary().totalAmount());
+    }
+
+    @Test
+    void sendLibraryEvent_Approach2_countsFailuresByException() throws Exception {
+
+        //given
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("broker down")));
+
+        //when
+        libraryEventProducer.sendLibraryEvent_Approach2(TestUtil.libraryEventRecord()).exceptionally(throwable -> null).get();
+
+        //then
+        assertEquals(1, meterRegistry.get("library.events.producer.send").tag("outcome", "failure").timer().count());
+        assertEquals(1.0, meterRegistry.get("library.events.producer.send.failures").tag("exception", "TimeoutException").counter().count());
+    }
+}
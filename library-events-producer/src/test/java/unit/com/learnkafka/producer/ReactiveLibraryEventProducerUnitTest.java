@@ -0,0 +1,114 @@
+package com.learnkafka.producer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.serde.LibraryEventWireFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+import reactor.util.function.Tuples;
+import util.TestUtil;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveLibraryEventProducerUnitTest {
+
+    @SuppressWarnings("unchecked")
+    KafkaSender<Long, Object> kafkaSender = mock(KafkaSender.class);
+    List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    ReactiveLibraryEventProducerUnitTest() {
+        // Cada send del KafkaSender es un lote: se anota su tamaño y cuantos lotes hay en curso a la vez
+        when(kafkaSender.send(any())).thenAnswer(invocation -> {
+            Publisher<SenderRecord<Long, Object, Object>> records = invocation.getArgument(0);
+            return Flux.from(records).collectList()
+                    .doOnNext(batch -> {
+                        batchSizes.add(batch.size());
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    })
+                    .flatMapMany(Flux::fromIterable)
+                    .map(ReactiveLibraryEventProducerUnitTest::acknowledged)
+                    .doOnComplete(inFlight::decrementAndGet);
+        });
+    }
+
+    @Test
+    void sendLibraryEvents_sendsInBatchesWithBoundedConcurrency() {
+
+        //given
+        var libraryEvents = Flux.fromStream(LongStream.rangeClosed(1, 250).boxed())
+                .map(line -> Tuples.of(line, TestUtil.libraryEventRecord()));
+
+        //when
+        List<ReactiveLibraryEventProducer.SendOutcome> outcomes = producer(50).sendLibraryEvents(libraryEvents)
+                .collectList().block();
+
+        //then: 250 eventos en lotes de 100; maxInFlight 200 permite 2 lotes a la vez
+        assertEquals(250, outcomes.size());
+        assertEquals(List.of(100, 100, 50), batchSizes);
+        assertTrue(maxInFlight.get() <= 2);
+        assertEquals(0, outcomes.stream().filter(outcome -> outcome.exception() != null).count());
+    }
+
+    @Test
+    void sendLibraryEvent_singleEventDoesNotWaitForTheBatchTimeout() {
+
+        //given: un lote incompleto esperaria 30 segundos
+        var reactiveLibraryEventProducer = producer(30_000);
+
+        //when
+        LibraryEvent sent = reactiveLibraryEventProducer.sendLibraryEvent(TestUtil.libraryEventRecord()).block(Duration.ofSeconds(5));
+
+        //then
+        assertEquals(TestUtil.libraryEventRecord(), sent);
+        assertEquals(List.of(1), batchSizes);
+    }
+
+    // maxInFlight 200 y lotes de 100
+    private ReactiveLibraryEventProducer producer(long batchTimeoutMs) {
+        var producer = new ReactiveLibraryEventProducer(kafkaSender, new LibraryEventWireFormat(new ObjectMapper(), "json"),
+                new SimpleMeterRegistry(), 200, 100, batchTimeoutMs);
+        // Fuera de Spring no se inyecta el @Value del topic
+        ReflectionTestUtils.setField(producer, "topic", "library-events");
+        return producer;
+    }
+
+    private static SenderResult<Object> acknowledged(SenderRecord<Long, Object, Object> senderRecord) {
+        var metadata = new RecordMetadata(new TopicPartition(senderRecord.topic(), 0), 0L, 0, 0L, 8, 36);
+        return new SenderResult<>() {
+            @Override
+            public RecordMetadata recordMetadata() {
+                return metadata;
+            }
+
+            @Override
+            public Exception exception() {
+                return null;
+            }
+
+            @Override
+            public Object correlationMetadata() {
+                return senderRecord.correlationMetadata();
+            }
+        };
+    }
+}
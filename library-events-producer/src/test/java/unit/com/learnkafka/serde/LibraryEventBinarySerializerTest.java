@@ -0,0 +1,98 @@
+package com.learnkafka.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import util.TestUtil;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryEventBinarySerializerTest {
+
+    // Mismos payloads que LibraryEventBinaryDeserializerTest en el consumidor. Con IDs pequeños V2 coincide
+    // byte a byte con V1: int y long usan el mismo varint zigzag
+    static final String UPDATE_EVENT_V1_HEX = "02f6010290072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970";
+    static final String SNOWFLAKE_UPDATE_EVENT_V2_HEX = "028080808080400290072e4b61666b61205573696e6720537072696e6720426f6f740a44696c6970";
+
+    InMemorySchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+    LibraryEventBinarySerializer serializer = new LibraryEventBinarySerializer(schemaRegistry);
+
+    @Test
+    void serialize_writesSchemaV2BytesAndSchemaIdHeader() {
+
+        //given
+        var libraryEvent = new LibraryEvent(123L, LibraryEventType.UPDATE, new Book(456, "Kafka Using Spring Boot", "Dilip"));
+        var headers = new RecordHeaders();
+
+        //when
+        byte[] bytes = serializer.serialize("library-events", headers, libraryEvent);
+
+        //then
+        assertArrayEquals(HexFormat.of().parseHex(UPDATE_EVENT_V1_HEX), bytes);
+        int schemaId = ByteBuffer.wrap(headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER).value()).getInt();
+        assertEquals(LibraryEventSchemas.V2, schemaRegistry.getSchema(schemaId));
+    }
+
+    @Test
+    void serialize_snowflakeIdAsLong() {
+
+        //given
+        var libraryEvent = new LibraryEvent(1L << 40, LibraryEventType.UPDATE, new Book(456, "Kafka Using Spring Boot", "Dilip"));
+
+        //when
+        byte[] bytes = serializer.serialize("library-events", new RecordHeaders(), libraryEvent);
+
+        //then
+        assertArrayEquals(HexFormat.of().parseHex(SNOWFLAKE_UPDATE_EVENT_V2_HEX), bytes);
+    }
+
+    @Test
+    void serialize_isMuchSmallerThanJson() throws Exception {
+
+        //given
+        var libraryEvent = TestUtil.libraryEventRecordUpdate();
+
+        //when
+        byte[] binary = serializer.serialize("library-events", new RecordHeaders(), libraryEvent);
+        byte[] json = new ObjectMapper().writeValueAsBytes(libraryEvent);
+
+        //then
+        assertTrue(binary.length * 3 < json.length);
+    }
+
+    @Test
+    void serialize_sameSchemaIdAcrossInstances() {
+
+        //given
+        var other = new LibraryEventBinarySerializer();
+        other.configure(Map.of(LibraryEventSchemas.REGISTRY_CONFIG, schemaRegistry), false);
+        var headers = new RecordHeaders();
+        var otherHeaders = new RecordHeaders();
+
+        //when
+        serializer.serialize("library-events", headers, TestUtil.libraryEventRecord());
+        other.serialize("library-events", otherHeaders, TestUtil.libraryEventRecord());
+
+        //then
+        assertArrayEquals(headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER).value(),
+                otherHeaders.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER).value());
+    }
+
+    @Test
+    void serialize_invalidBook() {
+
+        assertThrows(SerializationException.class,
+                () -> serializer.serialize("library-events", new RecordHeaders(), TestUtil.libraryEventRecordWithInvalidBook()));
+    }
+}
@@ -0,0 +1,35 @@
+package com.learnkafka.serde;
+
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+import static com.learnkafka.serde.LibraryEventWireContract.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Lado productor del contrato: LibraryEventWireContractTest del consumidor decodifica estos mismos bytes
+class LibraryEventWireContractTest {
+
+    @Test
+    void producerWritesTheContractBytesAndSchemaId() {
+
+        //given: registry recien creado, como el de la JVM del productor
+        var serializer = new LibraryEventBinarySerializer(new InMemorySchemaRegistry());
+        var libraryEvent = new LibraryEvent(LIBRARY_EVENT_ID, LibraryEventType.valueOf(LIBRARY_EVENT_TYPE),
+                new Book(BOOK_ID, BOOK_NAME, BOOK_AUTHOR));
+        var headers = new RecordHeaders();
+
+        //when
+        byte[] bytes = serializer.serialize("library-events", headers, libraryEvent);
+
+        //then
+        assertArrayEquals(HexFormat.of().parseHex(VALUE_HEX), bytes);
+        assertEquals(SCHEMA_ID, ByteBuffer.wrap(headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER).value()).getInt());
+    }
+}
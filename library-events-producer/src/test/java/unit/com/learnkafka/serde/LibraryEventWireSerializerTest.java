@@ -0,0 +1,54 @@
+package com.learnkafka.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnkafka.domain.Book;
+import com.learnkafka.domain.LibraryEvent;
+import com.learnkafka.domain.LibraryEventType;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LibraryEventWireSerializerTest {
+
+    LibraryEventWireSerializer serializer = new LibraryEventWireSerializer(new LibraryEventBinarySerializer(new InMemorySchemaRegistry()));
+    LibraryEvent libraryEvent = new LibraryEvent(123L, LibraryEventType.UPDATE, new Book(456, "Kafka Using Spring Boot", "Dilip"));
+
+    @Test
+    void jsonFormat_writesTheJsonStringWithoutSchemaHeader() throws Exception {
+
+        //given
+        var wireFormat = new LibraryEventWireFormat(new ObjectMapper(), "json");
+        var headers = new RecordHeaders();
+
+        //when
+        Object value = wireFormat.value(libraryEvent);
+        byte[] bytes = serializer.serialize("library-events", headers, value);
+
+        //then
+        assertInstanceOf(String.class, value);
+        assertArrayEquals(((String) value).getBytes(StandardCharsets.UTF_8), bytes);
+        assertNull(headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER));
+    }
+
+    @Test
+    void binaryFormat_writesTheBinaryPayloadWithSchemaHeader() throws Exception {
+
+        //given
+        var wireFormat = new LibraryEventWireFormat(new ObjectMapper(), "binary");
+        var headers = new RecordHeaders();
+
+        //when
+        byte[] bytes = serializer.serialize("library-events", headers, wireFormat.value(libraryEvent));
+
+        //then
+        assertArrayEquals(HexFormat.of().parseHex(LibraryEventBinarySerializerTest.UPDATE_EVENT_V1_HEX), bytes);
+        assertNotNull(headers.lastHeader(LibraryEventSchemas.SCHEMA_ID_HEADER));
+    }
+}